@@ -0,0 +1,83 @@
+package com.example.escapeGame;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+// ScoreRanking (skip list) vs. what ScoreDataUtil.topScores did before: copy every score and sort.
+// Run with: mvn -Pjmh test-compile exec:exec -Djmh.args="ScoreRankingBenchmark"
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgs = "-Xmx4g")
+public class ScoreRankingBenchmark {
+    @Param({"100000", "1000000"})
+    public int players;
+
+    private final List<PlayerScore> scores = new ArrayList<>();
+    private final ScoreRanking ranking = new ScoreRanking();
+    private Random random;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        Random r = new Random(42);
+        for (int i = 0; i < players; i++) scores.add(new PlayerScore("player" + i, r.nextInt(100_000), 60, null));
+        ranking.rebuild(scores);
+        random = new Random(7);
+    }
+
+    @Benchmark
+    public List<PlayerScore> top10Sorted() {
+        List<PlayerScore> copy = new ArrayList<>(scores);
+        copy.sort(Comparator.comparingInt(PlayerScore::getScore).reversed());
+        return copy.subList(0, 10);
+    }
+
+    @Benchmark
+    public List<PlayerScore> top10Ranking() {
+        return ranking.top(10);
+    }
+
+    // Old path for "my rank": sort, then find the player
+    @Benchmark
+    public int rankSorted() {
+        String player = "player" + random.nextInt(players);
+        List<PlayerScore> copy = new ArrayList<>(scores);
+        copy.sort(Comparator.comparingInt(PlayerScore::getScore).reversed());
+        for (int i = 0; i < copy.size(); i++) {
+            if (copy.get(i).getPlayer().equalsIgnoreCase(player)) return i + 1;
+        }
+        return 0;
+    }
+
+    @Benchmark
+    public int rankRanking() {
+        return ranking.rankOf("player" + random.nextInt(players));
+    }
+
+    // Old upsert: case-insensitive scan for the player, then replace
+    @Benchmark
+    public PlayerScore upsertScan() {
+        PlayerScore s = new PlayerScore("player" + random.nextInt(players), random.nextInt(100_000), 60, null);
+        for (int i = 0; i < scores.size(); i++) {
+            if (scores.get(i).getPlayer().equalsIgnoreCase(s.getPlayer())) {
+                scores.set(i, s);
+                break;
+            }
+        }
+        return s;
+    }
+
+    @Benchmark
+    public PlayerScore upsertRanking() {
+        PlayerScore s = new PlayerScore("player" + random.nextInt(players), random.nextInt(100_000), 60, null);
+        ranking.put(s);
+        return s;
+    }
+}
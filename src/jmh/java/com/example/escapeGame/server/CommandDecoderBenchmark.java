@@ -0,0 +1,63 @@
+package com.example.escapeGame.server;
+
+import com.example.escapeGame.ChatMessage;
+import com.google.gson.Gson;
+import com.google.gson.JsonObject;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+// Streaming CommandDecoder vs. the old Gson tree path (fromJson into a JsonObject, then field lookups).
+// Run with: mvn -Pjmh test-compile exec:exec -Djmh.args="CommandDecoderBenchmark -prof gc"
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class CommandDecoderBenchmark {
+    private static final Gson gson = new Gson();
+
+    @Param({"submitAnswer", "chatMessage", "joinRoom"})
+    public String message;
+
+    private String line;
+
+    @Setup
+    public void setup() {
+        switch (message) {
+            case "submitAnswer":
+                line = "{\"type\":\"submitAnswer\",\"roomCode\":\"AB12CD\",\"username\":\"alice\",\"answer\":\"the key is under the mat\",\"elapsedMs\":4821}";
+                break;
+            case "chatMessage":
+                line = "{\"type\":\"chatMessage\",\"roomCode\":\"AB12CD\",\"chatMessage\":{\"sender\":\"alice\",\"receiver\":\"\","
+                        + "\"content\":\"anyone found the second clue?\",\"type\":\"PUBLIC\",\"timestamp\":\"2024-05-01T12:30:45.123\"}}";
+                break;
+            default:
+                line = "{\"type\":\"joinRoom\",\"roomCode\":\"AB12CD\",\"username\":\"bob\",\"room\":\"Room 1\",\"difficulty\":\"Easy\"}";
+        }
+    }
+
+    @Benchmark
+    public Object streaming() throws IOException {
+        return CommandDecoder.decode(line);
+    }
+
+    // What ClientHandler did before: build the tree, then pull the same fields out of it
+    @Benchmark
+    public Object tree() {
+        JsonObject msg = gson.fromJson(line, JsonObject.class);
+        String type = msg.get("type").getAsString();
+        switch (type) {
+            case "submitAnswer":
+                return Command.submitAnswer(msg.get("roomCode").getAsString(), msg.get("username").getAsString(),
+                        msg.get("answer").getAsString(), msg.get("elapsedMs").getAsLong());
+            case "chatMessage":
+                return ChatMessage.fromJson(msg.getAsJsonObject("chatMessage"));
+            default:
+                return Command.roomRequest(type, msg.get("roomCode").getAsString(), msg.get("username").getAsString(),
+                        msg.get("room").getAsString(), msg.get("difficulty").getAsString());
+        }
+    }
+}
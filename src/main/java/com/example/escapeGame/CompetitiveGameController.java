@@ -20,6 +20,8 @@ import java.io.IOException;
 import java.time.LocalDateTime;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
 
 public class CompetitiveGameController {
     
@@ -51,6 +53,10 @@ public class CompetitiveGameController {
     private int netTotalQuestions;
     // Debounce flag for auto-fit scheduling to avoid flooding FX thread
     private boolean autoFitScheduled;
+    // Scoreboard kept locally from one scoreSnapshot plus versioned scoreDelta messages (FX thread only)
+    private final Map<String, Integer> netScores = new TreeMap<>();
+    private int scoreVersion = -1;
+    private boolean scoreResyncPending;
     
     
     public void initialize() {
@@ -149,14 +155,18 @@ public class CompetitiveGameController {
 
         if (net != null) {
             net.setOnMessage(this::onNetMessage);
+            requestScoreSnapshot();
         }
     }
 
     private void onNetMessage(JsonObject msg) {
         String type = msg.get("type").getAsString();
         switch (type) {
-            case "joined": {
-                // Handle successful room join
+            case "joined":
+            case "rejoined":
+            case "resumed": {
+                // Handle successful room join; after a reconnect, only a resume that sent the full state has the room
+                if (!msg.has("room")) break;
                 JsonObject room = msg.get("room").getAsJsonObject();
                 String code = room.get("code").getAsString();
                 Session.getInstance().setRoomCode(code);
@@ -240,20 +250,31 @@ public class CompetitiveGameController {
                 }
                 break;
             }
-            case "scoreUpdate": {
+            case "scoreSnapshot": {
                 if (msg.has("scores") && msg.get("scores").isJsonArray()) {
                     JsonArray scores = msg.getAsJsonArray("scores");
-                    System.out.println("Received score update: " + scores.toString());
-                    Platform.runLater(() -> updateScores(scores));
+                    int version = msg.has("version") ? msg.get("version").getAsInt() : 0;
+                    System.out.println("Received score snapshot v" + version + ": " + scores.toString());
+                    Platform.runLater(() -> updateScores(version, scores));
+                }
+                break;
+            }
+            case "scoreDelta": {
+                if (msg.has("changes") && msg.get("changes").isJsonArray()) {
+                    JsonArray changes = msg.getAsJsonArray("changes");
+                    int version = msg.get("version").getAsInt();
+                    System.out.println("Received score delta v" + version + ": " + changes.toString());
+                    Platform.runLater(() -> applyScoreDelta(version, changes));
                 }
                 break;
             }
             case "teamScoreUpdate": {
-                if (msg.has("scores") && msg.get("scores").isJsonArray()) {
-                    JsonArray scores = msg.getAsJsonArray("scores");
-                    System.out.println("Received team score update: " + scores.toString());
+                if (msg.has("changes") && msg.get("changes").isJsonArray()) {
+                    JsonArray changes = msg.getAsJsonArray("changes");
+                    int version = msg.get("version").getAsInt();
+                    System.out.println("Received team score update v" + version + ": " + changes.toString());
                     Platform.runLater(() -> {
-                        updateScores(scores);
+                        applyScoreDelta(version, changes);
                         boolean unanimous = msg.has("unanimous") && msg.get("unanimous").getAsBoolean();
                         if (unanimous) {
                             questionLabel.setText("Everyone corrects, You get extra 2 points");
@@ -328,18 +349,49 @@ public class CompetitiveGameController {
         ChatWindow.updatePlayerList(names);
     }
 
-    private void updateScores(JsonArray scores) {
-        // Update side list and personal score label
-        playersList.clear();
-        int myScore = 0;
+    // Replace the local scoreboard with a full snapshot from the server
+    private void updateScores(int version, JsonArray scores) {
+        netScores.clear();
         for (int i = 0; i < scores.size(); i++) {
             JsonObject o = scores.get(i).getAsJsonObject();
-            String u = o.get("username").getAsString();
-            int s = o.get("score").getAsInt();
-            playersList.add(u + " - " + s + " pts");
-            if (u.equals(currentUsername)) myScore = s;
+            netScores.put(o.get("username").getAsString(), o.get("score").getAsInt());
+        }
+        scoreVersion = version;
+        scoreResyncPending = false;
+        renderScores();
+    }
+
+    // Apply one versioned delta; stale versions are ignored and a gap asks the server for a fresh snapshot
+    private void applyScoreDelta(int version, JsonArray changes) {
+        if (scoreVersion < 0 || version > scoreVersion + 1) {
+            requestScoreSnapshot();
+            return;
+        }
+        if (version <= scoreVersion) return;
+        for (int i = 0; i < changes.size(); i++) {
+            JsonObject o = changes.get(i).getAsJsonObject();
+            netScores.merge(o.get("username").getAsString(), o.get("delta").getAsInt(), Integer::sum);
+        }
+        scoreVersion = version;
+        renderScores();
+    }
+
+    private void requestScoreSnapshot() {
+        if (scoreResyncPending || net == null) return;
+        scoreResyncPending = true;
+        JsonObject req = new JsonObject();
+        req.addProperty("type", "getScores");
+        req.addProperty("roomCode", Session.getInstance().getRoomCode());
+        net.send(req);
+    }
+
+    private void renderScores() {
+        // Update side list and personal score label
+        playersList.clear();
+        for (Map.Entry<String, Integer> e : netScores.entrySet()) {
+            playersList.add(e.getKey() + " - " + e.getValue() + " pts");
         }
-        scoreLabel.setText("Your Score: " + myScore);
+        scoreLabel.setText("Your Score: " + netScores.getOrDefault(currentUsername, 0));
     }
 
     private void showFinalResultsAndExit(JsonArray scores, int threshold) {
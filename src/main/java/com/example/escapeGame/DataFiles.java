@@ -0,0 +1,151 @@
+package com.example.escapeGame;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Supplier;
+
+/**
+ * Crash-safe writes for the JSON files under data/. A save goes to a temp file in the same directory, is fsynced
+ * and then atomically renamed over the target, so readers see either the old or the new file, never half of one.
+ * Writers of the same file are serialized by an in-process lock plus an exclusive lock on a sibling ".lock" file
+ * (which also covers other client processes sharing the data directory). Saves queued while another write is in
+ * progress coalesce: only the newest content is written.
+ */
+public final class DataFiles {
+    private static final Map<Path, FileState> states = new ConcurrentHashMap<>();
+
+    private DataFiles() {}
+
+    private static final class FileState {
+        final ReentrantLock lock = new ReentrantLock();
+        long nextTicket = 0;
+        long writtenTicket = 0;
+        byte[] pending;
+        FileChannel lockChannel;
+        FileLock fileLock;
+    }
+
+    private static FileState state(Path path) {
+        return states.computeIfAbsent(path.toAbsolutePath().normalize(), p -> new FileState());
+    }
+
+    /** Atomically replace the file's content; returns once this content or a newer one is durably on disk. */
+    public static void write(Path path, String content) throws IOException {
+        write(path, content.getBytes(StandardCharsets.UTF_8));
+    }
+
+    public static void write(Path path, byte[] bytes) throws IOException {
+        FileState st = state(path);
+        long ticket;
+        synchronized (st) {
+            ticket = ++st.nextTicket;
+            st.pending = bytes;
+        }
+        lock(path, st);
+        try {
+            byte[] latest;
+            long latestTicket;
+            synchronized (st) {
+                // A later save already went out while we waited for the lock
+                if (st.writtenTicket >= ticket) return;
+                latest = st.pending;
+                latestTicket = st.nextTicket;
+                st.pending = null;
+            }
+            writeAtomically(path, latest);
+            synchronized (st) {
+                st.writtenTicket = latestTicket;
+            }
+        } finally {
+            unlock(st);
+        }
+    }
+
+    /**
+     * Run a read-modify-write of the file while holding its locks, so concurrent updates (from this or another
+     * process) apply one after another instead of overwriting each other. Saves inside the action reuse the held locks.
+     */
+    public static <T> T locked(Path path, Supplier<T> action) throws IOException {
+        FileState st = state(path);
+        lock(path, st);
+        try {
+            return action.get();
+        } finally {
+            unlock(st);
+        }
+    }
+
+    public static void locked(Path path, Runnable action) throws IOException {
+        locked(path, () -> {
+            action.run();
+            return null;
+        });
+    }
+
+    private static void lock(Path path, FileState st) throws IOException {
+        st.lock.lock();
+        if (st.lock.getHoldCount() > 1) return;
+        try {
+            Path lockPath = path.resolveSibling(path.getFileName() + ".lock");
+            Files.createDirectories(lockPath.getParent());
+            st.lockChannel = FileChannel.open(lockPath, StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+            st.fileLock = st.lockChannel.lock();
+        } catch (IOException | RuntimeException e) {
+            closeLockChannel(st);
+            st.lock.unlock();
+            throw e;
+        }
+    }
+
+    private static void unlock(FileState st) {
+        if (st.lock.getHoldCount() == 1) {
+            try {
+                if (st.fileLock != null) st.fileLock.release();
+            } catch (IOException ignored) {
+            }
+            closeLockChannel(st);
+        }
+        st.lock.unlock();
+    }
+
+    private static void closeLockChannel(FileState st) {
+        try {
+            if (st.lockChannel != null) st.lockChannel.close();
+        } catch (IOException ignored) {
+        }
+        st.lockChannel = null;
+        st.fileLock = null;
+    }
+
+    private static void writeAtomically(Path path, byte[] content) throws IOException {
+        Path dir = path.toAbsolutePath().getParent();
+        Files.createDirectories(dir);
+        Path tmp = Files.createTempFile(dir, path.getFileName().toString(), ".tmp");
+        try {
+            try (FileChannel out = FileChannel.open(tmp, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+                ByteBuffer buf = ByteBuffer.wrap(content);
+                while (buf.hasRemaining()) out.write(buf);
+                out.force(true);
+            }
+            try {
+                Files.move(tmp, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(tmp, path, StandardCopyOption.REPLACE_EXISTING);
+            }
+        } finally {
+            Files.deleteIfExists(tmp);
+        }
+        // Persist the rename itself; not every platform lets a directory be opened for this
+        try (FileChannel d = FileChannel.open(dir, StandardOpenOption.READ)) {
+            d.force(true);
+        } catch (IOException | UnsupportedOperationException ignored) {
+        }
+    }
+}
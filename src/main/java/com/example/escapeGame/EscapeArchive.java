@@ -0,0 +1,308 @@
+package com.example.escapeGame;
+
+import java.io.*;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.*;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.InflaterInputStream;
+
+/**
+ * Older EscapeRecords kept column by column instead of as objects (data/leaderboard.archive): player, room and
+ * level are indexes into small string dictionaries, dates are epoch seconds (sub-second precision is dropped) sorted
+ * and stored as deltas, scores and the multiplayer flag are primitive arrays. On disk the columns are varint-encoded
+ * and deflated. Immutable: moving more records in, or removing a player, builds a new archive.
+ * {@code seq} and {@code cutoff} record when it was written: every record older than cutoff that existed at that
+ * leaderboard sequence number is in here, which LeaderboardDataUtil uses to avoid counting a record twice.
+ */
+public final class EscapeArchive {
+    private static final int MAGIC = 0x45534341; // "ESCA"
+    private static final int VERSION = 1;
+    private static final int MP_TRUE = 1;
+    private static final int MP_NULL = 2;
+    private static final int HAS_SCORE = 4;
+
+    private static final EscapeArchive EMPTY = new EscapeArchive(0, Long.MIN_VALUE, new String[0], new String[0],
+            new String[0], new int[0], new int[0], new int[0], new long[0], new int[0], new byte[0]);
+
+    final long seq;
+    final long cutoff; // epoch seconds, dates read as UTC
+    private final String[] playerNames;
+    private final String[] roomNames;
+    private final String[] levelNames;
+    private final int[] player;
+    private final int[] room;
+    private final int[] level;
+    private final long[] when;
+    private final int[] score;
+    private final byte[] flags;
+
+    /** Receives one archived record; score and multiplayer may be null as in EscapeRecord. */
+    public interface RecordVisitor {
+        void visit(String player, String room, String level, LocalDateTime when, Integer score, Boolean multiplayer);
+    }
+
+    private EscapeArchive(long seq, long cutoff, String[] playerNames, String[] roomNames, String[] levelNames,
+                          int[] player, int[] room, int[] level, long[] when, int[] score, byte[] flags) {
+        this.seq = seq;
+        this.cutoff = cutoff;
+        this.playerNames = playerNames;
+        this.roomNames = roomNames;
+        this.levelNames = levelNames;
+        this.player = player;
+        this.room = room;
+        this.level = level;
+        this.when = when;
+        this.score = score;
+        this.flags = flags;
+    }
+
+    static EscapeArchive empty() {
+        return EMPTY;
+    }
+
+    public int size() {
+        return player.length;
+    }
+
+    // Records in date order
+    public void forEach(RecordVisitor visitor) {
+        for (int i = 0; i < player.length; i++) {
+            visitor.visit(playerNames[player[i]], roomNames[room[i]], levelNames[level[i]], date(when[i]),
+                    (flags[i] & HAS_SCORE) != 0 ? score[i] : null, multiplayer(flags[i]));
+        }
+    }
+
+    /**
+     * Count escapes matching the filters (null = any; room and level ignore case) between two dates, scanning only
+     * the room, level and date columns.
+     */
+    public int count(String roomName, String levelName, LocalDateTime from, LocalDateTime to) {
+        // The dictionaries keep names as written, so one room can be there in several spellings
+        boolean[] r = roomName == null ? null : matchIgnoringCase(roomNames, roomName);
+        boolean[] l = levelName == null ? null : matchIgnoringCase(levelNames, levelName);
+        long lo = from == null ? Long.MIN_VALUE : epoch(from);
+        long hi = to == null ? Long.MAX_VALUE : epoch(to);
+        // Dates are sorted: binary search the range, then filter the other two columns
+        int start = lowerBound(lo);
+        int n = 0;
+        for (int i = start; i < when.length && when[i] < hi; i++) {
+            if ((r == null || r[room[i]]) && (l == null || l[level[i]])) n++;
+        }
+        return n;
+    }
+
+    /** This archive plus {@code moved} records (which must have dates), as written at {@code seq}. */
+    EscapeArchive plus(Map<String, List<EscapeRecord>> moved, long seq, long cutoff) {
+        Builder b = new Builder(size() + moved.values().stream().mapToInt(List::size).sum());
+        forEach(b::add);
+        moved.forEach((p, records) -> {
+            for (EscapeRecord er : records) b.add(p, er.getRoom(), er.getLevel(), er.getDate(), er.getScore(), er.getMultiplayer());
+        });
+        return b.build(seq, cutoff);
+    }
+
+    // The same archive without the player's records (names compared ignoring case)
+    EscapeArchive withoutPlayer(String username) {
+        int p = indexOfIgnoreCase(playerNames, username);
+        if (p < 0) return this;
+        Builder b = new Builder(size());
+        forEach((name, r, l, w, s, mp) -> {
+            if (!name.equalsIgnoreCase(username)) b.add(name, r, l, w, s, mp);
+        });
+        return b.build(seq, cutoff);
+    }
+
+    static EscapeArchive read(Path path) throws IOException {
+        if (!Files.exists(path)) return EMPTY;
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(path)))) {
+            if (in.readInt() != MAGIC) throw new IOException("Not an escape archive: " + path);
+            int version = in.readInt();
+            if (version != VERSION) throw new IOException("Unsupported escape archive version " + version);
+            long seq = in.readLong();
+            long cutoff = in.readLong();
+            DataInputStream body = new DataInputStream(new BufferedInputStream(new InflaterInputStream(in)));
+            int n = readVarInt(body);
+            String[] players = readStrings(body);
+            String[] rooms = readStrings(body);
+            String[] levels = readStrings(body);
+            int[] player = readIndexes(body, n);
+            int[] room = readIndexes(body, n);
+            int[] level = readIndexes(body, n);
+            long[] when = new long[n];
+            long prev = 0;
+            for (int i = 0; i < n; i++) {
+                prev += unzigzag(readVarLong(body));
+                when[i] = prev;
+            }
+            byte[] flags = new byte[n];
+            body.readFully(flags);
+            int[] score = new int[n];
+            for (int i = 0; i < n; i++) {
+                if ((flags[i] & HAS_SCORE) != 0) score[i] = (int) unzigzag(readVarLong(body));
+            }
+            return new EscapeArchive(seq, cutoff, players, rooms, levels, player, room, level, when, score, flags);
+        }
+    }
+
+    byte[] encode() throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bytes);
+        out.writeInt(MAGIC);
+        out.writeInt(VERSION);
+        out.writeLong(seq);
+        out.writeLong(cutoff);
+        DeflaterOutputStream deflated = new DeflaterOutputStream(out);
+        DataOutputStream body = new DataOutputStream(new BufferedOutputStream(deflated));
+        int n = size();
+        writeVarLong(body, n);
+        writeStrings(body, playerNames);
+        writeStrings(body, roomNames);
+        writeStrings(body, levelNames);
+        for (int v : player) writeVarLong(body, v);
+        for (int v : room) writeVarLong(body, v);
+        for (int v : level) writeVarLong(body, v);
+        long prev = 0;
+        for (long w : when) {
+            writeVarLong(body, zigzag(w - prev));
+            prev = w;
+        }
+        body.write(flags);
+        for (int i = 0; i < n; i++) {
+            if ((flags[i] & HAS_SCORE) != 0) writeVarLong(body, zigzag(score[i]));
+        }
+        body.flush();
+        deflated.finish();
+        out.flush();
+        return bytes.toByteArray();
+    }
+
+    // Collects records (in any order) and lays them out sorted by date
+    private static final class Builder {
+        private final Map<String, Integer> players = new HashMap<>();
+        private final Map<String, Integer> rooms = new HashMap<>();
+        private final Map<String, Integer> levels = new HashMap<>();
+        private final List<long[]> rows; // {when, player, room, level, score, flags}
+
+        Builder(int expected) {
+            rows = new ArrayList<>(expected);
+        }
+
+        void add(String p, String r, String l, LocalDateTime w, Integer s, Boolean mp) {
+            int f = (mp == null ? MP_NULL : mp ? MP_TRUE : 0) | (s != null ? HAS_SCORE : 0);
+            rows.add(new long[]{epoch(w), id(players, p), id(rooms, r), id(levels, l), s == null ? 0 : s, f});
+        }
+
+        EscapeArchive build(long seq, long cutoff) {
+            rows.sort(Comparator.comparingLong(row -> row[0]));
+            int n = rows.size();
+            int[] player = new int[n], room = new int[n], level = new int[n], score = new int[n];
+            long[] when = new long[n];
+            byte[] flags = new byte[n];
+            for (int i = 0; i < n; i++) {
+                long[] row = rows.get(i);
+                when[i] = row[0];
+                player[i] = (int) row[1];
+                room[i] = (int) row[2];
+                level[i] = (int) row[3];
+                score[i] = (int) row[4];
+                flags[i] = (byte) row[5];
+            }
+            return new EscapeArchive(seq, cutoff, names(players), names(rooms), names(levels), player, room, level, when, score, flags);
+        }
+
+        private static int id(Map<String, Integer> dict, String s) {
+            return dict.computeIfAbsent(s == null ? "" : s, k -> dict.size());
+        }
+
+        private static String[] names(Map<String, Integer> dict) {
+            String[] names = new String[dict.size()];
+            dict.forEach((s, i) -> names[i] = s);
+            return names;
+        }
+    }
+
+    static long epoch(LocalDateTime dt) {
+        return dt.toEpochSecond(ZoneOffset.UTC);
+    }
+
+    private static LocalDateTime date(long epochSeconds) {
+        return LocalDateTime.ofEpochSecond(epochSeconds, 0, ZoneOffset.UTC);
+    }
+
+    private static Boolean multiplayer(byte f) {
+        return (f & MP_NULL) != 0 ? null : (f & MP_TRUE) != 0;
+    }
+
+    private int lowerBound(long value) {
+        int lo = 0, hi = when.length;
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            if (when[mid] < value) lo = mid + 1; else hi = mid;
+        }
+        return lo;
+    }
+
+    private static int indexOfIgnoreCase(String[] names, String s) {
+        for (int i = 0; i < names.length; i++) {
+            if (names[i].equalsIgnoreCase(s)) return i;
+        }
+        return -1;
+    }
+
+    // Which dictionary entries equal s ignoring case
+    private static boolean[] matchIgnoringCase(String[] names, String s) {
+        boolean[] match = new boolean[names.length];
+        for (int i = 0; i < names.length; i++) match[i] = names[i].equalsIgnoreCase(s);
+        return match;
+    }
+
+    private static void writeStrings(DataOutputStream out, String[] strings) throws IOException {
+        writeVarLong(out, strings.length);
+        for (String s : strings) out.writeUTF(s);
+    }
+
+    private static String[] readStrings(DataInputStream in) throws IOException {
+        String[] strings = new String[readVarInt(in)];
+        for (int i = 0; i < strings.length; i++) strings[i] = in.readUTF();
+        return strings;
+    }
+
+    private static int[] readIndexes(DataInputStream in, int n) throws IOException {
+        int[] values = new int[n];
+        for (int i = 0; i < n; i++) values[i] = readVarInt(in);
+        return values;
+    }
+
+    private static void writeVarLong(DataOutputStream out, long v) throws IOException {
+        while ((v & ~0x7FL) != 0) {
+            out.writeByte((int) ((v & 0x7F) | 0x80));
+            v >>>= 7;
+        }
+        out.writeByte((int) v);
+    }
+
+    private static long readVarLong(DataInputStream in) throws IOException {
+        long v = 0;
+        for (int shift = 0; shift < 64; shift += 7) {
+            int b = in.readUnsignedByte();
+            v |= (long) (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) return v;
+        }
+        throw new IOException("Malformed varint in escape archive");
+    }
+
+    private static int readVarInt(DataInputStream in) throws IOException {
+        return (int) readVarLong(in);
+    }
+
+    private static long zigzag(long v) {
+        return (v << 1) ^ (v >> 63);
+    }
+
+    private static long unzigzag(long v) {
+        return (v >>> 1) ^ -(v & 1);
+    }
+}
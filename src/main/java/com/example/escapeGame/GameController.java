@@ -125,11 +125,7 @@ public class GameController {
     
     private void loadRoomPuzzles() {
         try {
-            List<Puzzle> allPuzzles = PuzzleDataUtil.loadPuzzles();
-            List<Puzzle> roomPuzzles = allPuzzles.stream()
-                .filter(puzzle -> puzzle.getRoom().equals(selectedRoom))
-                .filter(puzzle -> puzzle.getDifficulty().equals(selectedDifficulty))
-                .toList();
+            List<Puzzle> roomPuzzles = PuzzleCatalog.getInstance().forRoom(selectedRoom, selectedDifficulty);
             
             System.out.println("Loaded " + roomPuzzles.size() + " puzzles for " + selectedRoom + " (" + selectedDifficulty + ")");
             
@@ -0,0 +1,95 @@
+package com.example.escapeGame;
+
+import com.google.gson.Gson;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.lang.reflect.Type;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.function.Function;
+import java.util.function.UnaryOperator;
+
+// Repository backed by a KvStore: one JSON value per record, read and written per key
+public class KvRepository<T> implements Repository<T> {
+    private final KvStore store;
+    private final Gson gson;
+    private final Type type;
+    private final Function<T, String> keyOf;
+
+    public KvRepository(KvStore store, Gson gson, Type type, Function<T, String> keyOf) {
+        this.store = store;
+        this.gson = gson;
+        this.type = type;
+        this.keyOf = keyOf;
+    }
+
+    @Override
+    public List<T> all() {
+        List<T> list = new ArrayList<>();
+        store.forEach((k, v) -> {
+            T t = decode(v);
+            if (t != null) list.add(t);
+        });
+        return list;
+    }
+
+    @Override
+    public T get(String key) {
+        return decode(store.get(normalize(key)));
+    }
+
+    @Override
+    public void update(String key, UnaryOperator<T> change) {
+        try {
+            store.update(normalize(key), current -> encode(change.apply(decode(current))));
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    @Override
+    public void put(T value) {
+        update(keyOf.apply(value), current -> value);
+    }
+
+    @Override
+    public void remove(String key) {
+        update(key, current -> null);
+    }
+
+    // Every update is already durable
+    @Override
+    public void flush() {
+    }
+
+    @Override
+    public long lastModified() {
+        return store.lastModified();
+    }
+
+    @Override
+    public long externalChanges() {
+        return store.externalChanges();
+    }
+
+    private T decode(byte[] bytes) {
+        if (bytes == null) return null;
+        try {
+            return gson.fromJson(new String(bytes, StandardCharsets.UTF_8), type);
+        } catch (Exception e) {
+            System.err.println("Skipping unreadable record in " + store.path().getFileName() + ": " + e.getMessage());
+            return null;
+        }
+    }
+
+    private byte[] encode(T value) {
+        return value == null ? null : gson.toJson(value, type).getBytes(StandardCharsets.UTF_8);
+    }
+
+    static String normalize(String key) {
+        return key == null ? "" : key.toLowerCase(Locale.ROOT);
+    }
+}
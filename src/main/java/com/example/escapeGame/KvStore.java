@@ -0,0 +1,351 @@
+package com.example.escapeGame;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.BiConsumer;
+import java.util.function.UnaryOperator;
+import java.util.zip.CRC32;
+
+/**
+ * Embedded log-structured key-value store kept in one file (e.g. data/users.kv), used by the "kv" storage backend.
+ * A commit appends one checksummed record holding a batch of puts and deletes, and an in-memory index maps each
+ * live key to where its latest value sits in the file, so a read is one positional read and a write never rewrites
+ * other keys. A torn record at the tail (crash mid-append) is dropped as a whole. Once most of the file is
+ * superseded values it is compacted into a new file that atomically replaces the old one. Writers hold the file's
+ * lock (see {@link DataFiles#locked}); other processes' appends and compactions are picked up before each access.
+ */
+public final class KvStore {
+    private static final int MAGIC = 0x4B565331; // "KVS1"
+    private static final int HEADER_BYTES = 12; // magic, payload length, crc32 of the payload
+    private static final int MAX_RECORD_BYTES = 64 << 20;
+    // Don't bother compacting small files
+    private static final long COMPACT_MIN_BYTES = Long.getLong("data.kv.compactMinBytes", 1 << 20);
+
+    private static final Map<Path, KvStore> stores = new ConcurrentHashMap<>();
+
+    private final Path path;
+    // Key -> {offset of the value in the file, value length}, in first-insertion order
+    private final LinkedHashMap<String, long[]> index = new LinkedHashMap<>();
+    private FileChannel channel;
+    private Object identity;
+    private long end; // offset just past the last complete record
+    private long liveBytes;
+    // Records from other processes applied, plus reloads after the file was replaced
+    private long externalChanges;
+    private boolean appending;
+
+    private KvStore(Path path) {
+        this.path = path;
+    }
+
+    public static KvStore open(Path path) {
+        return stores.computeIfAbsent(path.toAbsolutePath().normalize(), KvStore::new);
+    }
+
+    public Path path() {
+        return path;
+    }
+
+    public byte[] get(String key) {
+        synchronized (this) {
+            try {
+                catchUp();
+                return read(index.get(key));
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+    }
+
+    public synchronized int size() {
+        try {
+            catchUp();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return index.size();
+    }
+
+    // Every live entry, in first-insertion order
+    public void forEach(BiConsumer<String, byte[]> action) {
+        synchronized (this) {
+            try {
+                catchUp();
+                for (Map.Entry<String, long[]> e : index.entrySet()) action.accept(e.getKey(), read(e.getValue()));
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+    }
+
+    /** Atomically apply a batch: a null value deletes the key. Durable when this returns. */
+    public void commit(Map<String, byte[]> batch) throws IOException {
+        if (batch.isEmpty()) return;
+        DataFiles.locked(path, () -> {
+            synchronized (this) {
+                try {
+                    catchUp();
+                    append(batch);
+                    maybeCompact();
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            }
+        });
+    }
+
+    /** Read-modify-write of one key under the file lock; {@code change} gets null if absent and returns null to delete. */
+    public void update(String key, UnaryOperator<byte[]> change) throws IOException {
+        DataFiles.locked(path, () -> {
+            synchronized (this) {
+                try {
+                    catchUp();
+                    byte[] current = read(index.get(key));
+                    byte[] next = change.apply(current);
+                    if (next == null && current == null) return;
+                    Map<String, byte[]> batch = new HashMap<>();
+                    batch.put(key, next);
+                    append(batch);
+                    maybeCompact();
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            }
+        });
+    }
+
+    /** Replace the whole content with {@code entries} (used by imports); atomic like a compaction. */
+    public void replaceAll(Map<String, byte[]> entries) throws IOException {
+        DataFiles.locked(path, () -> {
+            synchronized (this) {
+                try {
+                    rewrite(entries);
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            }
+        });
+    }
+
+    public synchronized long externalChanges() {
+        try {
+            catchUp();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return externalChanges;
+    }
+
+    public long lastModified() {
+        try {
+            return Files.getLastModifiedTime(path).toMillis();
+        } catch (IOException e) {
+            return -1;
+        }
+    }
+
+    // Follow the file: reopen after another process replaced it, otherwise replay records appended since we last looked
+    private void catchUp() throws IOException {
+        BasicFileAttributes attrs;
+        try {
+            attrs = Files.readAttributes(path, BasicFileAttributes.class);
+        } catch (NoSuchFileException e) {
+            attrs = null;
+        }
+        Object id = attrs == null ? null : (attrs.fileKey() != null ? attrs.fileKey() : attrs.creationTime());
+        if (channel == null || attrs == null || !id.equals(identity) || attrs.size() < end) {
+            reopen();
+            BasicFileAttributes now = Files.readAttributes(path, BasicFileAttributes.class);
+            identity = now.fileKey() != null ? now.fileKey() : now.creationTime();
+        }
+        if (channel.size() > end) replay();
+    }
+
+    private void reopen() throws IOException {
+        if (channel != null) channel.close();
+        Files.createDirectories(path.toAbsolutePath().getParent());
+        channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        index.clear();
+        end = 0;
+        liveBytes = 0;
+        externalChanges++;
+    }
+
+    // Apply complete, intact records after 'end'; stops at anything torn or still being written
+    private void replay() throws IOException {
+        long size = channel.size();
+        ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES);
+        while (size - end >= HEADER_BYTES) {
+            header.clear();
+            if (!readAt(header, end)) break;
+            header.flip();
+            int magic = header.getInt();
+            int length = header.getInt();
+            int crc = header.getInt();
+            if (magic != MAGIC || length < 0 || length > MAX_RECORD_BYTES || end + HEADER_BYTES + length > size) break;
+            ByteBuffer payload = ByteBuffer.allocate(length);
+            if (!readAt(payload, end + HEADER_BYTES) || crc(payload.array(), 0, length) != crc) break;
+            payload.flip();
+            applyRecord(payload, end + HEADER_BYTES);
+            end += HEADER_BYTES + length;
+            if (!appending) externalChanges++;
+        }
+    }
+
+    private void applyRecord(ByteBuffer payload, long payloadOffset) {
+        int count = payload.getInt();
+        for (int i = 0; i < count; i++) {
+            byte[] k = new byte[payload.getShort() & 0xFFFF];
+            payload.get(k);
+            String key = new String(k, StandardCharsets.UTF_8);
+            int valueLength = payload.getInt();
+            long[] old = valueLength < 0 ? index.remove(key) : index.get(key);
+            if (old != null) liveBytes -= old[1];
+            if (valueLength < 0) continue;
+            long offset = payloadOffset + payload.position();
+            if (old != null) {
+                old[0] = offset;
+                old[1] = valueLength;
+            } else {
+                index.put(key, new long[]{offset, valueLength});
+            }
+            liveBytes += valueLength;
+            payload.position(payload.position() + valueLength);
+        }
+    }
+
+    private void append(Map<String, byte[]> batch) throws IOException {
+        // Bytes past the last complete record can only be a torn append from a crash
+        if (channel.size() > end) channel.truncate(end);
+        ByteBuffer record = encode(batch.entrySet());
+        long at = end;
+        while (record.hasRemaining()) at += channel.write(record, at);
+        channel.force(true);
+        // Index our own record the same way as anyone else's
+        appending = true;
+        try {
+            replay();
+        } finally {
+            appending = false;
+        }
+    }
+
+    private static ByteBuffer encode(Collection<Map.Entry<String, byte[]>> entries) {
+        int length = 4;
+        List<byte[]> keys = new ArrayList<>(entries.size());
+        for (Map.Entry<String, byte[]> e : entries) {
+            byte[] k = e.getKey().getBytes(StandardCharsets.UTF_8);
+            if (k.length > 0xFFFF) throw new IllegalArgumentException("Key too long: " + e.getKey());
+            keys.add(k);
+            length += 2 + k.length + 4 + (e.getValue() == null ? 0 : e.getValue().length);
+        }
+        if (length > MAX_RECORD_BYTES) throw new IllegalArgumentException("Batch too large: " + length + " bytes");
+        ByteBuffer buf = ByteBuffer.allocate(HEADER_BYTES + length);
+        buf.position(HEADER_BYTES);
+        buf.putInt(entries.size());
+        int i = 0;
+        for (Map.Entry<String, byte[]> e : entries) {
+            byte[] k = keys.get(i++);
+            buf.putShort((short) k.length).put(k);
+            if (e.getValue() == null) {
+                buf.putInt(-1);
+            } else {
+                buf.putInt(e.getValue().length).put(e.getValue());
+            }
+        }
+        buf.putInt(0, MAGIC).putInt(4, length).putInt(8, crc(buf.array(), HEADER_BYTES, length));
+        buf.flip();
+        return buf;
+    }
+
+    private void maybeCompact() {
+        if (end < COMPACT_MIN_BYTES || liveBytes * 2 > end) return;
+        try {
+            long before = end;
+            Map<String, byte[]> live = new LinkedHashMap<>();
+            for (Map.Entry<String, long[]> e : index.entrySet()) live.put(e.getKey(), read(e.getValue()));
+            rewrite(live);
+            System.out.println("Compacted " + path.getFileName() + ": " + before + " -> " + end + " bytes");
+        } catch (IOException e) {
+            // Not fatal: the current file is still complete
+            System.err.println("Compaction of " + path + " failed: " + e.getMessage());
+        }
+    }
+
+    // Write entries into a new file (split into records of bounded size), swap it in and reload from it
+    private void rewrite(Map<String, byte[]> entries) throws IOException {
+        Path dir = path.toAbsolutePath().getParent();
+        Files.createDirectories(dir);
+        Path tmp = Files.createTempFile(dir, path.getFileName().toString(), ".tmp");
+        try {
+            try (FileChannel out = FileChannel.open(tmp, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+                List<Map.Entry<String, byte[]>> chunk = new ArrayList<>();
+                long chunkBytes = 0;
+                for (Map.Entry<String, byte[]> e : entries.entrySet()) {
+                    if (e.getValue() == null) continue;
+                    long entryBytes = 6L + e.getKey().length() * 3L + e.getValue().length;
+                    if (!chunk.isEmpty() && chunkBytes + entryBytes > MAX_RECORD_BYTES / 2) {
+                        writeRecord(out, chunk);
+                        chunk.clear();
+                        chunkBytes = 0;
+                    }
+                    chunk.add(e);
+                    chunkBytes += entryBytes;
+                }
+                if (!chunk.isEmpty()) writeRecord(out, chunk);
+                out.force(true);
+            }
+            if (channel != null) {
+                channel.close();
+                channel = null;
+            }
+            try {
+                Files.move(tmp, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(tmp, path, StandardCopyOption.REPLACE_EXISTING);
+            }
+        } finally {
+            Files.deleteIfExists(tmp);
+        }
+        catchUp();
+    }
+
+    private static void writeRecord(FileChannel out, List<Map.Entry<String, byte[]>> entries) throws IOException {
+        ByteBuffer record = encode(entries);
+        while (record.hasRemaining()) out.write(record);
+    }
+
+    private byte[] read(long[] location) throws IOException {
+        if (location == null) return null;
+        ByteBuffer buf = ByteBuffer.allocate((int) location[1]);
+        readFully(buf, location[0]);
+        return buf.array();
+    }
+
+    private void readFully(ByteBuffer buf, long position) throws IOException {
+        if (!readAt(buf, position)) throw new IOException("Unexpected end of " + path);
+    }
+
+    // False if the file ends first (e.g. a torn tail being truncated by another writer)
+    private boolean readAt(ByteBuffer buf, long position) throws IOException {
+        while (buf.hasRemaining()) {
+            int n = channel.read(buf, position);
+            if (n < 0) return false;
+            position += n;
+        }
+        return true;
+    }
+
+    private static int crc(byte[] bytes, int offset, int length) {
+        CRC32 crc = new CRC32();
+        crc.update(bytes, offset, length);
+        return (int) crc.getValue();
+    }
+}
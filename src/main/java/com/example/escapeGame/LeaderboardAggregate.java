@@ -0,0 +1,346 @@
+package com.example.escapeGame;
+
+import java.time.LocalDateTime;
+import java.util.*;
+
+/**
+ * Leaderboard figures kept up to date as games are recorded, instead of being recomputed from every EscapeRecord
+ * each time the leaderboard opens: per player the play and escape counts, best multiplayer score and Hard rooms
+ * escaped, and per (player, room, level, mode) the best score. Players and escapes are also kept in sorted sets in
+ * display order (plus per room and level, and by score), so a page is read by walking an index from a cursor
+ * instead of sorting or scanning everything.
+ * Not thread-safe: {@link LeaderboardDataUtil} updates and reads it under its lock.
+ */
+public final class LeaderboardAggregate {
+    // Players: most escapes, then best multiplayer score, then name
+    private static final Comparator<Player> PLAYER_ORDER = Comparator
+            .comparingInt((Player p) -> -p.escapes)
+            .thenComparingInt(p -> -p.bestMp)
+            .thenComparing(p -> p.username, String.CASE_INSENSITIVE_ORDER)
+            .thenComparingLong(p -> p.id);
+    // Escapes: room, level (Hard first), high score, most recent, then player name
+    private static final Comparator<Escape> ESCAPE_ORDER = Comparator
+            .comparingInt((Escape e) -> e.roomOrder)
+            .thenComparingInt(e -> e.levelOrder)
+            .thenComparingInt(e -> e.group.best == null ? 0 : -e.group.best)
+            .thenComparing(e -> e.date, Comparator.nullsLast(Comparator.reverseOrder()))
+            .thenComparing(e -> e.player.username, String.CASE_INSENSITIVE_ORDER)
+            .thenComparingLong(e -> e.id);
+    // Escapes with a score: highest first, then most recent
+    private static final Comparator<Escape> SCORE_ORDER = Comparator
+            .comparingInt((Escape e) -> e.score == null ? 0 : -e.score)
+            .thenComparing(e -> e.date, Comparator.nullsLast(Comparator.reverseOrder()))
+            .thenComparingLong(e -> e.id);
+
+    private final Map<String, Player> players = new HashMap<>();
+    private final Map<GroupKey, Group> groups = new HashMap<>();
+    private final TreeSet<Player> playerOrder = new TreeSet<>(PLAYER_ORDER);
+    private final TreeSet<Escape> escapeOrder = new TreeSet<>(ESCAPE_ORDER);
+    // Same order, per lower-cased "room\0level"
+    private final Map<String, TreeSet<Escape>> escapesByRoomLevel = new HashMap<>();
+    private final TreeSet<Escape> escapesByScore = new TreeSet<>(SCORE_ORDER);
+    private long nextId;
+
+    /** One line of the players table. */
+    public record PlayerRow(String username, int soloPlays, int multiPlays, int escapes, int bestMultiplayerScore,
+                            List<String> hardRooms) {
+        public String primaryModeLabel() {
+            if (multiPlays > soloPlays) return "Competitive";
+            if (soloPlays > multiPlays) return "Solo";
+            return "Balanced";
+        }
+
+        // True if the player escaped every room in {@code hardRoomsUniverse} (lower-cased names) on Hard
+        public boolean escapedAllHard(Set<String> hardRoomsUniverse) {
+            if (hardRoomsUniverse.isEmpty()) return false;
+            Set<String> lower = new HashSet<>();
+            for (String r : hardRooms) lower.add(lower(r));
+            return lower.containsAll(hardRoomsUniverse);
+        }
+    }
+
+    /** One line of the escapes table; highScore is the best score for this player, room, level and mode (may be null). */
+    public record EscapeRow(String username, String room, String level, LocalDateTime date, Integer highScore,
+                            boolean champion, boolean multiplayer) {}
+
+    /**
+     * Which escapes to read: optional room, level and mode filters (null = any, names ignore case), in display order
+     * or by the escape's own score (top-K, only escapes with a score). {@code after} continues from a previous page,
+     * and {@code skip} passes over that many matching rows first, for jumping ahead.
+     */
+    public record EscapeQuery(String room, String level, Boolean multiplayer, boolean byScore, Cursor after, int skip, int limit) {
+        public static EscapeQuery page(int limit) {
+            return new EscapeQuery(null, null, null, false, null, 0, limit);
+        }
+
+        public static EscapeQuery topScores(int k) {
+            return new EscapeQuery(null, null, null, true, null, 0, k);
+        }
+
+        public EscapeQuery in(String room, String level) {
+            return new EscapeQuery(room, level, multiplayer, byScore, after, skip, limit);
+        }
+
+        public EscapeQuery mode(Boolean multiplayer) {
+            return new EscapeQuery(room, level, multiplayer, byScore, after, skip, limit);
+        }
+
+        public EscapeQuery from(Cursor after, int skip) {
+            return new EscapeQuery(room, level, multiplayer, byScore, after, skip, limit);
+        }
+    }
+
+    /** A page of rows; {@code next} continues after its last row (null when there is nothing more). */
+    public record EscapePage(List<EscapeRow> rows, Cursor next) {}
+
+    /**
+     * Position after a row, by its sort values rather than its index, so it stays valid while escapes are added
+     * or removed in front of it.
+     */
+    public static final class Cursor {
+        private final Escape position;
+
+        private Cursor(Escape position) {
+            this.position = position;
+        }
+    }
+
+    private static final class Player {
+        final long id;
+        final String key;
+        final String username;
+        int soloPlays;
+        int multiPlays;
+        int escapes;
+        int bestMp;
+        boolean hasHard;
+        // Hard rooms escaped, lower-cased name -> name as first recorded
+        final TreeMap<String, String> hardRooms = new TreeMap<>();
+        final List<Escape> rows = new ArrayList<>();
+
+        Player(long id, String key, String username) {
+            this.id = id;
+            this.key = key;
+            this.username = username;
+        }
+    }
+
+    private record GroupKey(String player, String room, String level, boolean multiplayer) {}
+
+    // Escapes sharing a best score; their position in escapeOrder depends on it
+    private static final class Group {
+        Integer best;
+        final List<Escape> rows = new ArrayList<>();
+    }
+
+    private static final class Escape {
+        final long id;
+        final Player player;
+        final Group group;
+        final String room;
+        final String level;
+        final LocalDateTime date;
+        final Integer score;
+        final boolean multiplayer;
+        final int roomOrder;
+        final int levelOrder;
+
+        Escape(long id, Player player, Group group, EscapeRecord er, boolean multiplayer) {
+            this.id = id;
+            this.player = player;
+            this.group = group;
+            this.room = er.getRoom();
+            this.level = er.getLevel();
+            this.date = er.getDate();
+            this.score = er.getScore();
+            this.multiplayer = multiplayer;
+            this.roomOrder = roomOrderIndex(room);
+            this.levelOrder = levelOrderIndex(level);
+        }
+
+        // Frozen copy of the sort values, for a Cursor (its group's best score may change later)
+        Escape position() {
+            Group g = new Group();
+            g.best = group.best;
+            Player p = new Player(player.id, player.key, player.username);
+            EscapeRecord er = new EscapeRecord(room, level, date);
+            er.setScore(score);
+            return new Escape(id, p, g, er, multiplayer);
+        }
+    }
+
+    void rebuild(Collection<PlayerStats> all) {
+        rebuild(all, EscapeArchive.empty());
+    }
+
+    // The archived records count like the players' own escapes
+    void rebuild(Collection<PlayerStats> all, EscapeArchive archive) {
+        players.clear();
+        groups.clear();
+        playerOrder.clear();
+        escapeOrder.clear();
+        escapesByRoomLevel.clear();
+        escapesByScore.clear();
+        for (PlayerStats ps : all) {
+            Player p = player(ps.getUsername());
+            playerOrder.remove(p);
+            p.soloPlays += ps.getSoloPlays();
+            p.multiPlays += ps.getMultiPlays();
+            if (ps.getEscapes() != null) {
+                for (EscapeRecord er : ps.getEscapes()) addEscape(p, er);
+            }
+            playerOrder.add(p);
+        }
+        archive.forEach((username, room, level, when, score, multiplayer) -> {
+            Player p = player(username);
+            playerOrder.remove(p);
+            EscapeRecord er = new EscapeRecord(room, level, when);
+            er.setScore(score);
+            er.setMultiplayer(multiplayer);
+            addEscape(p, er);
+            playerOrder.add(p);
+        });
+    }
+
+    /** Count one game; {@code escape} is the record added to the player's escapes, or null if they didn't escape. */
+    void recordGame(String username, boolean multiplayer, EscapeRecord escape) {
+        Player p = player(username);
+        playerOrder.remove(p);
+        if (multiplayer) p.multiPlays++; else p.soloPlays++;
+        if (escape != null) addEscape(p, escape);
+        playerOrder.add(p);
+    }
+
+    void removePlayer(String username) {
+        Player p = players.remove(lower(username));
+        if (p == null) return;
+        playerOrder.remove(p);
+        for (Escape e : p.rows) unindex(e);
+        groups.keySet().removeIf(k -> k.player().equals(p.key));
+    }
+
+    public int playerCount() {
+        return playerOrder.size();
+    }
+
+    public int escapeCount() {
+        return escapeOrder.size();
+    }
+
+    EscapePage escapes(EscapeQuery q) {
+        NavigableSet<Escape> index;
+        if (q.byScore()) {
+            index = escapesByScore;
+        } else if (q.room() != null && q.level() != null) {
+            index = escapesByRoomLevel.getOrDefault(roomLevelKey(q.room(), q.level()), new TreeSet<>(ESCAPE_ORDER));
+        } else {
+            index = escapeOrder;
+        }
+        if (q.after() != null) index = index.tailSet(q.after().position, false);
+        String room = q.room() == null ? null : lower(q.room());
+        String level = q.level() == null ? null : lower(q.level());
+        List<EscapeRow> rows = new ArrayList<>(Math.min(q.limit(), 256));
+        int skip = q.skip();
+        Escape last = null;
+        for (Escape e : index) {
+            if (rows.size() >= q.limit()) break;
+            if (room != null && !room.equals(lower(e.room))) continue;
+            if (level != null && !level.equals(lower(e.level))) continue;
+            if (q.multiplayer() != null && q.multiplayer() != e.multiplayer) continue;
+            last = e;
+            if (skip > 0) { skip--; continue; }
+            rows.add(new EscapeRow(e.player.username, e.room, e.level, e.date, e.group.best, e.player.hasHard, e.multiplayer));
+        }
+        boolean more = last != null && index.higher(last) != null;
+        return new EscapePage(rows, more ? new Cursor(last.position()) : null);
+    }
+
+    List<PlayerRow> players(int offset, int limit) {
+        List<PlayerRow> page = new ArrayList<>(Math.min(limit, Math.max(0, playerOrder.size() - offset)));
+        Iterator<Player> it = playerOrder.iterator();
+        for (int i = 0; i < offset && it.hasNext(); i++) it.next();
+        while (it.hasNext() && page.size() < limit) {
+            Player p = it.next();
+            page.add(new PlayerRow(p.username, p.soloPlays, p.multiPlays, p.escapes, p.bestMp, List.copyOf(p.hardRooms.values())));
+        }
+        return page;
+    }
+
+    private Player player(String username) {
+        return players.computeIfAbsent(lower(username), k -> {
+            Player p = new Player(nextId++, k, username);
+            playerOrder.add(p);
+            return p;
+        });
+    }
+
+    // Caller has taken p out of playerOrder
+    private void addEscape(Player p, EscapeRecord er) {
+        boolean mp = Boolean.TRUE.equals(er.getMultiplayer());
+        p.escapes++;
+        if (er.getLevel() != null && "Hard".equalsIgnoreCase(er.getLevel())) {
+            // The champion flag is read when rows are handed out, so nothing needs re-sorting
+            p.hasHard = true;
+            if (er.getRoom() != null) p.hardRooms.putIfAbsent(lower(er.getRoom()), er.getRoom());
+        }
+        Group g = groups.computeIfAbsent(new GroupKey(p.key, lower(er.getRoom()), lower(er.getLevel()), mp), k -> new Group());
+        Integer score = er.getScore();
+        if (score != null) {
+            if (mp && score > p.bestMp) p.bestMp = score;
+            if (g.best == null || score > g.best) {
+                // The group's rows sort by its best score: take them out while it changes
+                for (Escape e : g.rows) unindex(e);
+                g.best = score;
+                for (Escape e : g.rows) index(e);
+            }
+        }
+        Escape e = new Escape(nextId++, p, g, er, mp);
+        g.rows.add(e);
+        p.rows.add(e);
+        index(e);
+    }
+
+    private void index(Escape e) {
+        escapeOrder.add(e);
+        escapesByRoomLevel.computeIfAbsent(roomLevelKey(e.room, e.level), k -> new TreeSet<>(ESCAPE_ORDER)).add(e);
+        if (e.score != null) escapesByScore.add(e);
+    }
+
+    private void unindex(Escape e) {
+        escapeOrder.remove(e);
+        TreeSet<Escape> set = escapesByRoomLevel.get(roomLevelKey(e.room, e.level));
+        if (set != null) {
+            set.remove(e);
+            if (set.isEmpty()) escapesByRoomLevel.remove(roomLevelKey(e.room, e.level));
+        }
+        if (e.score != null) escapesByScore.remove(e);
+    }
+
+    private static String roomLevelKey(String room, String level) {
+        return lower(room) + "\u0000" + lower(level);
+    }
+
+    private static String lower(String s) {
+        return s == null ? "" : s.toLowerCase(Locale.ROOT);
+    }
+
+    // Custom ordering for rooms in the escapes table
+    private static int roomOrderIndex(String room) {
+        if (room == null) return Integer.MAX_VALUE;
+        String normalized = room.trim().toLowerCase(Locale.ROOT).replaceAll("\\s+", "");
+        if ("riddlechamber".equals(normalized)) return 0;
+        if ("programminglab".equals(normalized)) return 1;
+        if ("mathquiz".equals(normalized)) return 2;
+        return 3; // others go last
+    }
+
+    // Levels: Hard > Medium > Easy
+    private static int levelOrderIndex(String level) {
+        if (level == null) return Integer.MAX_VALUE;
+        String normalized = level.trim().toLowerCase(Locale.ROOT);
+        if ("hard".equals(normalized)) return 0;
+        if ("medium".equals(normalized)) return 1;
+        if ("easy".equals(normalized)) return 2;
+        return 3; // others go last
+    }
+}
@@ -1,8 +1,6 @@
 package com.example.escapeGame;
 
 import javafx.beans.property.SimpleStringProperty;
-import javafx.collections.FXCollections;
-import javafx.collections.ObservableList;
 import javafx.fxml.FXML;
 import javafx.scene.control.*;
 
@@ -13,12 +11,12 @@ import java.util.List;
 
 public class LeaderboardController {
     // Players summary table
-    @FXML private TableView<PlayerStats> playersTable;
-    @FXML private TableColumn<PlayerStats, String> colSummaryPlayer;
-    @FXML private TableColumn<PlayerStats, Number> colSolo;
-    @FXML private TableColumn<PlayerStats, Number> colMulti;
-    @FXML private TableColumn<PlayerStats, String> colPrimaryMode;
-    @FXML private TableColumn<PlayerStats, String> colHardAchievements;
+    @FXML private TableView<LeaderboardAggregate.PlayerRow> playersTable;
+    @FXML private TableColumn<LeaderboardAggregate.PlayerRow, String> colSummaryPlayer;
+    @FXML private TableColumn<LeaderboardAggregate.PlayerRow, Number> colSolo;
+    @FXML private TableColumn<LeaderboardAggregate.PlayerRow, Number> colMulti;
+    @FXML private TableColumn<LeaderboardAggregate.PlayerRow, String> colPrimaryMode;
+    @FXML private TableColumn<LeaderboardAggregate.PlayerRow, String> colHardAchievements;
     @FXML private Button btnReset;
 
     // Escapes table (flattened across users)
@@ -30,22 +28,25 @@ public class LeaderboardController {
     @FXML private TableColumn<UserEscape, String> colEscapeHighScore;
     @FXML private TableColumn<UserEscape, String> colEscapeDate;
 
-    private final ObservableList<PlayerStats> playerRows = FXCollections.observableArrayList();
-    private final ObservableList<UserEscape> escapeRows = FXCollections.observableArrayList();
-    // Cache for achievements column (username -> text)
-    private final java.util.Map<String, String> hardAchievementsByUser = new java.util.HashMap<>();
+    // Players and escapes are fetched in pages of this many rows as the tables scroll
+    private static final int PLAYER_PAGE_SIZE = 50;
+    private static final int ESCAPE_PAGE_SIZE = 50;
+    // Rooms (lower-cased) that have Hard puzzles, for the BOSS achievement
+    private java.util.Set<String> hardRoomsUniverse = java.util.Set.of();
 
     @FXML
     public void initialize() {
         // Players
-        colSummaryPlayer.setCellValueFactory(cd -> new SimpleStringProperty(cd.getValue().getUsername()));
-        colSolo.setCellValueFactory(cd -> new javafx.beans.property.SimpleIntegerProperty(cd.getValue().getSoloPlays()));
-        colMulti.setCellValueFactory(cd -> new javafx.beans.property.SimpleIntegerProperty(cd.getValue().getMultiPlays()));
-        colPrimaryMode.setCellValueFactory(cd -> new SimpleStringProperty(cd.getValue().getPrimaryModeLabel()));
+        // Rows past a page that came back short (players deleted since the count) are null and stay blank
+        colSummaryPlayer.setCellValueFactory(cd -> cd.getValue() == null ? null : new SimpleStringProperty(cd.getValue().username()));
+        colSolo.setCellValueFactory(cd -> cd.getValue() == null ? null : new javafx.beans.property.SimpleIntegerProperty(cd.getValue().soloPlays()));
+        colMulti.setCellValueFactory(cd -> cd.getValue() == null ? null : new javafx.beans.property.SimpleIntegerProperty(cd.getValue().multiPlays()));
+        colPrimaryMode.setCellValueFactory(cd -> cd.getValue() == null ? null : new SimpleStringProperty(cd.getValue().primaryModeLabel()));
         if (colHardAchievements != null) {
-            colHardAchievements.setCellValueFactory(cd -> new SimpleStringProperty(
-                    hardAchievementsByUser.getOrDefault(cd.getValue().getUsername(), "")));
+            colHardAchievements.setCellValueFactory(cd -> cd.getValue() == null ? null : new SimpleStringProperty(achievementsText(cd.getValue())));
         }
+        // Paged like the escapes, in the leaderboard's order
+        for (TableColumn<LeaderboardAggregate.PlayerRow, ?> c : playersTable.getColumns()) c.setSortable(false);
 
         // Admin-only: Reset Player button is enabled for admins, disabled for normal users
         if (btnReset != null) {
@@ -55,20 +56,21 @@ public class LeaderboardController {
 
         // Escapes
         DateTimeFormatter fmt = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm");
-        colEscapeUser.setCellValueFactory(cd -> new SimpleStringProperty(
-                cd.getValue().getUser()));
-        colEscapeRoom.setCellValueFactory(cd -> new SimpleStringProperty(cd.getValue().getRoom()));
-        colEscapeLevel.setCellValueFactory(cd -> new SimpleStringProperty(
-                cd.getValue().getLevel() == null ? "" :
-                        ("Hard".equalsIgnoreCase(cd.getValue().getLevel()) ? "Hard 🏆" : cd.getValue().getLevel())));
+        // A page that comes back short (escapes deleted since the count was taken) leaves null rows at the end
+        colEscapeUser.setCellValueFactory(cd -> escapeText(cd.getValue(), UserEscape::getUser));
+        colEscapeRoom.setCellValueFactory(cd -> escapeText(cd.getValue(), UserEscape::getRoom));
+        colEscapeLevel.setCellValueFactory(cd -> escapeText(cd.getValue(), e -> e.getLevel() == null ? "" :
+                ("Hard".equalsIgnoreCase(e.getLevel()) ? "Hard 🏆" : e.getLevel())));
         if (colEscapeMode != null) {
-            colEscapeMode.setCellValueFactory(cd -> new SimpleStringProperty(cd.getValue().getMode()));
+            colEscapeMode.setCellValueFactory(cd -> escapeText(cd.getValue(), UserEscape::getMode));
         }
         if (colEscapeHighScore != null) {
-            colEscapeHighScore.setCellValueFactory(cd -> new SimpleStringProperty(cd.getValue().getHighScoreText()));
+            colEscapeHighScore.setCellValueFactory(cd -> escapeText(cd.getValue(), UserEscape::getHighScoreText));
         }
-        colEscapeDate.setCellValueFactory(cd -> new SimpleStringProperty(
-                cd.getValue().getDate() == null ? "" : cd.getValue().getDate().format(fmt)));
+        colEscapeDate.setCellValueFactory(cd -> escapeText(cd.getValue(),
+                e -> e.getDate() == null ? "" : e.getDate().format(fmt)));
+        // Rows arrive in the leaderboard's own order, a page at a time, so the table can't re-sort them
+        for (TableColumn<UserEscape, ?> c : escapesTable.getColumns()) c.setSortable(false);
 
         reload();
     }
@@ -79,9 +81,9 @@ public class LeaderboardController {
         if (!isAdmin()) {
             return;
         }
-        PlayerStats selected = playersTable.getSelectionModel().getSelectedItem();
+        LeaderboardAggregate.PlayerRow selected = playersTable.getSelectionModel().getSelectedItem();
         if (selected == null) return;
-        LeaderboardDataUtil.deleteStatsForPlayer(selected.getUsername());
+        LeaderboardDataUtil.deleteStatsForPlayer(selected.username());
         reload();
     }
 
@@ -94,133 +96,44 @@ public class LeaderboardController {
         }
     }
 
+    // Rows come pre-aggregated and pre-sorted from LeaderboardDataUtil; nothing is recomputed here
     private void reload() {
-        List<PlayerStats> all = LeaderboardDataUtil.loadAll();
-
-        // Build universe of rooms that have Hard difficulty available
-        java.util.Set<String> hardRoomsUniverse = new java.util.HashSet<>(); // lower-cased room names
-        try {
-            List<Puzzle> puzzles = PuzzleDataUtil.loadPuzzles();
-            for (Puzzle p : puzzles) {
-                if (p.getRoom() != null && p.getDifficulty() != null && "Hard".equalsIgnoreCase(p.getDifficulty())) {
-                    hardRoomsUniverse.add(p.getRoom().toLowerCase());
-                }
-            }
-        } catch (Exception ignored) {}
-
-        // Compute per-user Hard-level flag, per (user,room,level) best MP & Solo scores, and per-user best MP score
-        java.util.Map<String, Boolean> userHasHard = new java.util.HashMap<>();
-        java.util.Map<String, Integer> bestMpScoreByKey = new java.util.HashMap<>(); // key: user|room|level
-        java.util.Map<String, Integer> bestSoloScoreByKey = new java.util.HashMap<>(); // key: user|room|level
-        java.util.Map<String, Integer> bestMpScoreByUser = new java.util.HashMap<>(); // key: user
-        hardAchievementsByUser.clear();
-        for (PlayerStats ps : all) {
-            if (ps.getEscapes() == null) {
-                userHasHard.put(ps.getUsername(), false);
-                hardAchievementsByUser.put(ps.getUsername(), "");
-                continue;
+        hardRoomsUniverse = PuzzleCatalog.getInstance().roomsWithDifficulty("Hard");
+
+        // Player rows are addressed by position, so a page's cursor is simply the offset of the next one
+        PagedList.Loader<LeaderboardAggregate.PlayerRow, Integer> players = (after, skip, limit) -> {
+            int offset = (after == null ? 0 : after) + skip;
+            List<LeaderboardAggregate.PlayerRow> rows = LeaderboardDataUtil.playerRows(offset, limit);
+            return new PagedList.Page<>(rows, rows.size() == limit ? offset + limit : null);
+        };
+        playersTable.setItems(new PagedList<>(LeaderboardDataUtil.playerCount(), PLAYER_PAGE_SIZE, players));
+
+        PagedList.Loader<UserEscape, LeaderboardAggregate.Cursor> loader = (after, skip, limit) -> {
+            LeaderboardAggregate.EscapePage page =
+                    LeaderboardDataUtil.queryEscapes(LeaderboardAggregate.EscapeQuery.page(limit).from(after, skip));
+            List<UserEscape> rows = new ArrayList<>(page.rows().size());
+            for (LeaderboardAggregate.EscapeRow r : page.rows()) {
+                rows.add(new UserEscape(r.username(), r.room(), r.level(), r.date(), r.highScore(), r.champion(), r.multiplayer()));
             }
-            boolean hasHard = false;
-            int userBestMp = 0;
-            java.util.Set<String> playerHardLower = new java.util.HashSet<>();
-            java.util.List<String> playerHardRooms = new ArrayList<>();
-            for (EscapeRecord er : ps.getEscapes()) {
-                if (er.getLevel() != null && "Hard".equalsIgnoreCase(er.getLevel())) {
-                    hasHard = true;
-                    if (er.getRoom() != null) {
-                        String lc = er.getRoom().toLowerCase();
-                        if (!playerHardLower.contains(lc)) {
-                            playerHardLower.add(lc);
-                            playerHardRooms.add(er.getRoom());
-                        }
-                    }
-                }
-                // Consider scores for both modes
-                if ( er.getScore() != null ) {
-                    String key = (ps.getUsername() + "|" + er.getRoom() + "|" + er.getLevel()).toLowerCase();
-                    if (Boolean.TRUE.equals(er.getMultiplayer())) {
-                        bestMpScoreByKey.merge(key, er.getScore(), Math::max);
-                        if (er.getScore() > userBestMp) userBestMp = er.getScore();
-                    } else {
-                        bestSoloScoreByKey.merge(key, er.getScore(), Math::max);
-                    }
-                }
-            }
-            userHasHard.put(ps.getUsername(), hasHard);
-            bestMpScoreByUser.put(ps.getUsername().toLowerCase(), userBestMp);
-
-            // Compose achievements text: crowns per Hard room (abbreviated), or three-crown BOSS if all Hard rooms are completed
-            String achievementsText = "";
-            if (!playerHardRooms.isEmpty()) {
-                boolean isBoss = !hardRoomsUniverse.isEmpty() && playerHardLower.containsAll(hardRoomsUniverse);
-                if (isBoss) {
-                    achievementsText = "\uD83D\uDC51\uD83D\uDC51\uD83D\uDC51"; // 👑👑👑
-                } else {
-                    // Sort for stable display and join with commas
-                    java.util.Collections.sort(playerHardRooms, String.CASE_INSENSITIVE_ORDER);
-                    StringBuilder sb = new StringBuilder();
-                    for (int i = 0; i < playerHardRooms.size(); i++) {
-                        if (i > 0) sb.append(", ");
-                        sb.append("\uD83D\uDC51 ").append(shortenRoom(playerHardRooms.get(i))); // 👑 + abbreviated room
-                    }
-                    achievementsText = sb.toString();
-                }
-            }
-            hardAchievementsByUser.put(ps.getUsername(), achievementsText);
-        }
+            return new PagedList.Page<>(rows, page.next());
+        };
+        escapesTable.setItems(new PagedList<>(LeaderboardDataUtil.escapeCount(), ESCAPE_PAGE_SIZE, loader));
+    }
 
-        // Sort players summary as requested
-        all.sort((a, b) -> {
-            int aEsc = (a.getEscapes() == null) ? 0 : a.getEscapes().size();
-            int bEsc = (b.getEscapes() == null) ? 0 : b.getEscapes().size();
-            int byEscapes = Integer.compare(bEsc, aEsc); // desc
-            if (byEscapes != 0) return byEscapes;
-            int aBest = bestMpScoreByUser.getOrDefault(a.getUsername().toLowerCase(), 0);
-            int bBest = bestMpScoreByUser.getOrDefault(b.getUsername().toLowerCase(), 0);
-            int byBestMp = Integer.compare(bBest, aBest); // desc
-            if (byBestMp != 0) return byBestMp;
-            return a.getUsername().compareToIgnoreCase(b.getUsername());
-        });
-        playerRows.setAll(all);
-        playersTable.setItems(playerRows);
+    private static SimpleStringProperty escapeText(UserEscape row, java.util.function.Function<UserEscape, String> text) {
+        return new SimpleStringProperty(row == null ? "" : text.apply(row));
+    }
 
-        // Build rows: include both solo and multiplayer escapes; show Mode and compute per-(user,room,level) MP high score
-        List<UserEscape> flat = new ArrayList<>();
-        for (PlayerStats ps : all) {
-            if (ps.getEscapes() == null) continue;
-            for (EscapeRecord er : ps.getEscapes()) {
-                boolean isMp = Boolean.TRUE.equals(er.getMultiplayer());
-                String key = (ps.getUsername() + "|" + er.getRoom() + "|" + er.getLevel()).toLowerCase();
-                Integer hi = isMp ? bestMpScoreByKey.get(key) : bestSoloScoreByKey.get(key);
-                boolean champion = Boolean.TRUE.equals(userHasHard.get(ps.getUsername()));
-                flat.add(new UserEscape(ps.getUsername(), er.getRoom(), er.getLevel(), er.getDate(), hi, champion, isMp));
-            }
+    // Crowns per Hard room (abbreviated), or three-crown BOSS if all Hard rooms are completed
+    private String achievementsText(LeaderboardAggregate.PlayerRow row) {
+        if (row.hardRooms().isEmpty()) return "";
+        if (row.escapedAllHard(hardRoomsUniverse)) return "\uD83D\uDC51\uD83D\uDC51\uD83D\uDC51"; // 👑👑👑
+        StringBuilder sb = new StringBuilder();
+        for (String room : row.hardRooms()) {
+            if (sb.length() > 0) sb.append(", ");
+            sb.append("\uD83D\uDC51 ").append(shortenRoom(room)); // 👑 + abbreviated room
         }
-        // Sort by: Room (custom), Level (Hard > Medium > Easy), High Score desc, Date desc (most recent first), then Player name asc
-        flat.sort((a, b) -> {
-            int byRoom = Integer.compare(roomOrderIndex(a.getRoom()), roomOrderIndex(b.getRoom()));
-            if (byRoom != 0) return byRoom;
-            int byLevel = Integer.compare(levelOrderIndex(a.getLevel()), levelOrderIndex(b.getLevel()));
-            if (byLevel != 0) return byLevel;
-            int as = a.getHighScore() == null ? 0 : a.getHighScore();
-            int bs = b.getHighScore() == null ? 0 : b.getHighScore();
-            int byScore = Integer.compare(bs, as); // desc
-            if (byScore != 0) return byScore;
-            java.time.LocalDateTime ad = a.getDate();
-            java.time.LocalDateTime bd = b.getDate();
-            if (ad != null && bd != null) {
-                int byDate = bd.compareTo(ad); // desc (most recent first)
-                if (byDate != 0) return byDate;
-            } else if (ad == null && bd != null) {
-                return 1; // nulls last
-            } else if (ad != null && bd == null) {
-                return -1;
-            }
-            return a.getUser().compareToIgnoreCase(b.getUser());
-        });
-
-        escapeRows.setAll(flat);
-        escapesTable.setItems(escapeRows);
+        return sb.toString();
     }
 
     private boolean isAdmin() {
@@ -245,26 +158,6 @@ public class LeaderboardController {
         return sb.toString();
     }
 
-    // Define custom ordering for rooms in Escapes table
-    private static int roomOrderIndex(String room) {
-        if (room == null) return Integer.MAX_VALUE;
-        String normalized = room.trim().toLowerCase().replaceAll("\\s+", "");
-        if ("riddlechamber".equals(normalized)) return 0;
-        if ("programminglab".equals(normalized)) return 1;
-        if ("mathquiz".equals(normalized)) return 2;
-        return 3; // others go last
-    }
-
-    // Define custom ordering for levels in Escapes table
-    private static int levelOrderIndex(String level) {
-        if (level == null) return Integer.MAX_VALUE;
-        String normalized = level.trim().toLowerCase();
-        if ("hard".equals(normalized)) return 0;
-        if ("medium".equals(normalized)) return 1;
-        if ("easy".equals(normalized)) return 2;
-        return 3; // others go last
-    }
-
     public static class UserEscape {
         private final String user;
         private final String room;
@@ -2,21 +2,50 @@ package com.example.escapeGame;
 
 import com.google.gson.Gson;
 import com.google.gson.GsonBuilder;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonParser;
 import com.google.gson.reflect.TypeToken;
 
-import java.io.FileWriter;
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
-import java.io.Writer;
 import java.lang.reflect.Type;
-import java.nio.file.Files;
-import java.nio.file.Path;
-import java.nio.file.Paths;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
 import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
 import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
 
+/**
+ * Leaderboard storage: a snapshot (leaderboard.json) plus an append-only event log (leaderboard.log),
+ * one JSON line per finished game or deletion. Events take effect in memory at once and are appended in order by
+ * the write-behind flusher (see {@link WriteBehindStore}), batched and fsynced under an exclusive file lock, so games
+ * finished at the same time by different clients are both kept. Every event carries a sequence number and
+ * the snapshot records the last one it contains, which makes replay after a crash during compaction idempotent.
+ * The aggregated PlayerStats live in memory and catch up with the log tail (including other processes' appends).
+ * With {@code -Ddata.backend=kv} the snapshot is a KvStore (leaderboard.kv) holding one record per player plus the
+ * sequence number, and compaction writes only the players that changed, in one atomic batch.
+ * Escapes older than {@code leaderboard.hotDays} (default 90) are moved out of the players' lists into a compressed
+ * columnar {@link EscapeArchive} (leaderboard.archive) when the log is compacted; the snapshot keeps only recent ones.
+ */
 public class LeaderboardDataUtil {
     private static final String FILE_NAME = "src/main/resources/leaderboard.json";
+    // Fold the log into the snapshot once it holds this many events
+    private static final int COMPACT_EVERY = Integer.getInteger("leaderboard.compactEvery", 100);
+    private static final boolean KV = Repositories.useKv();
+    private static final String SEQ_KEY = "meta:seq";
+    private static final String PLAYER_PREFIX = "player:";
+    // Escapes older than this are moved into the archive at compaction
+    private static final int HOT_DAYS = Integer.getInteger("leaderboard.hotDays", 90);
 
     private static Path getDataPath() {
         Path dir = Paths.get(System.getProperty("user.dir"), "data");
@@ -24,45 +53,204 @@ public class LeaderboardDataUtil {
         return dir.resolve("leaderboard.json");
     }
 
+    private static Path getLogPath() {
+        return getDataPath().resolveSibling("leaderboard.log");
+    }
+
+    private static Path getArchivePath() {
+        return getDataPath().resolveSibling("leaderboard.archive");
+    }
+
+    // The file holding the snapshot for the configured backend
+    private static Path getSnapshotPath() {
+        return KV ? Repositories.kvPath(getDataPath()) : getDataPath();
+    }
+
     private static final Gson gson = new GsonBuilder()
             .registerTypeAdapter(LocalDateTime.class, new TypeAdapters.LocalDateTimeAdapter())
             .setPrettyPrinting()
             .create();
+    // Log lines must stay on one line
+    private static final Gson lineGson = new GsonBuilder()
+            .registerTypeAdapter(LocalDateTime.class, new TypeAdapters.LocalDateTimeAdapter())
+            .create();
+
+    private static final Object lock = new Object();
+    // In-memory aggregate keyed by lower-cased username, in first-seen order
+    private static Map<String, PlayerStats> players;
+    private static long lastSeq;
+    private static long logOffset;
+    // Sequence number of the first event in the log as last read, so a compaction by another process is noticed
+    private static long logFirstSeq;
+    private static int logEvents;
+    private static long snapshotModified;
+    private static long archiveModified;
+    // Escapes moved out of players' lists; everything dated before archive.cutoff as of event archive.seq
+    private static EscapeArchive archive = EscapeArchive.empty();
+    // Set when a player was deleted from the archive in memory and it needs writing at the next compaction
+    private static boolean archiveDirty;
+    // Set when leaderboard.json exists but can't be parsed; compacting would then overwrite it with partial data
+    private static boolean snapshotUnreadable;
+    // Players changed since the last compaction (only the kv snapshot is written per player)
+    private static final Set<String> changedSinceCompact = new HashSet<>();
+    // Sorted leaderboard views, maintained alongside players
+    private static final LeaderboardAggregate aggregate = new LeaderboardAggregate();
+    // Events applied in memory but not yet in the log, oldest first (see enqueue and flush)
+    private static final List<LogEvent> unwritten = new ArrayList<>();
+    private static boolean flushScheduled;
+    // Set while flush holds the log's file lock. Other threads leave the log alone meanwhile: closing any descriptor
+    // of the file would drop this process's lock on it, and what flush appends is already in memory.
+    private static boolean flushing;
+    // One flush (or saveAll) at a time; taken before lock
+    private static final Object flushLock = new Object();
+
+    static {
+        WriteBehindStore.register(LeaderboardDataUtil::flushQuietly);
+    }
+
+    // One line of leaderboard.log
+    private static class LogEvent {
+        long seq;
+        String op; // "game" or "delete"
+        String username;
+        boolean multiplayer;
+        boolean escaped;
+        String room;
+        String level;
+        LocalDateTime when;
+        Integer score;
+    }
+
+    // On-disk snapshot; older files are a bare PlayerStats array and read as seq 0
+    private static class Snapshot {
+        long seq;
+        List<PlayerStats> players;
+    }
 
     public static List<PlayerStats> loadAll() {
-        try {
-            Path path = getDataPath();
-            if (!Files.exists(path)) return new ArrayList<>();
-            String json = Files.readString(path);
-            if (json == null || json.trim().isEmpty()) return new ArrayList<>();
-            Type listType = new TypeToken<ArrayList<PlayerStats>>(){}.getType();
-            List<PlayerStats> stats = gson.fromJson(json, listType);
-            return stats != null ? stats : new ArrayList<>();
-        } catch (Exception e) {
-            // If file is invalid or unreadable, start fresh
-            return new ArrayList<>();
+        synchronized (lock) {
+            refreshQuietly();
+            // Archived escapes go ahead of the player's recent ones, as they were before being moved
+            Map<String, List<EscapeRecord>> archived = new HashMap<>();
+            archive.forEach((username, room, level, when, score, multiplayer) -> {
+                EscapeRecord er = new EscapeRecord(room, level, when);
+                er.setScore(score);
+                er.setMultiplayer(multiplayer);
+                archived.computeIfAbsent(key(username), k -> new ArrayList<>()).add(er);
+            });
+            List<PlayerStats> copy = new ArrayList<>(players.size());
+            for (PlayerStats ps : players.values()) {
+                PlayerStats c = copyOf(ps);
+                List<EscapeRecord> old = archived.get(key(ps.getUsername()));
+                if (old != null) c.getEscapes().addAll(0, old);
+                copy.add(c);
+            }
+            return copy;
         }
     }
 
-    public static void saveAll(List<PlayerStats> all) {
-        try {
-            Path path = getDataPath();
-            Files.createDirectories(path.getParent());
-            try (Writer w = new FileWriter(path.toFile())) {
-                gson.toJson(all, w);
+    // Leaderboard rows in display order (see LeaderboardAggregate); offset/limit select a page
+    public static List<LeaderboardAggregate.PlayerRow> playerRows(int offset, int limit) {
+        synchronized (lock) {
+            refreshQuietly();
+            return aggregate.players(offset, limit);
+        }
+    }
+
+    // One page of escapes; pass the previous page's cursor (in the query) to continue where it ended
+    public static LeaderboardAggregate.EscapePage queryEscapes(LeaderboardAggregate.EscapeQuery query) {
+        synchronized (lock) {
+            refreshQuietly();
+            return aggregate.escapes(query);
+        }
+    }
+
+    /**
+     * Number of escapes in a room and level (null = any, case-insensitive) dated in [from, to) (null = open-ended),
+     * recent and archived.
+     */
+    public static int countEscapes(String room, String level, LocalDateTime from, LocalDateTime to) {
+        synchronized (lock) {
+            refreshQuietly();
+            int n = archive.count(room, level, from, to);
+            for (PlayerStats ps : players.values()) {
+                if (ps.getEscapes() == null) continue;
+                for (EscapeRecord er : ps.getEscapes()) {
+                    if (room != null && !room.equalsIgnoreCase(er.getRoom())) continue;
+                    if (level != null && !level.equalsIgnoreCase(er.getLevel())) continue;
+                    LocalDateTime d = er.getDate();
+                    if ((from != null || to != null) && d == null) continue;
+                    if (from != null && d.isBefore(from)) continue;
+                    if (to != null && !d.isBefore(to)) continue;
+                    n++;
+                }
             }
+            return n;
+        }
+    }
+
+    public static int playerCount() {
+        synchronized (lock) {
+            refreshQuietly();
+            return aggregate.playerCount();
+        }
+    }
+
+    public static int escapeCount() {
+        synchronized (lock) {
+            refreshQuietly();
+            return aggregate.escapeCount();
+        }
+    }
+
+    private static void refreshQuietly() {
+        try {
+            refresh(null);
         } catch (IOException e) {
-            e.printStackTrace();
+            System.err.println("Failed to read leaderboard log: " + e.getMessage());
+        }
+        if (players == null) {
+            players = new LinkedHashMap<>();
+            aggregate.rebuild(players.values());
         }
     }
 
-    private static PlayerStats getOrCreate(List<PlayerStats> all, String username) {
-        for (PlayerStats ps : all) {
-            if (ps.getUsername() != null && ps.getUsername().equalsIgnoreCase(username)) return ps;
+    // Replace all stats: written straight to a new snapshot and the log is cleared; queued events are superseded
+    public static void saveAll(List<PlayerStats> all) {
+        synchronized (flushLock) {
+            synchronized (lock) {
+                try (FileChannel log = openLog()) {
+                    FileLock fileLock = log.lock();
+                    try {
+                        unwritten.clear();
+                        refresh(log);
+                        changedSinceCompact.addAll(players.keySet());
+                        players = new LinkedHashMap<>();
+                        for (PlayerStats ps : all) {
+                            if (ps.getUsername() != null) players.put(key(ps.getUsername()), copyOf(ps));
+                        }
+                        changedSinceCompact.addAll(players.keySet());
+                        // The new stats carry their full history; compaction archives the old part again
+                        archive = EscapeArchive.empty();
+                        archiveDirty = true;
+                        // Past the old snapshot's seq, so a crash between the archive and snapshot writes is detected (see loadArchive)
+                        lastSeq++;
+                        aggregate.rebuild(players.values());
+                        // An explicit replacement may overwrite even an unreadable snapshot
+                        snapshotUnreadable = false;
+                        compact(log);
+                    } finally {
+                        fileLock.release();
+                    }
+                } catch (IOException e) {
+                    e.printStackTrace();
+                }
+            }
         }
-        PlayerStats ps = new PlayerStats(username);
-        all.add(ps);
-        return ps;
+    }
+
+    private static PlayerStats getOrCreate(Map<String, PlayerStats> all, String username) {
+        return all.computeIfAbsent(key(username), k -> new PlayerStats(username));
     }
 
     public static void recordGame(String username, boolean multiplayer, boolean escaped, String room, String level, LocalDateTime when) {
@@ -72,23 +260,438 @@ public class LeaderboardDataUtil {
 
     public static void recordGame(String username, boolean multiplayer, boolean escaped, String room, String level, LocalDateTime when, Integer score) {
         if (username == null || username.isEmpty()) return;
-        List<PlayerStats> all = loadAll();
-        PlayerStats ps = getOrCreate(all, username);
-        if (multiplayer) ps.setMultiPlays(ps.getMultiPlays() + 1); else ps.setSoloPlays(ps.getSoloPlays() + 1);
-        if (escaped && room != null && level != null) {
+        LogEvent e = new LogEvent();
+        e.op = "game";
+        e.username = username;
+        e.multiplayer = multiplayer;
+        e.escaped = escaped;
+        e.room = room;
+        e.level = level;
+        e.when = when;
+        e.score = score;
+        enqueue(e);
+    }
+
+    // Takes effect in memory immediately; the log append happens on the write-behind thread, after any game queued before it
+    public static void deleteStatsForPlayer(String username) {
+        if (username == null) return;
+        LogEvent e = new LogEvent();
+        e.op = "delete";
+        e.username = username;
+        enqueue(e);
+    }
+
+    // Apply the event in memory and queue it for the log. Games and deletes share the one queue, so the log keeps
+    // them in the order they happened.
+    private static void enqueue(LogEvent e) {
+        synchronized (lock) {
+            refreshQuietly();
+            applyToMemory(e);
+            unwritten.add(e);
+            if (!flushScheduled) {
+                flushScheduled = true;
+                WriteBehindStore.schedule(LeaderboardDataUtil::flushQuietly);
+            }
+        }
+    }
+
+    /**
+     * Append the queued events to the log under its file lock (one fsync for the batch), then compact if the log has
+     * grown enough. Runs on the write-behind thread and at shutdown; the disk write itself happens outside the
+     * in-memory lock, so readers aren't held up by it.
+     */
+    static void flush() throws IOException {
+        synchronized (flushLock) {
+            synchronized (lock) {
+                flushScheduled = false;
+                if (unwritten.isEmpty()) return;
+                flushing = true;
+            }
+            try (FileChannel log = openLog()) {
+                FileLock fileLock = log.lock();
+                try {
+                    List<LogEvent> batch;
+                    byte[] bytes;
+                    long start;
+                    synchronized (lock) {
+                        refresh(log);
+                        // Bytes past the last complete line can only be a torn write from a crash; drop them before appending
+                        if (log.size() > logOffset) log.truncate(logOffset);
+                        batch = new ArrayList<>(unwritten);
+                        ByteArrayOutputStream lines = new ByteArrayOutputStream();
+                        long seq = lastSeq;
+                        for (LogEvent e : batch) {
+                            e.seq = ++seq;
+                            lines.write((lineGson.toJson(e) + "\n").getBytes(StandardCharsets.UTF_8));
+                        }
+                        bytes = lines.toByteArray();
+                        start = logOffset;
+                    }
+                    try {
+                        ByteBuffer buf = ByteBuffer.wrap(bytes);
+                        long pos = start;
+                        while (buf.hasRemaining()) pos += log.write(buf, pos);
+                        log.force(true);
+                    } catch (IOException ex) {
+                        synchronized (lock) {
+                            // Still queued; numbered again by the next flush
+                            for (LogEvent e : batch) e.seq = 0;
+                        }
+                        throw ex;
+                    }
+                    synchronized (lock) {
+                        unwritten.subList(0, batch.size()).clear();
+                        lastSeq = batch.get(batch.size() - 1).seq;
+                        logEvents += batch.size();
+                        if (start == 0) logFirstSeq = batch.get(0).seq;
+                        logOffset = start + bytes.length;
+                        // The snapshot is written from memory, so not while it holds events queued during the write
+                        if (logEvents >= COMPACT_EVERY && unwritten.isEmpty()) compact(log);
+                    }
+                } finally {
+                    fileLock.release();
+                }
+            } finally {
+                synchronized (lock) {
+                    flushing = false;
+                }
+            }
+        }
+    }
+
+    private static void flushQuietly() {
+        try {
+            flush();
+        } catch (IOException ex) {
+            System.err.println("Failed to record leaderboard events: " + ex.getMessage());
+            ex.printStackTrace();
+            synchronized (lock) {
+                if (!flushScheduled && !unwritten.isEmpty()) {
+                    flushScheduled = true;
+                    WriteBehindStore.schedule(LeaderboardDataUtil::flushQuietly);
+                }
+            }
+        }
+    }
+
+    private static FileChannel openLog() throws IOException {
+        return FileChannel.open(getLogPath(), StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+    }
+
+    // Bring the aggregate up to date: full load the first time or after another process compacted, otherwise replay new log lines.
+    // Queued events are kept on top: when the log has other processes' events, memory is rebuilt and they are applied again.
+    private static void refresh(FileChannel log) throws IOException {
+        if (flushing && log == null) return;
+        Path logPath = getLogPath();
+        long modified = modifiedTime(getSnapshotPath());
+        long archived = modifiedTime(getArchivePath());
+        FileChannel own = log == null && Files.exists(logPath) ? FileChannel.open(logPath, StandardOpenOption.READ) : null;
+        try {
+            FileChannel ch = log != null ? log : own;
+            long logSize = ch != null ? ch.size() : 0;
+            // A compaction elsewhere empties the log, which may have grown past logOffset again since
+            boolean reload = players == null || modified != snapshotModified || archived != archiveModified || logSize < logOffset
+                    || (logOffset > 0 && firstSeq(ch) != logFirstSeq)
+                    || (logSize > logOffset && !unwritten.isEmpty());
+            if (reload) {
+                loadSnapshot();
+                aggregate.rebuild(players.values(), archive);
+                snapshotModified = modified;
+                archiveModified = archived;
+            }
+            try {
+                if (logSize > logOffset) replayTail(ch);
+            } finally {
+                if (reload) {
+                    for (LogEvent e : unwritten) applyToMemory(e);
+                }
+            }
+        } finally {
+            if (own != null) own.close();
+        }
+    }
+
+    // Sequence number of the log's first event, 0 if it has no complete line
+    private static long firstSeq(FileChannel log) throws IOException {
+        ByteBuffer buf = ByteBuffer.allocate(1024);
+        log.read(buf, 0);
+        byte[] bytes = buf.array();
+        for (int i = 0; i < buf.position(); i++) {
+            if (bytes[i] != '\n') continue;
+            try {
+                return lineGson.fromJson(new String(bytes, 0, i, StandardCharsets.UTF_8), LogEvent.class).seq;
+            } catch (Exception e) {
+                return 0;
+            }
+        }
+        return 0;
+    }
+
+    private static void loadSnapshot() {
+        players = new LinkedHashMap<>();
+        lastSeq = 0;
+        logOffset = 0;
+        logFirstSeq = 0;
+        logEvents = 0;
+        snapshotUnreadable = false;
+        changedSinceCompact.clear();
+        if (KV) loadKvSnapshot(); else loadJsonSnapshot();
+        loadArchive();
+    }
+
+    private static void loadJsonSnapshot() {
+        Path path = getDataPath();
+        if (!Files.exists(path)) return;
+        try {
+            String json = Files.readString(path);
+            if (json.trim().isEmpty()) return;
+            JsonElement root = JsonParser.parseString(json);
+            List<PlayerStats> list;
+            if (root.isJsonArray()) {
+                Type listType = new TypeToken<ArrayList<PlayerStats>>(){}.getType();
+                list = gson.fromJson(root, listType);
+            } else {
+                Snapshot s = gson.fromJson(root, Snapshot.class);
+                lastSeq = s.seq;
+                list = s.players;
+            }
+            if (list != null) {
+                for (PlayerStats ps : list) {
+                    if (ps != null && ps.getUsername() != null) players.put(key(ps.getUsername()), ps);
+                }
+            }
+        } catch (Exception e) {
+            System.err.println("Failed to read leaderboard snapshot " + path + ": " + e.getMessage());
+            snapshotUnreadable = true;
+        }
+    }
+
+    private static void loadArchive() {
+        archiveDirty = false;
+        try {
+            archive = EscapeArchive.read(getArchivePath());
+        } catch (IOException e) {
+            System.err.println("Failed to read escape archive " + getArchivePath() + ": " + e.getMessage());
+            archive = EscapeArchive.empty();
+            // Its records aren't anywhere else, so don't let a compaction replace it
+            snapshotUnreadable = true;
+            return;
+        }
+        if (archive.seq > lastSeq) {
+            // A compaction wrote the archive but not the snapshot: the snapshot's old escapes are already archived
+            for (PlayerStats ps : players.values()) {
+                if (ps.getEscapes() != null) ps.getEscapes().removeIf(LeaderboardDataUtil::archived);
+            }
+        }
+    }
+
+    // True if the archive already holds this record (it was dated before the cutoff when the archive was written)
+    private static boolean archived(EscapeRecord er) {
+        return er.getDate() != null && EscapeArchive.epoch(er.getDate()) < archive.cutoff;
+    }
+
+    private static void removeArchived(String username) {
+        EscapeArchive without = archive.withoutPlayer(username);
+        if (without != archive) {
+            archive = without;
+            archiveDirty = true;
+        }
+    }
+
+    private static void loadKvSnapshot() {
+        Path kvPath = getSnapshotPath();
+        try {
+            if (!Files.exists(kvPath) && Files.exists(getDataPath())) {
+                System.out.println("Imported " + importSnapshot(getDataPath()) + " players into " + kvPath.getFileName());
+            }
+            KvStore.open(kvPath).forEach((k, v) -> {
+                String value = new String(v, StandardCharsets.UTF_8);
+                if (k.equals(SEQ_KEY)) {
+                    lastSeq = Long.parseLong(value);
+                } else if (k.startsWith(PLAYER_PREFIX)) {
+                    PlayerStats ps = lineGson.fromJson(value, PlayerStats.class);
+                    if (ps != null && ps.getUsername() != null) players.put(key(ps.getUsername()), ps);
+                }
+            });
+        } catch (Exception e) {
+            System.err.println("Failed to read leaderboard snapshot " + kvPath + ": " + e.getMessage());
+            snapshotUnreadable = true;
+        }
+    }
+
+    /** Write the snapshot in {@code json} (either format) into the kv file next to it; returns the number of players. */
+    static int importSnapshot(Path json) throws IOException {
+        String text = Files.readString(json);
+        Map<String, byte[]> entries = new LinkedHashMap<>();
+        long seq = 0;
+        if (!text.isBlank()) {
+            JsonElement root = JsonParser.parseString(text);
+            List<PlayerStats> list;
+            if (root.isJsonArray()) {
+                list = gson.fromJson(root, new TypeToken<ArrayList<PlayerStats>>(){}.getType());
+            } else {
+                Snapshot s = gson.fromJson(root, Snapshot.class);
+                seq = s.seq;
+                list = s.players;
+            }
+            if (list != null) {
+                for (PlayerStats ps : list) {
+                    if (ps == null || ps.getUsername() == null) continue;
+                    entries.put(PLAYER_PREFIX + key(ps.getUsername()), lineGson.toJson(ps).getBytes(StandardCharsets.UTF_8));
+                }
+            }
+        }
+        int players = entries.size();
+        entries.put(SEQ_KEY, Long.toString(seq).getBytes(StandardCharsets.UTF_8));
+        KvStore.open(Repositories.kvPath(json)).replaceAll(entries);
+        return players;
+    }
+
+    // Apply complete lines after logOffset; events already in the snapshot (seq <= lastSeq) are skipped
+    private static void replayTail(FileChannel log) throws IOException {
+        long size = log.size();
+        ByteBuffer buf = ByteBuffer.allocate((int) (size - logOffset));
+        long pos = logOffset;
+        while (buf.hasRemaining()) {
+            int n = log.read(buf, pos);
+            if (n < 0) break;
+            pos += n;
+        }
+        byte[] bytes = buf.array();
+        int start = 0;
+        for (int i = 0; i < buf.position(); i++) {
+            if (bytes[i] != '\n') continue;
+            String line = new String(bytes, start, i - start, StandardCharsets.UTF_8);
+            boolean first = logOffset == 0 && start == 0;
+            start = i + 1;
+            if (line.isBlank()) continue;
+            try {
+                LogEvent e = lineGson.fromJson(line, LogEvent.class);
+                if (first) logFirstSeq = e.seq;
+                if (e.seq > lastSeq) apply(e);
+            } catch (Exception ex) {
+                System.err.println("Skipping corrupt leaderboard log line: " + ex.getMessage());
+            }
+        }
+        logOffset += start;
+    }
+
+    // A logged event (replayed from the log)
+    private static void apply(LogEvent e) {
+        lastSeq = e.seq;
+        logEvents++;
+        applyToMemory(e);
+    }
+
+    // seq is 0 for an event that isn't in the log yet
+    private static void applyToMemory(LogEvent e) {
+        changedSinceCompact.add(key(e.username));
+        if ("delete".equals(e.op)) {
+            players.remove(key(e.username));
+            aggregate.removePlayer(e.username);
+            removeArchived(e.username);
+            return;
+        }
+        PlayerStats ps = getOrCreate(players, e.username);
+        if (e.multiplayer) ps.setMultiPlays(ps.getMultiPlays() + 1); else ps.setSoloPlays(ps.getSoloPlays() + 1);
+        EscapeRecord er = null;
+        if (e.escaped && e.room != null && e.level != null) {
             List<EscapeRecord> escapes = ps.getEscapes();
             if (escapes == null) { escapes = new ArrayList<>(); ps.setEscapes(escapes); }
-            EscapeRecord er = new EscapeRecord(room, level, when);
-            er.setScore(score);
-            er.setMultiplayer(multiplayer);
-            escapes.add(er);
+            er = new EscapeRecord(e.room, e.level, e.when);
+            er.setScore(e.score);
+            er.setMultiplayer(e.multiplayer);
+            // Replayed after a crash between writing the archive and the snapshot: the archive already has it
+            if (e.seq != 0 && e.seq <= archive.seq && archived(er)) er = null; else escapes.add(er);
         }
-        saveAll(all);
+        aggregate.recordGame(ps.getUsername(), e.multiplayer, er);
     }
 
-    public static void deleteStatsForPlayer(String username) {
-        List<PlayerStats> all = loadAll();
-        all.removeIf(ps -> ps.getUsername() != null && ps.getUsername().equalsIgnoreCase(username));
-        saveAll(all);
+    // Write the aggregate as a new snapshot (atomically, see DataFiles), then empty the log. Caller holds the log lock.
+    private static void compact(FileChannel log) throws IOException {
+        if (snapshotUnreadable) {
+            System.err.println("Leaderboard snapshot is unreadable - keeping events in the log instead of compacting");
+            return;
+        }
+        archiveOldEscapes();
+        Path path = getSnapshotPath();
+        if (KV) {
+            // Changed players and the new sequence number go in one record, so replay stays idempotent
+            Map<String, byte[]> batch = new LinkedHashMap<>();
+            for (String k : changedSinceCompact) {
+                PlayerStats ps = players.get(k);
+                batch.put(PLAYER_PREFIX + k, ps == null ? null : lineGson.toJson(ps).getBytes(StandardCharsets.UTF_8));
+            }
+            batch.put(SEQ_KEY, Long.toString(lastSeq).getBytes(StandardCharsets.UTF_8));
+            KvStore.open(path).commit(batch);
+        } else {
+            Snapshot s = new Snapshot();
+            s.seq = lastSeq;
+            s.players = new ArrayList<>(players.values());
+            DataFiles.write(path, gson.toJson(s));
+        }
+        changedSinceCompact.clear();
+        // A crash before this truncate is harmless: replay skips events the snapshot already contains
+        log.truncate(0);
+        log.force(true);
+        logOffset = 0;
+        logFirstSeq = 0;
+        logEvents = 0;
+        snapshotModified = modifiedTime(path);
+    }
+
+    // Move escapes older than HOT_DAYS into the archive and write it. Runs before the snapshot is written, see loadArchive.
+    private static void archiveOldEscapes() throws IOException {
+        // Whole seconds, like the archive's dates, so "older than the cutoff" means the same before and after archiving
+        LocalDateTime cutoff = LocalDateTime.now().minusDays(HOT_DAYS).truncatedTo(ChronoUnit.SECONDS);
+        Map<String, List<EscapeRecord>> moved = new LinkedHashMap<>();
+        for (Map.Entry<String, PlayerStats> entry : players.entrySet()) {
+            List<EscapeRecord> escapes = entry.getValue().getEscapes();
+            if (escapes == null) continue;
+            List<EscapeRecord> old = new ArrayList<>();
+            escapes.removeIf(er -> {
+                boolean isOld = er.getDate() != null && er.getDate().isBefore(cutoff);
+                if (isOld) old.add(er);
+                return isOld;
+            });
+            if (!old.isEmpty()) {
+                moved.put(entry.getValue().getUsername(), old);
+                changedSinceCompact.add(entry.getKey());
+            }
+        }
+        if (moved.isEmpty() && !archiveDirty) return;
+        archive = archive.plus(moved, lastSeq, EscapeArchive.epoch(cutoff));
+        DataFiles.write(getArchivePath(), archive.encode());
+        archiveDirty = false;
+        archiveModified = modifiedTime(getArchivePath());
+    }
+
+    private static long modifiedTime(Path path) {
+        try {
+            return Files.getLastModifiedTime(path).toMillis();
+        } catch (IOException e) {
+            return -1;
+        }
+    }
+
+    private static String key(String username) {
+        return username.toLowerCase(Locale.ROOT);
+    }
+
+    private static PlayerStats copyOf(PlayerStats ps) {
+        PlayerStats c = new PlayerStats(ps.getUsername());
+        c.setSoloPlays(ps.getSoloPlays());
+        c.setMultiPlays(ps.getMultiPlays());
+        List<EscapeRecord> escapes = new ArrayList<>();
+        if (ps.getEscapes() != null) {
+            for (EscapeRecord er : ps.getEscapes()) {
+                EscapeRecord e = new EscapeRecord(er.getRoom(), er.getLevel(), er.getDate());
+                e.setScore(er.getScore());
+                e.setMultiplayer(er.getMultiplayer());
+                escapes.add(e);
+            }
+        }
+        c.setEscapes(escapes);
+        return c;
     }
 }
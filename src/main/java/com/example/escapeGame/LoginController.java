@@ -4,7 +4,6 @@ import javafx.fxml.FXML;
 import javafx.scene.control.*;
 import javafx.event.ActionEvent;
 import java.io.IOException;
-import java.util.List;
 
 public class LoginController {
 
@@ -29,36 +28,13 @@ public class LoginController {
             return;
         }
 
-        // Use UserDataUtil to load users consistently
-        List<User> users = UserDataUtil.loadUsers();
-        
-        boolean matched = false;
-        boolean isAdmin = false;
+        // Single hash lookup instead of scanning the whole user list
+        User loggedInUser = UserRepository.getInstance().authenticate(userText, passText).orElse(null);
 
-        for(User user : users) {
-            if(user.getUsername().equals(userText) && user.getPassword().equals(passText)) {
-                matched = true;
-                if("admin".equals(user.getRole())) {
-                    isAdmin = true;
-                }
-                break;
-            }
-        }
-
-        if(matched) {
+        if(loggedInUser != null) {
             wrongLogin.setText("Success");
-            // Find the user object and set it in session
-            User loggedInUser = null;
-            for(User user : users) {
-                if(user.getUsername().equals(userText) && user.getPassword().equals(passText)) {
-                    loggedInUser = user;
-                    break;
-                }
-            }
-            
-            if(loggedInUser != null) {
-                Session.setCurrentUser(loggedInUser);
-            }
+            boolean isAdmin = "admin".equals(loggedInUser.getRole());
+            Session.setCurrentUser(loggedInUser);
             // Also store plain username for other controllers that rely on LogIn
             LogIn.setLoggedInUser(userText);
             
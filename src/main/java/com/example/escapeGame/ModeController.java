@@ -10,9 +10,8 @@ import javafx.scene.Scene;
 import javafx.stage.Stage;
 import javafx.scene.Node;
 import javafx.scene.control.Button;
-import java.util.ArrayList;
-import java.util.Collections;
 import java.util.List;
+import java.util.Random;
 
 public class ModeController {
 
@@ -65,24 +64,8 @@ public class ModeController {
         String code = RoomManager.getInstance().createRoom(username);
         RoomManager.getInstance().joinRoom(code, username);
 
-        // Load and select questions similar to server logic
-        List<Puzzle> all = PuzzleDataUtil.loadPuzzles();
-        List<Puzzle> filtered = new ArrayList<>();
-        for (Puzzle p : all) {
-            if (room.equals(p.getRoom()) && difficulty.equals(p.getDifficulty())) {
-                filtered.add(p);
-            }
-        }
-        if (filtered.isEmpty()) {
-            for (Puzzle p : all) {
-                if (difficulty.equals(p.getDifficulty())) filtered.add(p);
-            }
-        }
-        if (filtered.isEmpty()) {
-            filtered.addAll(all);
-        }
-        Collections.shuffle(filtered);
-        if (filtered.size() > 10) filtered = new ArrayList<>(filtered.subList(0, 10));
+        // Select questions the same way the server does
+        List<Puzzle> filtered = PuzzleCatalog.getInstance().pickQuestions(room, difficulty, 10, new Random());
 
         ClientRoom localRoom = RoomManager.getInstance().getRoom(code);
         if (localRoom != null) {
@@ -408,7 +408,11 @@ public class MultiplayerRoomController {
                 break;
             }
             case "joined":
+            case "rejoined":
+            case "resumed":
             case "roomUpdate": {
+                // A resume that only replayed missed events has no room; the replayed roomUpdates cover it
+                if (!msg.has("room")) break;
                 JsonObject room = msg.get("room").getAsJsonObject();
                 String code = room.get("code").getAsString();
                 Session.getInstance().setRoomCode(code);
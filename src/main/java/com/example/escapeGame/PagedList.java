@@ -0,0 +1,68 @@
+package com.example.escapeGame;
+
+import javafx.collections.ObservableListBase;
+
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Read-only list for a TableView that loads rows a page at a time when cells ask for them, instead of building
+ * every row up front. Pages come from a cursor-based loader: page n continues from page n-1's cursor, and a jump
+ * further ahead (dragging the scroll bar) continues from the nearest page already seen and skips the rows between.
+ * Only the most recently used pages are kept. The size is fixed when the list is created; make a new list to refresh.
+ */
+public class PagedList<T, C> extends ObservableListBase<T> {
+    private static final int MAX_CACHED_PAGES = 20;
+
+    public interface Loader<T, C> {
+        Page<T, C> load(C after, int skip, int limit);
+    }
+
+    /** Rows of one page; {@code next} is the cursor after its last row, null at the end. */
+    public record Page<T, C>(List<T> rows, C next) {}
+
+    private final int size;
+    private final int pageSize;
+    private final Loader<T, C> loader;
+    private final Map<Integer, List<T>> pages = new LinkedHashMap<>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Integer, List<T>> eldest) {
+            return size() > MAX_CACHED_PAGES;
+        }
+    };
+    // Page index -> cursor to load it from; page 0 starts at the beginning (null)
+    private final TreeMap<Integer, C> starts = new TreeMap<>();
+
+    public PagedList(int size, int pageSize, Loader<T, C> loader) {
+        this.size = size;
+        this.pageSize = pageSize;
+        this.loader = loader;
+        starts.put(0, null);
+    }
+
+    @Override
+    public T get(int index) {
+        if (index < 0 || index >= size) throw new IndexOutOfBoundsException(index);
+        int page = index / pageSize;
+        List<T> rows = pages.get(page);
+        if (rows == null) rows = load(page);
+        int i = index % pageSize;
+        // Rows removed since the size was taken leave blank lines at the end
+        return i < rows.size() ? rows.get(i) : null;
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    private List<T> load(int page) {
+        Map.Entry<Integer, C> from = starts.floorEntry(page);
+        Page<T, C> loaded = loader.load(from.getValue(), (page - from.getKey()) * pageSize, pageSize);
+        pages.put(page, loaded.rows());
+        if (loaded.next() != null) starts.put(page + 1, loaded.next());
+        return loaded.rows();
+    }
+}
@@ -0,0 +1,141 @@
+package com.example.escapeGame;
+
+import java.util.*;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Puzzles loaded once from puzzle storage and indexed by id, by (room, difficulty) and by difficulty.
+ * Readers get an immutable snapshot; admin edits (through {@link PuzzleDataUtil}) build a new snapshot and swap it in.
+ * Puzzles handed out here are shared and must be treated as read-only; use PuzzleDataUtil.loadPuzzles() for editable copies.
+ */
+public class PuzzleCatalog {
+    // How often the file's modification time is checked, to pick up edits made by another process
+    private static final long CHECK_INTERVAL_NANOS = 10_000_000_000L;
+
+    private static final PuzzleCatalog instance = new PuzzleCatalog();
+
+    private final AtomicReference<Snapshot> current = new AtomicReference<>();
+    private volatile long lastCheckNanos;
+
+    private PuzzleCatalog() {}
+
+    public static PuzzleCatalog getInstance() {
+        return instance;
+    }
+
+    public List<Puzzle> all() { return snapshot().all; }
+
+    public Optional<Puzzle> byId(int id) { return Optional.ofNullable(snapshot().byId.get(id)); }
+
+    public List<Puzzle> forRoom(String room, String difficulty) {
+        return snapshot().byRoomAndDifficulty.getOrDefault(key(room, difficulty), List.of());
+    }
+
+    // Rooms (lower-cased) that have at least one puzzle of the given difficulty, ignoring case
+    public Set<String> roomsWithDifficulty(String difficulty) {
+        return snapshot().roomsByDifficulty.getOrDefault(lower(difficulty), Set.of());
+    }
+
+    /**
+     * Up to {@code count} random puzzles for a game: the room and difficulty if it has any, otherwise any room
+     * with that difficulty, otherwise everything. Samples indexes instead of shuffling the whole candidate list.
+     */
+    public List<Puzzle> pickQuestions(String room, String difficulty, int count, Random random) {
+        Snapshot s = snapshot();
+        List<Puzzle> candidates = s.byRoomAndDifficulty.getOrDefault(key(room, difficulty), List.of());
+        if (candidates.isEmpty()) candidates = s.byDifficulty.getOrDefault(difficulty, List.of());
+        if (candidates.isEmpty()) candidates = s.all;
+        int n = candidates.size();
+        int k = Math.min(count, n);
+        // Floyd's algorithm: k distinct indexes in O(k)
+        Set<Integer> chosen = new LinkedHashSet<>(k * 2);
+        for (int j = n - k; j < n; j++) {
+            int t = random.nextInt(j + 1);
+            if (!chosen.add(t)) chosen.add(j);
+        }
+        List<Puzzle> picked = new ArrayList<>(k);
+        for (int i : chosen) picked.add(candidates.get(i));
+        Collections.shuffle(picked, random);
+        return picked;
+    }
+
+    // Swap in a snapshot built from the given list (called after an admin edit)
+    void replace(List<Puzzle> puzzles) {
+        current.set(new Snapshot(puzzles, modifiedTime()));
+        lastCheckNanos = System.nanoTime();
+    }
+
+    private Snapshot snapshot() {
+        Snapshot s = current.get();
+        if (s == null) {
+            synchronized (this) {
+                s = current.get();
+                if (s == null) {
+                    s = new Snapshot(PuzzleDataUtil.readPuzzles(), modifiedTime());
+                    current.set(s);
+                    lastCheckNanos = System.nanoTime();
+                }
+            }
+            return s;
+        }
+        long now = System.nanoTime();
+        if (now - lastCheckNanos > CHECK_INTERVAL_NANOS) {
+            lastCheckNanos = now;
+            if (modifiedTime() != s.loadedModified) {
+                System.out.println("Puzzle storage changed on disk - reloading catalog");
+                Snapshot fresh = new Snapshot(PuzzleDataUtil.readPuzzles(), modifiedTime());
+                current.compareAndSet(s, fresh);
+                return current.get();
+            }
+        }
+        return s;
+    }
+
+    private static long modifiedTime() {
+        return PuzzleDataUtil.lastModified();
+    }
+
+    private static String key(String room, String difficulty) {
+        return room + "\u0000" + difficulty;
+    }
+
+    private static String lower(String s) {
+        return s == null ? "" : s.toLowerCase(Locale.ROOT);
+    }
+
+    private static final class Snapshot {
+        final List<Puzzle> all;
+        final Map<Integer, Puzzle> byId;
+        final Map<String, List<Puzzle>> byRoomAndDifficulty;
+        final Map<String, List<Puzzle>> byDifficulty;
+        final Map<String, Set<String>> roomsByDifficulty;
+        final long loadedModified;
+
+        Snapshot(List<Puzzle> puzzles, long loadedModified) {
+            List<Puzzle> copies = new ArrayList<>(puzzles.size());
+            Map<Integer, Puzzle> ids = new HashMap<>();
+            Map<String, List<Puzzle>> rd = new HashMap<>();
+            Map<String, List<Puzzle>> d = new HashMap<>();
+            Map<String, Set<String>> rooms = new HashMap<>();
+            for (Puzzle p : puzzles) {
+                if (p == null) continue;
+                // Private copies, so editing a puzzle in the admin table can't change a published snapshot
+                Puzzle c = new Puzzle(p.getId(), p.getRoom(), p.getQuestion(), p.getAnswer(), p.getDifficulty());
+                copies.add(c);
+                ids.putIfAbsent(c.getId(), c);
+                rd.computeIfAbsent(key(c.getRoom(), c.getDifficulty()), x -> new ArrayList<>()).add(c);
+                d.computeIfAbsent(c.getDifficulty(), x -> new ArrayList<>()).add(c);
+                if (c.getRoom() != null) rooms.computeIfAbsent(lower(c.getDifficulty()), x -> new HashSet<>()).add(lower(c.getRoom()));
+            }
+            rd.replaceAll((x, l) -> List.copyOf(l));
+            d.replaceAll((x, l) -> List.copyOf(l));
+            rooms.replaceAll((x, s) -> Set.copyOf(s));
+            this.all = List.copyOf(copies);
+            this.byId = Map.copyOf(ids);
+            this.byRoomAndDifficulty = Map.copyOf(rd);
+            this.byDifficulty = Collections.unmodifiableMap(d);
+            this.roomsByDifficulty = Map.copyOf(rooms);
+            this.loadedModified = loadedModified;
+        }
+    }
+}
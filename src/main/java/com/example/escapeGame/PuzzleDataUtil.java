@@ -1,25 +1,23 @@
 package com.example.escapeGame;
 
 import com.google.gson.Gson;
-import com.google.gson.reflect.TypeToken;
 
 import java.io.InputStream;
-import java.io.FileWriter;
 import java.io.IOException;
-import java.io.Writer;
-import java.lang.reflect.Type;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.util.ArrayList;
 import java.util.Comparator;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Optional;
+import java.util.Set;
 
 public class PuzzleDataUtil {
     private static final String PUZZLE_FILE = "src/main/resources/puzzles.json";
     
-    private static Path getPuzzleDataPath() {
+    static Path getPuzzleDataPath() {
         // Use project-level data directory for writable puzzles.json
         Path dir = Paths.get(System.getProperty("user.dir"), "data");
         try { Files.createDirectories(dir); } catch (IOException ignored) {}
@@ -37,69 +35,70 @@ public class PuzzleDataUtil {
         return path;
     }
 
+    // Puzzles are stored by id in the configured backend (see Repositories); PuzzleCatalog indexes them for reading
+    private static final Repository<Puzzle> store =
+            Repositories.open("puzzles", getPuzzleDataPath(), new Gson(), Puzzle.class, PuzzleDataUtil::key);
+
+    static String key(Puzzle p) {
+        return String.valueOf(p.getId());
+    }
+
+    // Editable copies of the catalog's puzzles; reading them no longer touches disk
     public static List<Puzzle> loadPuzzles() {
-        try {
-            Path path = getPuzzleDataPath();
-            if (!Files.exists(path)) {
-                System.out.println("Puzzle file not found: " + path);
-                return new ArrayList<>();
-            }
-            String json = Files.readString(path);
-            Type listType = new TypeToken<ArrayList<Puzzle>>(){}.getType();
-            List<Puzzle> puzzles = new Gson().fromJson(json, listType);
-            if (puzzles == null) {
-                System.out.println("Failed to parse puzzles.json - returning empty list");
-                return new ArrayList<>();
-            }
-            System.out.println("Loaded " + puzzles.size() + " puzzles from puzzles.json");
-            return puzzles;
-        } catch (Exception e) {
-            System.err.println("Error loading puzzles: " + e.getMessage());
-            e.printStackTrace();
-            return new ArrayList<>();
-        }
+        List<Puzzle> copies = new ArrayList<>();
+        for (Puzzle p : PuzzleCatalog.getInstance().all()) copies.add(copyOf(p));
+        return copies;
+    }
+
+    // All stored puzzles; only PuzzleCatalog calls this, when it first loads or sees the storage change
+    static List<Puzzle> readPuzzles() {
+        List<Puzzle> puzzles = store.all();
+        System.out.println("Loaded " + puzzles.size() + " puzzles");
+        return puzzles;
     }
 
+    // When the puzzle storage last changed, including changes by another process
+    static long lastModified() {
+        return store.lastModified();
+    }
+
+    // Replace the whole puzzle list
     public static void savePuzzles(List<Puzzle> puzzles) {
-        try {
-            Path path = getPuzzleDataPath();
-            // Ensure parent directories exist
-            Files.createDirectories(path.getParent());
-            try (Writer writer = new FileWriter(path.toFile())) {
-                new Gson().toJson(puzzles, writer);
-            }
-        } catch (IOException e) {
-            e.printStackTrace();
+        Set<String> keep = new HashSet<>();
+        for (Puzzle p : puzzles) {
+            keep.add(key(p));
+            store.put(p);
+        }
+        for (Puzzle p : store.all()) {
+            if (!keep.contains(key(p))) store.remove(key(p));
         }
+        PuzzleCatalog.getInstance().replace(store.all());
     }
 
     public static Puzzle createPuzzle(Puzzle puzzle) {
-        List<Puzzle> puzzles = loadPuzzles();
-        int nextId = puzzles.stream().map(Puzzle::getId).max(Comparator.naturalOrder()).orElse(0) + 1;
+        int nextId = store.all().stream().map(Puzzle::getId).max(Comparator.naturalOrder()).orElse(0) + 1;
         puzzle.setId(nextId);
-        puzzles.add(puzzle);
-        savePuzzles(puzzles);
+        store.put(puzzle);
+        PuzzleCatalog.getInstance().replace(store.all());
         return puzzle;
     }
 
     public static Optional<Puzzle> getPuzzleById(int id) {
-        return loadPuzzles().stream().filter(p -> p.getId() == id).findFirst();
+        return PuzzleCatalog.getInstance().byId(id).map(PuzzleDataUtil::copyOf);
+    }
+
+    private static Puzzle copyOf(Puzzle p) {
+        return new Puzzle(p.getId(), p.getRoom(), p.getQuestion(), p.getAnswer(), p.getDifficulty());
     }
 
     public static void updatePuzzle(Puzzle updated) {
-        List<Puzzle> puzzles = loadPuzzles();
-        for (int i = 0; i < puzzles.size(); i++) {
-            if (puzzles.get(i).getId() == updated.getId()) {
-                puzzles.set(i, updated);
-                savePuzzles(puzzles);
-                return;
-            }
-        }
+        // Only replaces an existing puzzle
+        store.update(key(updated), current -> current == null ? null : updated);
+        PuzzleCatalog.getInstance().replace(store.all());
     }
 
     public static void deletePuzzle(int id) {
-        List<Puzzle> puzzles = loadPuzzles();
-        puzzles.removeIf(p -> p.getId() == id);
-        savePuzzles(puzzles);
+        store.remove(String.valueOf(id));
+        PuzzleCatalog.getInstance().replace(store.all());
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,48 @@
+package com.example.escapeGame;
+
+import com.google.gson.Gson;
+import com.google.gson.reflect.TypeToken;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.function.Function;
+
+/**
+ * Picks the storage backend for the data under data/, set with {@code -Ddata.backend}:
+ * "json" (default) keeps each collection in a whole-file JSON list written by {@link WriteBehindStore};
+ * "kv" keeps it in a {@link KvStore} file next to it (users.json -> users.kv), updated per key.
+ * The first time a kv file is opened it is imported from the JSON file; {@link StorageMigration} does the same on demand.
+ */
+public final class Repositories {
+    private static final String BACKEND = System.getProperty("data.backend", "json");
+
+    private Repositories() {}
+
+    public static boolean useKv() {
+        return "kv".equalsIgnoreCase(BACKEND);
+    }
+
+    public static <T> Repository<T> open(String name, Path jsonPath, Gson gson, Class<T> type, Function<T, String> keyOf) {
+        if (!useKv()) {
+            return WriteBehindStore.open(name, jsonPath, gson, TypeToken.getParameterized(ArrayList.class, type).getType(), keyOf);
+        }
+        Path kvPath = kvPath(jsonPath);
+        if (!Files.exists(kvPath) && Files.exists(jsonPath)) {
+            try {
+                int n = StorageMigration.importJson(jsonPath, gson, type, keyOf);
+                System.out.println("Imported " + n + " " + name + " from " + jsonPath.getFileName() + " into " + kvPath.getFileName());
+            } catch (IOException e) {
+                System.err.println("Failed to import " + jsonPath + ": " + e.getMessage());
+            }
+        }
+        return new KvRepository<>(KvStore.open(kvPath), gson, type, keyOf);
+    }
+
+    // users.json -> users.kv in the same directory
+    static Path kvPath(Path jsonPath) {
+        String file = jsonPath.getFileName().toString();
+        return jsonPath.resolveSibling((file.endsWith(".json") ? file.substring(0, file.length() - 5) : file) + ".kv");
+    }
+}
@@ -0,0 +1,32 @@
+package com.example.escapeGame;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.function.UnaryOperator;
+
+/**
+ * A collection of records (users, scores, puzzles, ...) stored by key, keys compared ignoring case.
+ * Get one from {@link Repositories#open}, which picks the backend configured with {@code -Ddata.backend}.
+ */
+public interface Repository<T> {
+    // Current values; the objects may be shared with the repository
+    List<T> all();
+
+    T get(String key);
+
+    /** Apply {@code change} to the current value (null if absent); returning null deletes it. */
+    void update(String key, UnaryOperator<T> change);
+
+    void put(T value);
+
+    void remove(String key);
+
+    // Make earlier changes durable now
+    void flush() throws IOException;
+
+    // Modification time of the backing file, to notice changes made by another process
+    long lastModified();
+
+    // Counts the times changes made by another process were picked up; caches built on all() compare it to know when to rebuild
+    long externalChanges();
+}
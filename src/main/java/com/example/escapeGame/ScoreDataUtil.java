@@ -2,19 +2,16 @@ package com.example.escapeGame;
 
 import com.google.gson.Gson;
 import com.google.gson.GsonBuilder;
-import com.google.gson.reflect.TypeToken;
 
-import java.io.FileWriter;
 import java.io.IOException;
-import java.io.Writer;
-import java.lang.reflect.Type;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.time.LocalDateTime;
-import java.util.ArrayList;
-import java.util.Comparator;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Locale;
+import java.util.Set;
 
 public class ScoreDataUtil {
     private static final String SCORE_FILE = "src/main/resources/scores.json";
@@ -29,62 +26,66 @@ public class ScoreDataUtil {
             .registerTypeAdapter(LocalDateTime.class, new TypeAdapters.LocalDateTimeAdapter())
             .create();
 
-    public static List<PlayerScore> loadScores() {
-        try {
-            Path path = getScoreDataPath();
-            if (!Files.exists(path)) {
-                return new ArrayList<>();
-            }
-            String json = Files.readString(path);
-            Type listType = new TypeToken<ArrayList<PlayerScore>>(){}.getType();
-            List<PlayerScore> scores = gson.fromJson(json, listType);
-            return scores != null ? scores : new ArrayList<>();
-        } catch (IOException e) {
-            return new ArrayList<>();
+    // Scores live in the configured backend (see Repositories): memory plus write-behind for JSON, per key for kv
+    private static final Repository<PlayerScore> store =
+            Repositories.open("scores", getScoreDataPath(), gson, PlayerScore.class, PlayerScore::getPlayer);
+
+    // Ranking of the stored best scores; rebuilt from the store when another process changed it
+    private static final ScoreRanking ranking = new ScoreRanking();
+    private static long rankedExternalChanges = -1;
+
+    private static ScoreRanking ranking() {
+        long changes = store.externalChanges();
+        if (changes != rankedExternalChanges) {
+            ranking.rebuild(store.all());
+            rankedExternalChanges = changes;
         }
+        return ranking;
     }
 
-    public static void saveScores(List<PlayerScore> scores) {
-        try {
-            Path path = getScoreDataPath();
-            // Ensure parent directories exist
-            Files.createDirectories(path.getParent());
-            try (Writer writer = new FileWriter(path.toFile())) {
-                gson.toJson(scores, writer);
-            }
-        } catch (IOException e) {
-            e.printStackTrace();
-        }
+    public static List<PlayerScore> loadScores() {
+        return store.all();
     }
 
-    public static void addOrUpdateScore(PlayerScore newScore) {
-        List<PlayerScore> scores = loadScores();
-        boolean updated = false;
-        for (int i = 0; i < scores.size(); i++) {
-            PlayerScore s = scores.get(i);
-            if (s.getPlayer().equalsIgnoreCase(newScore.getPlayer())) {
-                if (newScore.getScore() > s.getScore()) {
-                    scores.set(i, newScore);
-                }
-                updated = true;
-                break;
-            }
+    // Replace the whole score list
+    public static synchronized void saveScores(List<PlayerScore> scores) {
+        Set<String> keep = new HashSet<>();
+        for (PlayerScore s : scores) {
+            keep.add(s.getPlayer().toLowerCase(Locale.ROOT));
+            store.put(s);
         }
-        if (!updated) {
-            scores.add(newScore);
+        for (PlayerScore s : store.all()) {
+            if (!keep.contains(s.getPlayer().toLowerCase(Locale.ROOT))) store.remove(s.getPlayer());
         }
-        saveScores(scores);
+        ranking.rebuild(store.all());
+    }
+
+    // Keeps the player's best score
+    public static synchronized void addOrUpdateScore(PlayerScore newScore) {
+        ScoreRanking r = ranking();
+        store.update(newScore.getPlayer(),
+                current -> current == null || newScore.getScore() > current.getScore() ? newScore : current);
+        PlayerScore best = store.get(newScore.getPlayer());
+        if (best != null) r.put(best);
+    }
+
+    public static synchronized void deleteScoreForPlayer(String player) {
+        ScoreRanking r = ranking();
+        store.remove(player);
+        r.remove(player);
+    }
+
+    // All scores, best first
+    public static synchronized List<PlayerScore> topScores() {
+        return topScores(Integer.MAX_VALUE);
     }
 
-    public static void deleteScoreForPlayer(String player) {
-        List<PlayerScore> scores = loadScores();
-        scores.removeIf(s -> s.getPlayer().equalsIgnoreCase(player));
-        saveScores(scores);
+    public static synchronized List<PlayerScore> topScores(int k) {
+        return ranking().top(k);
     }
 
-    public static List<PlayerScore> topScores() {
-        List<PlayerScore> scores = loadScores();
-        scores.sort(Comparator.comparingInt(PlayerScore::getScore).reversed());
-        return scores;
+    // 1-based position of the player's best score, or 0 if they have none
+    public static synchronized int rankOf(String player) {
+        return ranking().rankOf(player);
     }
 }
@@ -0,0 +1,188 @@
+package com.example.escapeGame;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Players ranked by best score (highest first, ties by name), as an indexable skip list: every forward link also
+ * records how many entries it skips, so upsert, remove and "what is my rank" are O(log n) and the top K is a walk
+ * of K nodes. A hash index from lower-cased player name finds a player's node directly.
+ * Not thread-safe: {@link ScoreDataUtil} guards it.
+ */
+final class ScoreRanking {
+    private static final int MAX_LEVEL = 32;
+
+    private static final class Node {
+        final String key;
+        final int score;
+        final PlayerScore value;
+        final Node[] next;
+        // span[i]: how many positions next[i] is ahead of this node (to the end of the list when next[i] is null)
+        final int[] span;
+
+        Node(String key, int score, PlayerScore value, int level) {
+            this.key = key;
+            this.score = score;
+            this.value = value;
+            this.next = new Node[level];
+            this.span = new int[level];
+        }
+    }
+
+    private final Node head = new Node(null, 0, null, MAX_LEVEL);
+    private final Map<String, Node> byPlayer = new HashMap<>();
+    private int level = 1;
+    private int size;
+
+    // Bulk load: sort once and append in rank order, rather than searching the list for every entry
+    void rebuild(Collection<PlayerScore> scores) {
+        for (int i = 0; i < MAX_LEVEL; i++) {
+            head.next[i] = null;
+            head.span[i] = 0;
+        }
+        byPlayer.clear();
+        level = 1;
+        size = 0;
+        for (PlayerScore s : scores) {
+            if (s != null && s.getPlayer() != null) {
+                String key = key(s.getPlayer());
+                byPlayer.put(key, new Node(key, s.getScore(), s, randomLevel()));
+            }
+        }
+        List<Node> sorted = new ArrayList<>(byPlayer.values());
+        sorted.sort((a, b) -> a == b ? 0 : before(a, b) ? -1 : 1);
+        Node[] tail = new Node[MAX_LEVEL];
+        int[] tailRank = new int[MAX_LEVEL];
+        Arrays.fill(tail, head);
+        for (Node node : sorted) {
+            size++;
+            level = Math.max(level, node.next.length);
+            for (int i = 0; i < node.next.length; i++) {
+                tail[i].next[i] = node;
+                tail[i].span[i] = size - tailRank[i];
+                tail[i] = node;
+                tailRank[i] = size;
+            }
+        }
+        // The last node on each level spans to the end of the list
+        for (int i = 0; i < level; i++) tail[i].span[i] = size - tailRank[i];
+    }
+
+    int size() {
+        return size;
+    }
+
+    /** Set the player's ranked score (replacing any previous one). */
+    void put(PlayerScore score) {
+        String key = key(score.getPlayer());
+        Node old = byPlayer.get(key);
+        if (old != null) unlink(old);
+        byPlayer.put(key, insert(key, score.getScore(), score));
+    }
+
+    void remove(String player) {
+        Node node = byPlayer.remove(key(player));
+        if (node != null) unlink(node);
+    }
+
+    // 1-based rank, or 0 if the player has no score
+    int rankOf(String player) {
+        Node node = byPlayer.get(key(player));
+        if (node == null) return 0;
+        int rank = 0;
+        Node x = head;
+        for (int i = level - 1; i >= 0; i--) {
+            while (x.next[i] != null && !before(node, x.next[i])) {
+                rank += x.span[i];
+                x = x.next[i];
+            }
+            if (x == node) return rank;
+        }
+        return rank;
+    }
+
+    List<PlayerScore> top(int k) {
+        List<PlayerScore> list = new ArrayList<>(Math.min(k, size));
+        for (Node x = head.next[0]; x != null && list.size() < k; x = x.next[0]) list.add(x.value);
+        return list;
+    }
+
+    private Node insert(String key, int score, PlayerScore value) {
+        Node[] update = new Node[MAX_LEVEL];
+        int[] rank = new int[MAX_LEVEL];
+        Node x = head;
+        for (int i = level - 1; i >= 0; i--) {
+            rank[i] = i == level - 1 ? 0 : rank[i + 1];
+            while (x.next[i] != null && before(x.next[i], score, key)) {
+                rank[i] += x.span[i];
+                x = x.next[i];
+            }
+            update[i] = x;
+        }
+        int lvl = randomLevel();
+        if (lvl > level) {
+            for (int i = level; i < lvl; i++) {
+                rank[i] = 0;
+                update[i] = head;
+                head.span[i] = size;
+            }
+            level = lvl;
+        }
+        Node node = new Node(key, score, value, lvl);
+        for (int i = 0; i < lvl; i++) {
+            node.next[i] = update[i].next[i];
+            update[i].next[i] = node;
+            node.span[i] = update[i].span[i] - (rank[0] - rank[i]);
+            update[i].span[i] = rank[0] - rank[i] + 1;
+        }
+        // Links above the new node's height now skip one more entry
+        for (int i = lvl; i < level; i++) update[i].span[i]++;
+        size++;
+        return node;
+    }
+
+    private void unlink(Node node) {
+        Node[] update = new Node[MAX_LEVEL];
+        Node x = head;
+        for (int i = level - 1; i >= 0; i--) {
+            while (x.next[i] != null && before(x.next[i], node.score, node.key)) x = x.next[i];
+            update[i] = x;
+        }
+        for (int i = 0; i < level; i++) {
+            if (update[i].next[i] == node) {
+                update[i].span[i] += node.span[i] - 1;
+                update[i].next[i] = node.next[i];
+            } else {
+                update[i].span[i]--;
+            }
+        }
+        while (level > 1 && head.next[level - 1] == null) level--;
+        size--;
+    }
+
+    // True if a ranks ahead of (score, key)
+    private static boolean before(Node a, int score, String key) {
+        return a.score > score || (a.score == score && a.key.compareTo(key) < 0);
+    }
+
+    private static boolean before(Node a, Node b) {
+        return before(a, b.score, b.key);
+    }
+
+    // Each level up is a quarter as likely
+    private static int randomLevel() {
+        int lvl = 1;
+        while (lvl < MAX_LEVEL && (ThreadLocalRandom.current().nextInt() & 3) == 0) lvl++;
+        return lvl;
+    }
+
+    private static String key(String player) {
+        return player == null ? "" : player.toLowerCase(Locale.ROOT);
+    }
+}
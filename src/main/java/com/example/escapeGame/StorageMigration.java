@@ -0,0 +1,68 @@
+package com.example.escapeGame;
+
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import com.google.gson.reflect.TypeToken;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.LocalDateTime;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+
+/**
+ * Imports the JSON files under data/ into the kv backend's files, replacing whatever those held.
+ * Usage: {@code java ... com.example.escapeGame.StorageMigration [dataDir]} (default: ./data), then start the
+ * game or server with {@code -Ddata.backend=kv}. The JSON files are left untouched.
+ */
+public final class StorageMigration {
+    private StorageMigration() {}
+
+    public static void main(String[] args) throws IOException {
+        Path dir = args.length > 0 ? Paths.get(args[0]) : Paths.get(System.getProperty("user.dir"), "data");
+        Gson plain = new Gson();
+        Gson dated = new GsonBuilder()
+                .registerTypeAdapter(LocalDateTime.class, new TypeAdapters.LocalDateTimeAdapter())
+                .create();
+        report(dir.resolve("users.json"), () -> importJson(dir.resolve("users.json"), plain, User.class, User::getUsername));
+        report(dir.resolve("scores.json"), () -> importJson(dir.resolve("scores.json"), dated, PlayerScore.class, PlayerScore::getPlayer));
+        report(dir.resolve("puzzles.json"), () -> importJson(dir.resolve("puzzles.json"), plain, Puzzle.class, PuzzleDataUtil::key));
+        report(dir.resolve("leaderboard.json"), () -> LeaderboardDataUtil.importSnapshot(dir.resolve("leaderboard.json")));
+    }
+
+    private interface Import {
+        int run() throws IOException;
+    }
+
+    private static void report(Path json, Import action) {
+        if (!Files.exists(json)) {
+            System.out.println("Skipping " + json + " (not found)");
+            return;
+        }
+        try {
+            System.out.println("Imported " + action.run() + " records from " + json + " into " + Repositories.kvPath(json).getFileName());
+        } catch (IOException | RuntimeException e) {
+            System.err.println("Failed to import " + json + ": " + e.getMessage());
+        }
+    }
+
+    /** Replace the kv file next to {@code json} with the list in it; returns the number of records imported. */
+    static <T> int importJson(Path json, Gson gson, Class<T> type, Function<T, String> keyOf) throws IOException {
+        String text = Files.readString(json);
+        List<T> list = text.isBlank() ? null : gson.fromJson(text, TypeToken.getParameterized(List.class, type).getType());
+        Map<String, byte[]> entries = new LinkedHashMap<>();
+        if (list != null) {
+            for (T t : list) {
+                if (t == null || keyOf.apply(t) == null) continue;
+                entries.put(KvRepository.normalize(keyOf.apply(t)), gson.toJson(t, type).getBytes(StandardCharsets.UTF_8));
+            }
+        }
+        KvStore.open(Repositories.kvPath(json)).replaceAll(entries);
+        return entries.size();
+    }
+}
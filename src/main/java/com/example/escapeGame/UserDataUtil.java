@@ -1,19 +1,18 @@
 package com.example.escapeGame;
 
-import com.google.gson.Gson;
-import com.google.gson.reflect.TypeToken;
 import java.io.*;
-import java.lang.reflect.Type;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
-import java.util.ArrayList;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Locale;
+import java.util.Set;
 
 public class UserDataUtil {
     private static final String USER_FILE = "src/main/resources/users.json";
     
-    private static Path getUserDataPath() {
+    static Path getUserDataPath() {
         // Use project-level data directory for writable users.json
         Path dir = Paths.get(System.getProperty("user.dir"), "data");
         try { Files.createDirectories(dir); } catch (IOException ignored) {}
@@ -31,67 +30,40 @@ public class UserDataUtil {
         return path;
     }
 
+    // Users are served from the UserRepository's in-memory index
+    private static UserRepository repo() {
+        return UserRepository.getInstance();
+    }
+
     public static List<User> loadUsers() {
-        try {
-            Path path = getUserDataPath();
-            if (Files.exists(path)) {
-                String json = Files.readString(path);
-                if (json == null || json.trim().isEmpty()) return new ArrayList<>();
-                Type userListType = new TypeToken<ArrayList<User>>() {}.getType();
-                List<User> list = new Gson().fromJson(json, userListType);
-                return list != null ? list : new ArrayList<>();
-            }
-            return new ArrayList<>();
-        } catch (IOException e) {
-            return new ArrayList<>();
-        }
+        return repo().all();
     }
 
+    // Replace the whole user list
     public static void saveUsers(List<User> users) {
-        try {
-            Path path = getUserDataPath();
-            // Ensure parent directories exist
-            Files.createDirectories(path.getParent());
-            try (Writer writer = new FileWriter(path.toFile())) {
-                new Gson().toJson(users, writer);
-            }
-        } catch (IOException e) {
-            e.printStackTrace();
+        Set<String> keep = new HashSet<>();
+        for (User u : users) {
+            keep.add(u.getUsername().toLowerCase(Locale.ROOT));
+            repo().add(u);
+        }
+        for (User u : repo().all()) {
+            if (!keep.contains(u.getUsername().toLowerCase(Locale.ROOT))) repo().remove(u.getUsername());
         }
     }
 
     public static boolean isUsernameTaken(String username) {
-        for (User u : loadUsers()) {
-            if (u.getUsername().equalsIgnoreCase(username)) {
-                return true;
-            }
-        }
-        return false;
+        return repo().isTaken(username);
     }
 
     public static void addUser(User newUser) {
-        List<User> users = loadUsers();
-        users.add(newUser);
-        saveUsers(users);
+        repo().add(newUser);
     }
 
     public static User getUserByUsername(String username) {
-        for (User u : loadUsers()) {
-            if (u.getUsername().equals(username)) {
-                return u;
-            }
-        }
-        return null;
+        return repo().find(username).orElse(null);
     }
 
     public static void updateUser(User updatedUser) {
-        List<User> users = loadUsers();
-        for (int i = 0; i < users.size(); i++) {
-            if (users.get(i).getUsername().equals(updatedUser.getUsername())) {
-                users.set(i, updatedUser);
-                saveUsers(users);
-                return;
-            }
-        }
+        repo().update(updatedUser);
     }
 }
@@ -0,0 +1,59 @@
+package com.example.escapeGame;
+
+import com.google.gson.Gson;
+
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * Accounts from users.json, found through an in-memory hash index keyed by lower-cased username, so login and
+ * "is this name taken" checks are single lookups however many accounts there are. Writes go out through the
+ * configured storage backend (see {@link Repositories}); edits by another process are picked up when the file changes.
+ * Usernames stay case-sensitive for login, but two accounts may not differ only by case.
+ */
+public class UserRepository {
+    private static final UserRepository instance = new UserRepository();
+
+    private final Repository<User> store =
+            Repositories.open("users", UserDataUtil.getUserDataPath(), new Gson(), User.class, User::getUsername);
+
+    private UserRepository() {}
+
+    public static UserRepository getInstance() {
+        return instance;
+    }
+
+    // Exact (case-sensitive) username match; the returned object is the repository's own
+    public Optional<User> find(String username) {
+        if (username == null) return Optional.empty();
+        User u = store.get(username);
+        return u != null && username.equals(u.getUsername()) ? Optional.of(u) : Optional.empty();
+    }
+
+    public Optional<User> authenticate(String username, String password) {
+        return find(username).filter(u -> u.getPassword() != null && u.getPassword().equals(password));
+    }
+
+    // True if any account has this name, ignoring case
+    public boolean isTaken(String username) {
+        return username != null && store.get(username) != null;
+    }
+
+    public List<User> all() {
+        return store.all();
+    }
+
+    public void add(User user) {
+        store.put(user);
+    }
+
+    // Replace the stored account with the same (exact) username; unknown users are ignored
+    public void update(User user) {
+        store.update(user.getUsername(),
+                current -> current != null && current.getUsername().equals(user.getUsername()) ? user : current);
+    }
+
+    public void remove(String username) {
+        store.remove(username);
+    }
+}
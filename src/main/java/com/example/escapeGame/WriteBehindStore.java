@@ -0,0 +1,292 @@
+package com.example.escapeGame;
+
+import com.google.gson.Gson;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.lang.reflect.Type;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+import java.util.function.UnaryOperator;
+
+/**
+ * In-memory, authoritative copy of one JSON list file (users, scores, ...), keyed case-insensitively.
+ * Mutations apply to memory at once and return; a shared background flusher writes them out at most every
+ * {@code data.writeBehindMs} (default 500 ms) and once more at shutdown. Pending changes are kept per key as
+ * functions of the current value and are replayed onto the file's latest content under its lock, so a flush
+ * coalesces any number of mutations into one write and doesn't undo changes made by another process.
+ * While nothing is pending, edits made to the file by someone else are picked up by checking its modification
+ * time at most every {@code data.reloadCheckMs} (default 2000 ms).
+ */
+public class WriteBehindStore<T> implements Repository<T> {
+    private static final long FLUSH_DELAY_MS = Long.getLong("data.writeBehindMs", 500);
+    private static final long RELOAD_CHECK_NANOS = Long.getLong("data.reloadCheckMs", 2000) * 1_000_000L;
+
+    private static final List<WriteBehindStore<?>> stores = new CopyOnWriteArrayList<>();
+    // Flushes of other write-behind data (the leaderboard log) that share the flusher thread and the shutdown flush
+    private static final List<Runnable> otherFlushes = new CopyOnWriteArrayList<>();
+    private static final ScheduledExecutorService flusher = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread t = new Thread(r, "data-write-behind");
+        t.setDaemon(true);
+        return t;
+    });
+    private static final AtomicLong mutations = new AtomicLong();
+    private static final AtomicLong flushes = new AtomicLong();
+    private static final AtomicLong lastFlushMs = new AtomicLong();
+    private static final AtomicLong maxFlushMs = new AtomicLong();
+
+    static {
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+            // Let queued writes and due flushes finish, then write whatever is still dirty
+            flusher.shutdown();
+            try { flusher.awaitTermination(5, TimeUnit.SECONDS); } catch (InterruptedException ignored) {}
+            flushAll();
+            System.out.println("[write-behind] " + metrics());
+        }, "data-write-behind-shutdown"));
+    }
+
+    private final String name;
+    private final Path path;
+    private final Gson gson;
+    private final Type listType;
+    private final Function<T, String> keyOf;
+    private final Object lock = new Object();
+    private LinkedHashMap<String, T> items;
+    // Per key: how to turn the on-disk value into ours (null result = delete), composed across mutations
+    private final LinkedHashMap<String, UnaryOperator<T>> pending = new LinkedHashMap<>();
+    private boolean flushScheduled = false;
+    // Modification time of the file our items were read from (or last written as), -1 if it didn't exist
+    private long loadedModified = -1;
+    private long lastCheckNanos;
+    private long externalChanges;
+
+    private WriteBehindStore(String name, Path path, Gson gson, Type listType, Function<T, String> keyOf) {
+        this.name = name;
+        this.path = path;
+        this.gson = gson;
+        this.listType = listType;
+        this.keyOf = keyOf;
+    }
+
+    /** A store for the list file at {@code path}, included in {@link #flushAll()} and the shutdown flush. */
+    public static <T> WriteBehindStore<T> open(String name, Path path, Gson gson, Type listType, Function<T, String> keyOf) {
+        WriteBehindStore<T> store = new WriteBehindStore<>(name, path, gson, listType, keyOf);
+        stores.add(store);
+        return store;
+    }
+
+    // Current values in file order; the objects are the store's own
+    public List<T> all() {
+        synchronized (lock) {
+            return new ArrayList<>(items().values());
+        }
+    }
+
+    public T get(String key) {
+        synchronized (lock) {
+            return items().get(normalize(key));
+        }
+    }
+
+    /** Apply {@code change} to the current value (null if absent; returning null deletes) and queue it for the file. */
+    public void update(String key, UnaryOperator<T> change) {
+        String k = normalize(key);
+        synchronized (lock) {
+            apply(items(), k, change);
+            pending.merge(k, change, (a, b) -> v -> b.apply(a.apply(v)));
+            mutations.incrementAndGet();
+            // After shutdown began the hook's final flushAll picks this up
+            if (!flushScheduled && !flusher.isShutdown()) {
+                flushScheduled = true;
+                flusher.schedule(this::flushQuietly, FLUSH_DELAY_MS, TimeUnit.MILLISECONDS);
+            }
+        }
+    }
+
+    public void put(T value) {
+        update(keyOf.apply(value), current -> value);
+    }
+
+    public void remove(String key) {
+        update(key, current -> null);
+    }
+
+    public int dirtyCount() {
+        synchronized (lock) {
+            return pending.size();
+        }
+    }
+
+    /** Write pending changes now (merged onto the file's current content) and reload memory from the result. */
+    public void flush() throws IOException {
+        Map<String, UnaryOperator<T>> batch;
+        synchronized (lock) {
+            flushScheduled = false;
+            if (pending.isEmpty()) return;
+            batch = new LinkedHashMap<>(pending);
+            pending.clear();
+        }
+        long start = System.nanoTime();
+        // Taken under the file lock, so a later write by another process still shows up as a change
+        long[] written = {-1};
+        boolean[] changedElsewhere = {false};
+        try {
+            LinkedHashMap<String, T> merged = DataFiles.locked(path, () -> {
+                changedElsewhere[0] = modifiedTime() != loadedModifiedSnapshot();
+                LinkedHashMap<String, T> onDisk = read(true);
+                batch.forEach((k, change) -> apply(onDisk, k, change));
+                try {
+                    DataFiles.write(path, gson.toJson(new ArrayList<>(onDisk.values()), listType));
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+                written[0] = modifiedTime();
+                return onDisk;
+            });
+            synchronized (lock) {
+                // Changes made while we were writing are still pending; keep them applied on top
+                pending.forEach((k, change) -> apply(merged, k, change));
+                items = merged;
+                loadedModified = written[0];
+                if (changedElsewhere[0]) externalChanges++;
+                lastCheckNanos = System.nanoTime();
+            }
+        } catch (IOException | UncheckedIOException e) {
+            // Put the batch back in front of anything newer so the next flush retries it
+            synchronized (lock) {
+                LinkedHashMap<String, UnaryOperator<T>> retry = new LinkedHashMap<>(batch);
+                pending.forEach((k, change) -> retry.merge(k, change, (a, b) -> v -> b.apply(a.apply(v))));
+                pending.clear();
+                pending.putAll(retry);
+            }
+            throw e instanceof UncheckedIOException u ? u.getCause() : (IOException) e;
+        } finally {
+            long ms = (System.nanoTime() - start) / 1_000_000;
+            flushes.incrementAndGet();
+            lastFlushMs.set(ms);
+            maxFlushMs.accumulateAndGet(ms, Math::max);
+        }
+    }
+
+    private void flushQuietly() {
+        try {
+            flush();
+        } catch (IOException e) {
+            System.err.println("Write-behind flush of " + name + " failed: " + e.getMessage());
+            synchronized (lock) {
+                if (!flushScheduled && !pending.isEmpty() && !flusher.isShutdown()) {
+                    flushScheduled = true;
+                    flusher.schedule(this::flushQuietly, FLUSH_DELAY_MS, TimeUnit.MILLISECONDS);
+                }
+            }
+        }
+    }
+
+    public static void flushAll() {
+        for (WriteBehindStore<?> s : stores) s.flushQuietly();
+        for (Runnable f : otherFlushes) f.run();
+    }
+
+    /** Include {@code flush} in {@link #flushAll()}, and so in the shutdown flush. */
+    public static void register(Runnable flush) {
+        otherFlushes.add(flush);
+    }
+
+    /** Run {@code flush} on the flusher thread after the write-behind delay; after shutdown began, flushAll runs it. */
+    public static void schedule(Runnable flush) {
+        try {
+            flusher.schedule(flush, FLUSH_DELAY_MS, TimeUnit.MILLISECONDS);
+        } catch (RejectedExecutionException ignored) {
+            // Shutting down; the final flushAll picks it up
+        }
+    }
+
+    public static long totalDirty() {
+        long n = 0;
+        for (WriteBehindStore<?> s : stores) n += s.dirtyCount();
+        return n;
+    }
+
+    public static String metrics() {
+        return "dirty=" + totalDirty() + " mutations=" + mutations.get() + " flushes=" + flushes.get()
+                + " lastFlushMs=" + lastFlushMs.get() + " maxFlushMs=" + maxFlushMs.get();
+    }
+
+    private LinkedHashMap<String, T> items() {
+        long now = System.nanoTime();
+        if (items == null) {
+            loadedModified = modifiedTime();
+            items = read(false);
+            lastCheckNanos = now;
+        } else if (pending.isEmpty() && now - lastCheckNanos > RELOAD_CHECK_NANOS) {
+            // With changes pending the next flush merges onto the file and reloads anyway
+            lastCheckNanos = now;
+            long modified = modifiedTime();
+            if (modified != loadedModified) {
+                System.out.println(path.getFileName() + " changed on disk - reloading " + name);
+                loadedModified = modified;
+                items = read(false);
+                externalChanges++;
+            }
+        }
+        return items;
+    }
+
+    public long lastModified() {
+        return modifiedTime();
+    }
+
+    public long externalChanges() {
+        synchronized (lock) {
+            items();
+            return externalChanges;
+        }
+    }
+
+    private long loadedModifiedSnapshot() {
+        synchronized (lock) {
+            return loadedModified;
+        }
+    }
+
+    private long modifiedTime() {
+        try {
+            return Files.getLastModifiedTime(path).toMillis();
+        } catch (IOException e) {
+            return -1;
+        }
+    }
+
+    // strict: fail instead of treating an unreadable file as empty (a flush would otherwise overwrite it)
+    private LinkedHashMap<String, T> read(boolean strict) {
+        LinkedHashMap<String, T> map = new LinkedHashMap<>();
+        try {
+            if (!Files.exists(path)) return map;
+            String json = Files.readString(path);
+            if (json.trim().isEmpty()) return map;
+            List<T> list = gson.fromJson(json, listType);
+            if (list != null) {
+                for (T t : list) {
+                    if (t != null && keyOf.apply(t) != null) map.put(normalize(keyOf.apply(t)), t);
+                }
+            }
+        } catch (Exception e) {
+            if (strict) throw new UncheckedIOException(new IOException("Unreadable " + path + ": " + e.getMessage(), e));
+            System.err.println("Failed to read " + path + ": " + e.getMessage());
+        }
+        return map;
+    }
+
+    private static <T> void apply(Map<String, T> map, String key, UnaryOperator<T> change) {
+        T next = change.apply(map.get(key));
+        if (next == null) map.remove(key); else map.put(key, next);
+    }
+
+    private static String normalize(String key) {
+        return key == null ? "" : key.toLowerCase(Locale.ROOT);
+    }
+}
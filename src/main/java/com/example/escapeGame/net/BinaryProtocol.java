@@ -0,0 +1,373 @@
+package com.example.escapeGame.net;
+
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+
+import java.io.ByteArrayOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Compact framing used after a successful "hello" handshake.
+ * A frame is a varint body length followed by the body: one opcode byte, then the opcode's fields.
+ * Strings are varint length + UTF-8, signed numbers are zigzag varints.
+ * Messages without a dedicated opcode travel as {@link #JSON} frames, so every message type still works.
+ * A room event's "seq" travels in a {@link #SEQ} prefix, so numbered events keep their typed opcodes.
+ */
+public final class BinaryProtocol {
+    // bin2 added SEQ; a bin1-only peer negotiates JSON instead
+    public static final String NAME = "bin2";
+    public static final int MAX_FRAME_BYTES = 64 * 1024;
+
+    public static final int JSON = 0x00;
+    public static final int SUBMIT_ANSWER = 0x01;
+    public static final int SCORE_SNAPSHOT = 0x02;
+    public static final int TEAM_SCORE_UPDATE = 0x03;
+    public static final int ANSWER_RESULT = 0x04;
+    public static final int QUESTION = 0x05;
+    public static final int ROOM_UPDATE = 0x06;
+    public static final int PING = 0x07;
+    public static final int PONG = 0x08;
+    public static final int SCORE_DELTA = 0x09;
+    // Several complete frames sent together by a room in tick mode
+    public static final int BATCH = 0x0A;
+    // varLong seq, then the body of the numbered message (its opcode and fields)
+    public static final int SEQ = 0x0B;
+
+    private BinaryProtocol() {}
+
+    // Encode a message as a complete frame (length prefix included)
+    public static byte[] encode(JsonObject msg) {
+        if (!msg.has("seq")) return body(msg).toFrame();
+        JsonObject unnumbered = msg.deepCopy();
+        unnumbered.remove("seq");
+        Writer numbered = new Writer();
+        numbered.opcode(SEQ);
+        numbered.varLong(msg.get("seq").getAsLong());
+        numbered.raw(body(unnumbered).bytes());
+        return numbered.toFrame();
+    }
+
+    private static Writer body(JsonObject msg) {
+        Writer body = new Writer();
+        if (!encodeTyped(msg, body)) {
+            body = new Writer();
+            body.opcode(JSON);
+            body.raw(msg.toString().getBytes(StandardCharsets.UTF_8));
+        }
+        return body;
+    }
+
+    // One frame wrapping already encoded frames; null if the result would exceed MAX_FRAME_BYTES
+    public static byte[] encodeBatch(List<byte[]> frames) {
+        Writer body = new Writer();
+        body.opcode(BATCH);
+        body.varInt(frames.size());
+        int size = 0;
+        for (byte[] f : frames) {
+            size += f.length;
+            if (size > MAX_FRAME_BYTES - 8) return null;
+            body.raw(f);
+        }
+        return body.toFrame();
+    }
+
+    private static boolean encodeTyped(JsonObject msg, Writer w) {
+        try {
+            String type = msg.has("type") ? msg.get("type").getAsString() : "";
+            switch (type) {
+                case "submitAnswer":
+                    w.opcode(SUBMIT_ANSWER);
+                    w.string(msg.get("roomCode").getAsString());
+                    w.string(msg.get("username").getAsString());
+                    w.string(msg.get("answer").getAsString());
+                    w.varLong(msg.get("elapsedMs").getAsLong());
+                    return true;
+                case "scoreSnapshot":
+                    if (msg.size() != 3) return false;
+                    w.opcode(SCORE_SNAPSHOT);
+                    w.varInt(msg.get("version").getAsInt());
+                    writeScores(w, msg.getAsJsonArray("scores"), "score");
+                    return true;
+                case "scoreDelta":
+                    if (msg.size() != 3) return false;
+                    w.opcode(SCORE_DELTA);
+                    w.varInt(msg.get("version").getAsInt());
+                    writeScores(w, msg.getAsJsonArray("changes"), "delta");
+                    return true;
+                case "teamScoreUpdate":
+                    if (msg.size() != 5) return false;
+                    w.opcode(TEAM_SCORE_UPDATE);
+                    w.varInt((msg.get("unanimous").getAsBoolean() ? 1 : 0) | (msg.get("timeBonus").getAsBoolean() ? 2 : 0));
+                    w.varInt(msg.get("version").getAsInt());
+                    writeScores(w, msg.getAsJsonArray("changes"), "delta");
+                    return true;
+                case "answerResult":
+                    if (msg.size() != 4) return false;
+                    w.opcode(ANSWER_RESULT);
+                    w.string(msg.get("username").getAsString());
+                    w.varInt(msg.get("correct").getAsBoolean() ? 1 : 0);
+                    w.signed(msg.get("scoreDelta").getAsInt());
+                    return true;
+                case "question":
+                    if (msg.size() != 5) return false;
+                    w.opcode(QUESTION);
+                    w.varInt(msg.get("index").getAsInt());
+                    w.varInt(msg.get("total").getAsInt());
+                    w.varInt(msg.get("timeSec").getAsInt());
+                    w.string(msg.get("text").getAsString());
+                    return true;
+                case "roomUpdate": {
+                    if (msg.size() != 2) return false;
+                    JsonObject room = msg.getAsJsonObject("room");
+                    if (room.size() != 5) return false;
+                    w.opcode(ROOM_UPDATE);
+                    w.string(room.get("code").getAsString());
+                    w.string(room.get("host").getAsString());
+                    w.varInt(room.get("capacity").getAsInt());
+                    w.varInt(room.get("canStart").getAsBoolean() ? 1 : 0);
+                    JsonArray players = room.getAsJsonArray("players");
+                    w.varInt(players.size());
+                    for (JsonElement p : players) w.string(p.getAsString());
+                    return true;
+                }
+                case "ping":
+                    if (msg.size() != 1) return false;
+                    w.opcode(PING);
+                    return true;
+                case "pong":
+                    if (msg.size() != 1) return false;
+                    w.opcode(PONG);
+                    return true;
+                default:
+                    return false;
+            }
+        } catch (RuntimeException e) {
+            // Unexpected shape (missing or non-primitive field): caller falls back to a JSON frame
+            return false;
+        }
+    }
+
+    // username + signed value pairs; field is "score" in snapshots and "delta" in deltas
+    private static void writeScores(Writer w, JsonArray scores, String field) {
+        w.varInt(scores.size());
+        for (JsonElement e : scores) {
+            JsonObject o = e.getAsJsonObject();
+            if (o.size() != 2) throw new IllegalArgumentException("unexpected score entry");
+            w.string(o.get("username").getAsString());
+            w.signed(o.get(field).getAsInt());
+        }
+    }
+
+    // Decode a frame body (without its length prefix) back into the JSON shape the rest of the app uses
+    public static JsonObject decode(byte[] body) {
+        Reader r = new Reader(body);
+        int op = r.opcode();
+        JsonObject msg = new JsonObject();
+        switch (op) {
+            case JSON:
+                return JsonParser.parseString(r.rest()).getAsJsonObject();
+            case SUBMIT_ANSWER:
+                msg.addProperty("type", "submitAnswer");
+                msg.addProperty("roomCode", r.string());
+                msg.addProperty("username", r.string());
+                msg.addProperty("answer", r.string());
+                msg.addProperty("elapsedMs", r.varLong());
+                return msg;
+            case SCORE_SNAPSHOT:
+                msg.addProperty("type", "scoreSnapshot");
+                msg.addProperty("version", r.varInt());
+                msg.add("scores", readScores(r, "score"));
+                return msg;
+            case SCORE_DELTA:
+                msg.addProperty("type", "scoreDelta");
+                msg.addProperty("version", r.varInt());
+                msg.add("changes", readScores(r, "delta"));
+                return msg;
+            case TEAM_SCORE_UPDATE: {
+                int flags = r.varInt();
+                msg.addProperty("type", "teamScoreUpdate");
+                msg.addProperty("unanimous", (flags & 1) != 0);
+                msg.addProperty("timeBonus", (flags & 2) != 0);
+                msg.addProperty("version", r.varInt());
+                msg.add("changes", readScores(r, "delta"));
+                return msg;
+            }
+            case ANSWER_RESULT:
+                msg.addProperty("type", "answerResult");
+                msg.addProperty("username", r.string());
+                msg.addProperty("correct", r.varInt() != 0);
+                msg.addProperty("scoreDelta", r.signed());
+                return msg;
+            case QUESTION:
+                msg.addProperty("type", "question");
+                msg.addProperty("index", r.varInt());
+                msg.addProperty("total", r.varInt());
+                msg.addProperty("timeSec", r.varInt());
+                msg.addProperty("text", r.string());
+                return msg;
+            case ROOM_UPDATE: {
+                JsonObject room = new JsonObject();
+                room.addProperty("code", r.string());
+                room.addProperty("host", r.string());
+                room.addProperty("capacity", r.varInt());
+                room.addProperty("canStart", r.varInt() != 0);
+                JsonArray players = new JsonArray();
+                int n = r.varInt();
+                for (int i = 0; i < n; i++) players.add(r.string());
+                room.add("players", players);
+                msg.addProperty("type", "roomUpdate");
+                msg.add("room", room);
+                return msg;
+            }
+            case PING:
+                msg.addProperty("type", "ping");
+                return msg;
+            case PONG:
+                msg.addProperty("type", "pong");
+                return msg;
+            case SEQ: {
+                long seq = r.varLong();
+                JsonObject numbered = decode(r.restBytes());
+                numbered.addProperty("seq", seq);
+                return numbered;
+            }
+            case BATCH: {
+                JsonArray messages = new JsonArray();
+                int n = r.varInt();
+                for (int i = 0; i < n; i++) messages.add(decode(r.frame()));
+                msg.addProperty("type", "batch");
+                msg.add("messages", messages);
+                return msg;
+            }
+            default:
+                throw new IllegalArgumentException("Unknown opcode: " + op);
+        }
+    }
+
+    private static JsonArray readScores(Reader r, String field) {
+        JsonArray arr = new JsonArray();
+        int n = r.varInt();
+        for (int i = 0; i < n; i++) {
+            JsonObject o = new JsonObject();
+            o.addProperty("username", r.string());
+            o.addProperty(field, r.signed());
+            arr.add(o);
+        }
+        return arr;
+    }
+
+    // Blocking read of one frame body; null at end of stream
+    public static byte[] readFrame(InputStream in) throws IOException {
+        int len = 0;
+        for (int shift = 0; ; shift += 7) {
+            int b = in.read();
+            if (b < 0) {
+                if (shift == 0) return null;
+                throw new EOFException("Stream ended inside a frame header");
+            }
+            len |= (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) break;
+            if (shift > 21) throw new IOException("Frame length varint too long");
+        }
+        if (len > MAX_FRAME_BYTES) throw new IOException("Frame of " + len + " bytes exceeds limit");
+        byte[] body = in.readNBytes(len);
+        if (body.length < len) throw new EOFException("Stream ended inside a frame");
+        return body;
+    }
+
+    public static final class Writer {
+        private final ByteArrayOutputStream out = new ByteArrayOutputStream(64);
+
+        public void opcode(int op) { out.write(op); }
+
+        public void varInt(int v) { varLong(v & 0xFFFFFFFFL); }
+
+        public void varLong(long v) {
+            while ((v & ~0x7FL) != 0) {
+                out.write((int) ((v & 0x7F) | 0x80));
+                v >>>= 7;
+            }
+            out.write((int) v);
+        }
+
+        public void signed(int v) { varInt((v << 1) ^ (v >> 31)); }
+
+        public void string(String s) {
+            byte[] b = s.getBytes(StandardCharsets.UTF_8);
+            varInt(b.length);
+            out.write(b, 0, b.length);
+        }
+
+        public void raw(byte[] b) { out.write(b, 0, b.length); }
+
+        public byte[] bytes() { return out.toByteArray(); }
+
+        public byte[] toFrame() {
+            byte[] body = out.toByteArray();
+            Writer frame = new Writer();
+            frame.varInt(body.length);
+            frame.raw(body);
+            return frame.out.toByteArray();
+        }
+    }
+
+    public static final class Reader {
+        private final byte[] buf;
+        private int pos = 0;
+
+        public Reader(byte[] buf) { this.buf = buf; }
+
+        public int opcode() { return buf[pos++] & 0xFF; }
+
+        public long varLong() {
+            long v = 0;
+            for (int shift = 0; shift < 64; shift += 7) {
+                byte b = buf[pos++];
+                v |= (long) (b & 0x7F) << shift;
+                if ((b & 0x80) == 0) return v;
+            }
+            throw new IllegalArgumentException("Malformed varint");
+        }
+
+        public int varInt() { return (int) varLong(); }
+
+        public int signed() {
+            int v = varInt();
+            return (v >>> 1) ^ -(v & 1);
+        }
+
+        public String string() {
+            int len = varInt();
+            String s = new String(buf, pos, len, StandardCharsets.UTF_8);
+            pos += len;
+            return s;
+        }
+
+        // A nested length-prefixed frame body
+        public byte[] frame() {
+            int len = varInt();
+            byte[] b = Arrays.copyOfRange(buf, pos, pos + len);
+            pos += len;
+            return b;
+        }
+
+        public byte[] restBytes() {
+            byte[] b = Arrays.copyOfRange(buf, pos, buf.length);
+            pos = buf.length;
+            return b;
+        }
+
+        public String rest() {
+            String s = new String(buf, pos, buf.length - pos, StandardCharsets.UTF_8);
+            pos = buf.length;
+            return s;
+        }
+    }
+}
@@ -1,22 +1,52 @@
 package com.example.escapeGame.net;
 
 import com.google.gson.Gson;
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
 import com.google.gson.JsonObject;
 import javafx.application.Platform;
 
 import java.io.*;
 import java.net.Socket;
+import java.net.SocketTimeoutException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.locks.ReentrantLock;
 import java.util.function.Consumer;
 
 public class NetClient implements Closeable {
-    private final String host;
-    private final int port;
+    // Set -Descape.binary=false to stay on line-delimited JSON
+    private static final boolean BINARY_ENABLED = !"false".equalsIgnoreCase(System.getProperty("escape.binary"));
+    private static final int HANDSHAKE_TIMEOUT_MS = 5000;
+    // After losing the server mid-room, keep trying it and the -Descape.failover=host:port,... servers this long
+    private static final long RECONNECT_MS = Long.getLong("escape.reconnectSec", 15) * 1000;
+    private static final long RECONNECT_RETRY_MS = 500;
+    private static final String FAILOVER = System.getProperty("escape.failover", "");
+
+    // Change when the server redirects us to the node that owns a room
+    private volatile String host;
+    private volatile int port;
     private final Gson gson = new Gson();
+    private final ReentrantLock writeLock = new ReentrantLock();
     private Socket socket;
-    private PrintWriter out;
+    private OutputStream out;
     private Thread readerThread;
+    private volatile boolean binary = false;
     private Consumer<JsonObject> onMessage;
     private Consumer<String> onError;
+    // The last joinRoom sent, repeated on the new node after a redirect
+    private volatile JsonObject pendingJoin;
+    // The room we're in and as whom, for resuming (or rejoining) after a reconnect
+    private volatile String username;
+    private volatile String roomCode;
+    private volatile String sessionToken;
+    // Set while a resume sent after reconnecting is unanswered; if it fails we rejoin by name once
+    private volatile boolean resumePending;
+    // Newest room event number received ("seq"), sent with resume so the server replays only what came after it
+    private volatile long lastSeq;
+    // Set by close(), so losing the connection on purpose doesn't trigger a reconnect
+    private volatile boolean closed;
 
     public NetClient(String host, int port) {
         this.host = host;
@@ -26,36 +56,247 @@ public class NetClient implements Closeable {
     public void setOnMessage(Consumer<JsonObject> onMessage) { this.onMessage = onMessage; }
     public void setOnError(Consumer<String> onError) { this.onError = onError; }
 
+    public boolean isBinary() { return binary; }
+
     public void connect() throws IOException {
+        closed = false;
         socket = new Socket(host, port);
-        out = new PrintWriter(new OutputStreamWriter(socket.getOutputStream()), true);
-        readerThread = new Thread(this::readLoop, "net-reader");
+        out = new BufferedOutputStream(socket.getOutputStream());
+        InputStream in = new BufferedInputStream(socket.getInputStream());
+        if (BINARY_ENABLED) binary = negotiate(in);
+        readerThread = new Thread(() -> readLoop(in), "net-reader");
         readerThread.setDaemon(true);
         readerThread.start();
     }
 
-    private void readLoop() {
-        try (BufferedReader br = new BufferedReader(new InputStreamReader(socket.getInputStream()))) {
-            String line;
-            while ((line = br.readLine()) != null) {
+    // Offer the binary protocol and wait for the server's answer before anything else is sent.
+    // Older servers reply with an "Unknown type" error, which keeps us on JSON.
+    private boolean negotiate(InputStream in) throws IOException {
+        JsonObject hello = new JsonObject();
+        hello.addProperty("type", "hello");
+        JsonArray protocols = new JsonArray();
+        protocols.add(BinaryProtocol.NAME);
+        hello.add("protocols", protocols);
+        write((gson.toJson(hello) + "\n").getBytes(StandardCharsets.UTF_8));
+        socket.setSoTimeout(HANDSHAKE_TIMEOUT_MS);
+        try {
+            String line = readLine(in);
+            if (line == null) throw new EOFException("Server closed the connection during handshake");
+            JsonObject resp = gson.fromJson(line, JsonObject.class);
+            boolean ok = resp != null && resp.has("type") && "helloAck".equals(resp.get("type").getAsString())
+                    && resp.has("protocol") && BinaryProtocol.NAME.equals(resp.get("protocol").getAsString());
+            System.out.println("Server protocol: " + (ok ? BinaryProtocol.NAME : "json"));
+            return ok;
+        } catch (SocketTimeoutException e) {
+            throw new IOException("Server did not answer protocol handshake", e);
+        } finally {
+            socket.setSoTimeout(0);
+        }
+    }
+
+    private void readLoop(InputStream in) {
+        try {
+            while (true) {
+                JsonObject msg;
+                String raw = null;
                 try {
-                    JsonObject msg = gson.fromJson(line, JsonObject.class);
-                    if (onMessage != null) {
-                        Platform.runLater(() -> onMessage.accept(msg));
+                    if (binary) {
+                        byte[] body = BinaryProtocol.readFrame(in);
+                        if (body == null) break;
+                        msg = BinaryProtocol.decode(body);
+                    } else {
+                        raw = readLine(in);
+                        if (raw == null) break;
+                        msg = gson.fromJson(raw, JsonObject.class);
                     }
+                } catch (IOException e) {
+                    throw e;
                 } catch (Exception ex) {
-                    System.err.println("Failed to parse server message: " + line);
+                    System.err.println("Failed to parse server message: " + raw);
                     ex.printStackTrace();
                     if (onError != null) onError.accept("Failed to parse server message: " + ex.getMessage());
+                    continue;
+                }
+                String type = msg.has("type") ? msg.get("type").getAsString() : "";
+                if ("redirect".equals(type)) {
+                    // This connection is replaced; the new one has its own reader
+                    followRedirect(msg);
+                    return;
+                }
+                if ("sessionReplaced".equals(type)) {
+                    // Logged in again elsewhere; the server closes this connection, and reconnecting would only
+                    // take the seat back from the new one
+                    closed = true;
+                    String why = msg.has("message") ? msg.get("message").getAsString() : "Logged in from another connection";
+                    System.out.println(why);
+                    if (onError != null) onError.accept(why);
+                    return;
+                }
+                if ("roomCreated".equals(type) && msg.has("roomCode")) roomCode = msg.get("roomCode").getAsString();
+                if (msg.has("sessionToken")) sessionToken = msg.get("sessionToken").getAsString();
+                if (msg.has("type")) noteSeq(msg);
+                if (resumePending && "resumed".equals(type)) resumePending = false;
+                if (resumePending && "error".equals(type)) {
+                    // Session gone (grace window over) or unknown here (the token hadn't reached the standby)
+                    resumePending = false;
+                    rejoinByName();
+                    continue;
+                }
+                if (onMessage == null) continue;
+                if (msg.has("messages") && msg.has("type") && "batch".equals(msg.get("type").getAsString())) {
+                    // One room tick: hand the messages over in order within a single FX pulse
+                    JsonArray batch = msg.getAsJsonArray("messages");
+                    Platform.runLater(() -> {
+                        for (JsonElement m : batch) {
+                            if (onMessage != null) onMessage.accept(m.getAsJsonObject());
+                        }
+                    });
+                } else {
+                    Platform.runLater(() -> onMessage.accept(msg));
                 }
             }
+            if (!closed && reconnect()) return;
         } catch (IOException e) {
+            if (!closed && reconnect()) return;
             if (onError != null) onError.accept("Disconnected: " + e.getMessage());
         }
     }
 
+    // The server went away while we were in a room: connect again (to it or a failover server) and resume the seat
+    // with our session token, which replays only what we missed; without a token, rejoin by name.
+    // Runs on the old reader thread, which ends once the new connection has its own.
+    private boolean reconnect() {
+        String room = roomCode, user = username, token = sessionToken;
+        if (room == null || user == null) return false;
+        List<String> targets = new ArrayList<>();
+        targets.add(host + ":" + port);
+        for (String t : FAILOVER.split(",")) {
+            if (!t.isBlank() && !targets.contains(t.trim())) targets.add(t.trim());
+        }
+        System.out.println("Connection lost - reconnecting to room " + room);
+        long deadline = System.currentTimeMillis() + RECONNECT_MS;
+        for (int attempt = 0; System.currentTimeMillis() < deadline && !closed; attempt++) {
+            String target = targets.get(attempt % targets.size());
+            int colon = target.lastIndexOf(':');
+            try {
+                try { if (socket != null) socket.close(); } catch (IOException ignored) {}
+                host = target.substring(0, colon);
+                port = Integer.parseInt(target.substring(colon + 1));
+                connect();
+                JsonObject back = new JsonObject();
+                back.addProperty("type", token != null ? "resume" : "rejoin");
+                back.addProperty("roomCode", room);
+                if (token != null) {
+                    back.addProperty("sessionToken", token);
+                    back.addProperty("lastSeq", lastSeq);
+                }
+                else back.addProperty("username", user);
+                resumePending = token != null;
+                send(back);
+                System.out.println("Reconnected to " + target + ", " + (token != null ? "resuming" : "rejoining") + " room " + room);
+                return true;
+            } catch (IOException | RuntimeException e) {
+                System.out.println("Reconnect to " + target + " failed: " + e.getMessage());
+            }
+            try {
+                Thread.sleep(RECONNECT_RETRY_MS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return false;
+            }
+        }
+        return false;
+    }
+
+    private void rejoinByName() {
+        String room = roomCode, user = username;
+        if (room == null || user == null) return;
+        System.out.println("Resume refused - rejoining room " + room + " by name");
+        sessionToken = null;
+        JsonObject rejoin = new JsonObject();
+        rejoin.addProperty("type", "rejoin");
+        rejoin.addProperty("roomCode", room);
+        rejoin.addProperty("username", user);
+        send(rejoin);
+    }
+
+    // Room events carry "seq", and join/rejoin/resume replies the number they caught the client up to (which after a
+    // failover starts a new numbering)
+    private void noteSeq(JsonObject msg) {
+        String type = msg.get("type").getAsString();
+        if (msg.has("seq")) {
+            long seq = msg.get("seq").getAsLong();
+            boolean caughtUp = "joined".equals(type) || "rejoined".equals(type) || "resumed".equals(type);
+            lastSeq = caughtUp ? seq : Math.max(lastSeq, seq);
+        }
+        if (msg.has("messages") && "batch".equals(type)) {
+            for (JsonElement m : msg.getAsJsonArray("messages")) {
+                JsonObject o = m.getAsJsonObject();
+                if (o.has("seq")) lastSeq = Math.max(lastSeq, o.get("seq").getAsLong());
+            }
+        }
+    }
+
+    // In a multi-node setup the room is on another server: reconnect there and send the join again
+    private void followRedirect(JsonObject msg) {
+        String toHost = msg.get("host").getAsString();
+        int toPort = msg.get("port").getAsInt();
+        System.out.println("Redirected to " + toHost + ":" + toPort + " for room " + (msg.has("roomCode") ? msg.get("roomCode").getAsString() : "?"));
+        try {
+            close();
+            host = toHost;
+            port = toPort;
+            connect();
+            JsonObject join = pendingJoin;
+            if (join != null) send(join);
+        } catch (IOException e) {
+            if (onError != null) onError.accept("Redirect to " + toHost + ":" + toPort + " failed: " + e.getMessage());
+        }
+    }
+
+    // Read one UTF-8 line (without the terminator); null at end of stream
+    private static String readLine(InputStream in) throws IOException {
+        ByteArrayOutputStream line = new ByteArrayOutputStream(128);
+        int b;
+        while ((b = in.read()) != -1) {
+            if (b == '\n') break;
+            line.write(b);
+        }
+        if (b == -1 && line.size() == 0) return null;
+        String s = line.toString(StandardCharsets.UTF_8);
+        return s.endsWith("\r") ? s.substring(0, s.length() - 1) : s;
+    }
+
     public void send(JsonObject obj) {
-        if (out != null) out.println(gson.toJson(obj));
+        if (out == null) return;
+        String type = obj.has("type") ? obj.get("type").getAsString() : "";
+        if ("createRoom".equals(type) || "joinRoom".equals(type)) lastSeq = 0;
+        if ("joinRoom".equals(type)) {
+            pendingJoin = obj;
+            if (obj.has("roomCode")) roomCode = obj.get("roomCode").getAsString();
+            sessionToken = null;
+        }
+        if (("createRoom".equals(type) || "joinRoom".equals(type)) && obj.has("username")) username = obj.get("username").getAsString();
+        if ("leaveRoom".equals(type)) {
+            roomCode = null;
+            sessionToken = null;
+        }
+        byte[] frame = binary ? BinaryProtocol.encode(obj) : (gson.toJson(obj) + "\n").getBytes(StandardCharsets.UTF_8);
+        try {
+            write(frame);
+        } catch (IOException e) {
+            if (onError != null) onError.accept("Send failed: " + e.getMessage());
+        }
+    }
+
+    private void write(byte[] bytes) throws IOException {
+        writeLock.lock();
+        try {
+            out.write(bytes);
+            out.flush();
+        } finally {
+            writeLock.unlock();
+        }
     }
 
     public void sendType(String type) {
@@ -66,8 +307,7 @@ public class NetClient implements Closeable {
 
     @Override
     public void close() throws IOException {
+        closed = true;
         try { if (socket != null) socket.close(); } finally { socket = null; }
     }
 }
-
-
@@ -0,0 +1,14 @@
+package com.example.escapeGame.server;
+
+// Transport used by a ClientHandler to talk to its client, independent of blocking or NIO sockets
+interface ClientChannel {
+    // Queue one already encoded frame for the client; the bytes are shared between recipients and must not be modified
+    void write(byte[] frame);
+
+    String remoteAddress();
+
+    void close();
+
+    // Write what is already queued, then close; frames written after this are dropped
+    void closeAfterFlush();
+}
@@ -1,35 +1,55 @@
 package com.example.escapeGame.server;
 
 import com.example.escapeGame.ChatMessage;
-import com.google.gson.Gson;
+import com.example.escapeGame.net.BinaryProtocol;
 import com.google.gson.JsonObject;
 
 import java.io.*;
 import java.net.Socket;
+import java.util.List;
+import java.util.Objects;
 
 class ClientHandler implements Runnable {
     private final Socket socket;
     private final RoomDirectory rooms;
-    private final Gson gson = new Gson();
-    private volatile PrintWriter out;
+    private static final boolean BINARY_ENABLED = !"false".equalsIgnoreCase(System.getProperty("server.binary"));
+    private volatile ClientChannel channel;
     private volatile String currentRoomCode;
     private volatile String username;
     private volatile boolean identified = false;
+    private volatile boolean disconnected = false;
+    // Set after a "hello" that negotiated the binary protocol; both directions use binary frames from then on
+    private volatile boolean binary = false;
 
+    // Blocking mode: run() owns the socket and reads lines on the calling thread
     ClientHandler(Socket socket, RoomDirectory rooms) {
         this.socket = socket;
         this.rooms = rooms;
+        ServerMetrics.connectionOpened();
+    }
+
+    // NIO mode: the event loop feeds decoded lines into handle() and calls disconnected() on close
+    ClientHandler(ClientChannel channel, RoomDirectory rooms) {
+        this.socket = null;
+        this.channel = channel;
+        this.rooms = rooms;
+        ServerMetrics.connectionOpened();
     }
 
     @Override
     public void run() {
-        try (BufferedReader reader = new BufferedReader(new InputStreamReader(socket.getInputStream()));
-             PrintWriter writer = new PrintWriter(new OutputStreamWriter(socket.getOutputStream()), true)) {
-            this.out = writer;
+        try (InputStream in = socket.getInputStream()) {
+            this.channel = new SocketClientChannel(socket, socket.getOutputStream());
             System.out.println("Client connected from: " + socket.getInetAddress() + " (waiting for identification)");
-            String line;
-            while ((line = reader.readLine()) != null) {
-                handle(line);
+            FrameDecoder decoder = new FrameDecoder(this);
+            // Small read buffer: messages are short and idle connections should stay cheap
+            byte[] buf = new byte[1024];
+            int n;
+            while ((n = in.read(buf)) != -1) {
+                if (!decoder.feed(buf, 0, n)) {
+                    System.err.println("Malformed frame from " + socket.getInetAddress() + " - closing");
+                    break;
+                }
             }
         } catch (IOException e) {
             if (identified && username != null) {
@@ -38,58 +58,140 @@ class ClientHandler implements Runnable {
                 System.out.println("Client disconnected: " + e.getMessage());
             }
         } finally {
-            if (currentRoomCode != null && username != null) {
-                System.out.println("User " + username + " leaving room " + currentRoomCode);
-                rooms.leave(currentRoomCode, username, this);
+            disconnected();
+            // Stops the writer as well as closing the socket
+            if (channel != null) channel.close();
+            else try { socket.close(); } catch (IOException ignored) {}
+        }
+    }
+
+    // Give up the current room's seat once, whichever transport noticed the disconnect; the seat is held for the
+    // resume grace window first (see RoomDirectory.hold)
+    void disconnected() {
+        if (disconnected) return;
+        disconnected = true;
+        ServerMetrics.connectionClosed();
+        if (currentRoomCode != null && username != null) {
+            System.out.println("User " + username + " dropped from room " + currentRoomCode);
+            rooms.hold(currentRoomCode, username, this);
+        }
+        if (identified) rooms.presence().disconnect(username, this);
+    }
+
+    boolean isBinary() { return binary; }
+
+    // A JSON line, streamed straight into a Command without building a JsonObject tree
+    void handle(String line) {
+        System.out.println("Received message: " + line);
+        Command cmd;
+        try {
+            cmd = CommandDecoder.decode(line);
+        } catch (IOException | RuntimeException ex) {
+            System.err.println("Malformed message: " + ex.getMessage());
+            sendError("Invalid message format: " + ex.getMessage());
+            return;
+        }
+        dispatch(cmd);
+    }
+
+    // A binary frame body; typed opcodes are read straight from the bytes, JSON frames go through the same decoder as lines
+    void handleFrame(byte[] body) {
+        Command cmd;
+        try {
+            BinaryProtocol.Reader r = new BinaryProtocol.Reader(body);
+            switch (r.opcode()) {
+                case BinaryProtocol.SUBMIT_ANSWER:
+                    cmd = Command.submitAnswer(r.string(), r.string(), r.string(), r.varLong());
+                    break;
+                case BinaryProtocol.PING:
+                    cmd = Command.ofType("ping");
+                    break;
+                case BinaryProtocol.JSON: {
+                    String json = r.rest();
+                    System.out.println("Received frame: " + json);
+                    cmd = CommandDecoder.decode(json);
+                    break;
+                }
+                default:
+                    // Server-to-client opcodes; dispatch reports them as unknown types
+                    cmd = Command.ofType(BinaryProtocol.decode(body).get("type").getAsString());
             }
-            try { socket.close(); } catch (IOException ignored) {}
+        } catch (IOException | RuntimeException ex) {
+            System.err.println("Malformed frame: " + ex.getMessage());
+            sendError("Invalid message format");
+            return;
         }
+        dispatch(cmd);
     }
 
-    private void handle(String line) {
+    private void dispatch(Command msg) {
         try {
-            System.out.println("Received message: " + line);
-            JsonObject msg = gson.fromJson(line, JsonObject.class);
-            if (!msg.has("type")) {
+            if (msg.type() == null) {
                 sendError("Message missing 'type' field");
                 return;
             }
-            String type = msg.get("type").getAsString();
+            String type = msg.type();
             switch (type) {
                 case "ping":
                     send(json("pong")); break;
+                case "hello": {
+                    // Protocol negotiation; the ack itself still goes out as JSON
+                    boolean useBinary = BINARY_ENABLED && msg.protocols() != null && msg.protocols().contains(BinaryProtocol.NAME);
+                    JsonObject ack = json("helloAck");
+                    ack.addProperty("protocol", useBinary ? BinaryProtocol.NAME : "json");
+                    send(ack);
+                    binary = useBinary;
+                    System.out.println("Client " + channel.remoteAddress() + " negotiated protocol " + (useBinary ? BinaryProtocol.NAME : "json"));
+                    break;
+                }
                 case "createRoom": {
-                    username = msg.get("username").getAsString();
+                    username = Objects.requireNonNull(msg.username());
                     identifyUser(username);
                     System.out.println("User " + username + " creating room");
                     String code = rooms.createRoom(username);
+                    if (code == null) {
+                        sendError("Server is full - no free room codes. Please try again later.");
+                        break;
+                    }
                     currentRoomCode = code;
+                    if (msg.tickMs() != null) rooms.setTickMs(code, msg.tickMs());
                     rooms.addClientToRoom(code, username, this);
                     System.out.println("Room " + code + " created by " + username);
                     // Persist initial selection (room/difficulty) if provided
-                    try {
-                        String room = msg.has("room") ? msg.get("room").getAsString() : null;
-                        String difficulty = msg.has("difficulty") ? msg.get("difficulty").getAsString() : null;
-                        if (room != null || difficulty != null) {
-                            rooms.setSelection(code, room, difficulty);
-                            System.out.println("Room " + code + " settings set - Room: " + room + ", Difficulty: " + difficulty);
-                        }
-                    } catch (Exception ignored) {}
+                    String room = msg.room();
+                    String difficulty = msg.difficulty();
+                    if (room != null || difficulty != null) {
+                        rooms.setSelection(code, room, difficulty);
+                        System.out.println("Room " + code + " settings set - Room: " + room + ", Difficulty: " + difficulty);
+                    }
                     JsonObject resp = new JsonObject();
                     resp.addProperty("type", "roomCreated");
                     resp.addProperty("roomCode", code);
+                    resp.addProperty("sessionToken", rooms.openSession(code, username));
                     send(resp);
                     rooms.broadcastRoomUpdate(code);
                     break;
                 }
                 case "joinRoom": {
-                    String code = msg.get("roomCode").getAsString();
-                    username = msg.get("username").getAsString();
+                    String code = Objects.requireNonNull(msg.roomCode());
+                    username = Objects.requireNonNull(msg.username());
                     identifyUser(username);
-                    String room = msg.has("room") ? msg.get("room").getAsString() : null;
-                    String difficulty = msg.has("difficulty") ? msg.get("difficulty").getAsString() : null;
+                    String room = msg.room();
+                    String difficulty = msg.difficulty();
                     
                     System.out.println("User " + username + " joining room " + code);
+
+                    // The room lives on another node: send the client there
+                    ClusterRing.Node owner = rooms.remoteOwner(code);
+                    if (owner != null) {
+                        JsonObject redirect = json("redirect");
+                        redirect.addProperty("roomCode", code);
+                        redirect.addProperty("host", owner.host());
+                        redirect.addProperty("port", owner.port());
+                        send(redirect);
+                        System.out.println("Redirecting " + username + " to " + owner.id() + " for room " + code);
+                        break;
+                    }
                     
                     // First check if the room exists and get its settings
                     RoomSettings roomSettings = rooms.getRoomSettings(code);
@@ -111,78 +213,103 @@ class ClientHandler implements Runnable {
                         break;
                     }
 
-                    // Check if user can join and provide specific reason if not
-                    String reason = rooms.checkJoinAllowed(code, username);
-                    if (reason != null) {
-                        System.out.println("Join rejected for " + username + ": " + reason);
-                        sendError(reason);
+                    // If settings match or weren't specified, try to join; the room's mailbox checks and seats us atomically
+                    String joiningUser = username;
+                    rooms.requestJoin(code, joiningUser, this, room, difficulty, reason -> {
+                        if (reason == null) {
+                            currentRoomCode = code;
+                            JsonObject resp = new JsonObject();
+                            resp.addProperty("type", "joined");
+                            resp.add("room", rooms.roomSnapshot(code));
+                            resp.addProperty("sessionToken", rooms.openSession(code, joiningUser));
+                            resp.addProperty("seq", rooms.eventSeq(code));
+                            send(resp);
+                            rooms.broadcastRoomUpdate(code);
+                            System.out.println("User " + joiningUser + " successfully joined room: " + code);
+                        } else {
+                            System.out.println("User " + joiningUser + " failed to join room: " + code);
+                            sendError(reason);
+                        }
+                    });
+                    break;
+                }
+                case "rejoin": {
+                    // After a dropped connection or a failover: back into the same room, with no join checks
+                    String code = msg.roomCode();
+                    if (code == null || msg.username() == null) {
+                        sendError("Missing required fields for rejoin");
                         break;
                     }
-
-                    // If settings match or weren't specified, try to join
-                    boolean ok = rooms.joinRoom(code, username, this, room, difficulty);
-                    System.out.println("Join result: " + ok);
-                    JsonObject resp = new JsonObject();
-                    if (ok) {
-                        currentRoomCode = code;
-                        resp.addProperty("type", "joined");
-                        resp.add("room", rooms.roomSnapshot(code));
-                        send(resp);
-                        rooms.broadcastRoomUpdate(code);
-                        System.out.println("User " + username + " successfully joined room: " + code);
-                    } else {
-                        System.out.println("User " + username + " failed to join room: " + code);
-                        sendError("Unable to join room");
+                    String rejoiningUser = msg.username();
+                    rooms.rejoin(code, rejoiningUser, this, reason -> {
+                        if (reason == null) {
+                            username = rejoiningUser;
+                            identifyUser(rejoiningUser);
+                            currentRoomCode = code;
+                            JsonObject resp = new JsonObject();
+                            resp.addProperty("type", "rejoined");
+                            resp.add("room", rooms.roomSnapshot(code));
+                            resp.addProperty("sessionToken", rooms.openSession(code, rejoiningUser));
+                            resp.addProperty("seq", rooms.eventSeq(code));
+                            send(resp);
+                            System.out.println("User " + rejoiningUser + " rejoined room " + code);
+                        } else {
+                            sendError(reason);
+                        }
+                    });
+                    break;
+                }
+                case "resume": {
+                    // Reconnected within the grace window: same seat, plus whatever was missed (see RoomDirectory.resume)
+                    String code = msg.roomCode();
+                    if (code == null || msg.sessionToken() == null) {
+                        sendError("Missing required fields for resume");
+                        break;
                     }
+                    rooms.resume(code, msg.sessionToken(), msg.lastSeq(), this, resumedUser -> {
+                        if (resumedUser == null) {
+                            sendError("Session expired - please join the room again.");
+                            return;
+                        }
+                        username = resumedUser;
+                        identifyResumedUser(resumedUser);
+                        currentRoomCode = code;
+                    });
                     break;
                 }
                 case "startGame": {
-                    if (!msg.has("roomCode") || !msg.has("username")) {
+                    if (msg.roomCode() == null || msg.username() == null) {
                         sendError("Missing required fields for startGame");
                         break;
                     }
-                    String code = msg.get("roomCode").getAsString();
-                    String host = msg.get("username").getAsString();
-                    identifyUser(host);
-                    String room = msg.has("room") ? msg.get("room").getAsString() : null;
-                    String difficulty = msg.has("difficulty") ? msg.get("difficulty").getAsString() : null;
-                    boolean started = rooms.startGame(code, host, room, difficulty);
-                    if (started) rooms.broadcastGameStarted(code, "manual");
-                    else sendError("Cannot start game");
+                    identifyUser(msg.username());
+                    rooms.requestStart(msg.roomCode(), msg.username(), msg.room(), msg.difficulty(), this);
                     break;
                 }
                 case "setCapacity": {
-                    if (!msg.has("roomCode") || !msg.has("username") || !msg.has("capacity")) {
+                    if (msg.roomCode() == null || msg.username() == null || msg.capacity() == null) {
                         sendError("Missing required fields for setCapacity");
                         break;
                     }
-                    String code = msg.get("roomCode").getAsString();
-                    String host = msg.get("username").getAsString();
                     int capacity;
-                    try { capacity = msg.get("capacity").getAsInt(); } catch (Exception e) { capacity = 2; }
-                    identifyUser(host);
-                    rooms.setCapacity(code, host, capacity);
+                    try { capacity = Integer.parseInt(msg.capacity()); } catch (NumberFormatException e) { capacity = 2; }
+                    identifyUser(msg.username());
+                    rooms.setCapacity(msg.roomCode(), msg.username(), capacity);
                     break;
                 }
                 case "submitAnswer": {
-                    if (!msg.has("roomCode") || !msg.has("username") || !msg.has("answer") || !msg.has("elapsedMs")) {
+                    if (msg.roomCode() == null || msg.username() == null || msg.answer() == null || msg.elapsedMs() == null) {
                         sendError("Missing required fields for submitAnswer");
                         break;
                     }
-                    String code = msg.get("roomCode").getAsString();
-                    String user = msg.get("username").getAsString();
-                    identifyUser(user);
-                    String answer = msg.get("answer").getAsString();
-                    long elapsed = msg.get("elapsedMs").getAsLong();
-                    System.out.println("User " + user + " submitted answer: \"" + answer + "\" in " + elapsed + "ms");
-                    rooms.submitAnswer(code, user, answer, elapsed);
+                    submitAnswer(msg.roomCode(), msg.username(), msg.answer(), msg.elapsedMs());
                     break;
                 }
                 case "reaction": {
                     // Expect: roomCode, username, emoji
-                    String code = msg.has("roomCode") ? msg.get("roomCode").getAsString() : currentRoomCode;
-                    String user = msg.has("username") ? msg.get("username").getAsString() : this.username;
-                    String emoji = msg.has("emoji") ? msg.get("emoji").getAsString() : null;
+                    String code = msg.roomCode() != null ? msg.roomCode() : currentRoomCode;
+                    String user = msg.username() != null ? msg.username() : this.username;
+                    String emoji = msg.emoji();
                     if (code == null || user == null || emoji == null || emoji.isEmpty()) {
                         sendError("Missing required fields for reaction");
                         break;
@@ -198,9 +325,9 @@ class ClientHandler implements Runnable {
                 }
                 case "chat": {
                     // Expect: roomCode, username, text (preset only)
-                    String code = msg.has("roomCode") ? msg.get("roomCode").getAsString() : currentRoomCode;
-                    String user = msg.has("username") ? msg.get("username").getAsString() : this.username;
-                    String text = msg.has("text") ? msg.get("text").getAsString() : null;
+                    String code = msg.roomCode() != null ? msg.roomCode() : currentRoomCode;
+                    String user = msg.username() != null ? msg.username() : this.username;
+                    String text = msg.text();
                     if (code == null || user == null || text == null || text.isEmpty()) {
                         sendError("Missing required fields for chat");
                         break;
@@ -216,14 +343,13 @@ class ClientHandler implements Runnable {
                 }
 
                 case "chatMessage": {
-                    if (!msg.has("chatMessage")) {
+                    ChatMessage chatMessage = msg.chatMessage();
+                    if (chatMessage == null) {
                         sendError("Missing chatMessage field");
                         break;
                     }
-                    JsonObject chatJson = msg.getAsJsonObject("chatMessage");
-                    ChatMessage chatMessage = ChatMessage.fromJson(chatJson);
                     identifyUser(chatMessage.getSender());
-                    currentRoomCode = msg.has("roomCode") ? msg.get("roomCode").getAsString() : currentRoomCode;
+                    currentRoomCode = msg.roomCode() != null ? msg.roomCode() : currentRoomCode;
                 
                     if (chatMessage.getType() == ChatMessage.MessageType.PUBLIC) {
                         rooms.broadcastToRoom(currentRoomCode, chatMessage);
@@ -233,29 +359,45 @@ class ClientHandler implements Runnable {
                     break;
                 }
 
+                case "isOnline": {
+                    // Whether a user has an open connection, and the room they're in if any
+                    if (msg.username() == null) {
+                        sendError("Missing username for isOnline");
+                        break;
+                    }
+                    PresenceRegistry.Presence p = rooms.presence().find(msg.username());
+                    JsonObject resp = json("presence");
+                    resp.addProperty("username", msg.username());
+                    resp.addProperty("online", p != null);
+                    if (p != null && p.roomCode() != null) resp.addProperty("roomCode", p.roomCode());
+                    send(resp);
+                    break;
+                }
                 case "getRoomState": {
-                    String code = msg.has("roomCode") ? msg.get("roomCode").getAsString() : currentRoomCode;
+                    String code = msg.roomCode() != null ? msg.roomCode() : currentRoomCode;
                     if (code == null) {
                         sendError("No room code provided");
                         break;
                     }
-                    
-                    JsonObject resp = new JsonObject();
-                    resp.addProperty("type", "roomUpdate");
-                    resp.add("room", rooms.roomSnapshot(code));
-                    send(resp);
-                    System.out.println("Sent room state for room: " + code);
+                    rooms.sendRoomState(code, this);
+                    break;
+                }
+                case "getScores": {
+                    String code = msg.roomCode() != null ? msg.roomCode() : currentRoomCode;
+                    if (code == null) {
+                        sendError("No room code provided");
+                        break;
+                    }
+                    rooms.sendScores(code, this);
                     break;
                 }
                 case "leaveRoom": {
-                    if (!msg.has("roomCode") || !msg.has("username")) {
+                    if (msg.roomCode() == null || msg.username() == null) {
                         sendError("Missing required fields for leaveRoom");
                         break;
                     }
-                    String code = msg.get("roomCode").getAsString();
-                    String user = msg.get("username").getAsString();
-                    identifyUser(user);
-                    rooms.leave(code, user, this);
+                    identifyUser(msg.username());
+                    rooms.leave(msg.roomCode(), msg.username(), this);
                     break;
                 }
                 default:
@@ -267,16 +409,35 @@ class ClientHandler implements Runnable {
             // Send appropriate error message based on exception type
             if (ex instanceof NullPointerException) {
                 sendError("Missing required fields in message");
-            } else if (ex.getMessage().contains("JsonSyntaxException")) {
-                // Don't send error for JSON parsing issues to avoid duplicate error messages
-                System.err.println("JSON parsing error - ignoring message");
             } else {
                 sendError("Invalid message format: " + ex.getMessage());
             }
         }
     }
 
-    void send(JsonObject obj) { out.println(gson.toJson(obj)); }
+    void send(JsonObject obj) { send(OutboundMessage.of(obj)); }
+
+    void send(OutboundMessage msg) { channel.write(binary ? msg.binaryFrame() : msg.jsonFrame()); }
+
+    // One tick of a room's messages as a single frame; oversized binary batches fall back to separate frames
+    void sendBatch(List<OutboundMessage> msgs) {
+        if (msgs.size() == 1) {
+            send(msgs.get(0));
+            return;
+        }
+        byte[] frame = binary ? OutboundMessage.binaryBatch(msgs) : OutboundMessage.jsonBatch(msgs);
+        if (frame == null) {
+            for (OutboundMessage m : msgs) send(m);
+            return;
+        }
+        channel.write(frame);
+    }
+
+    private void submitAnswer(String code, String user, String answer, long elapsed) {
+        identifyUser(user);
+        System.out.println("User " + user + " submitted answer: \"" + answer + "\" in " + elapsed + "ms");
+        rooms.submitAnswer(code, user, answer, elapsed);
+    }
 
     void sendError(String message) {
         JsonObject err = new JsonObject();
@@ -285,12 +446,36 @@ class ClientHandler implements Runnable {
         send(err);
     }
 
+    // The name is only claimed, so an existing connection under it is kept; this one stays unregistered and tries
+    // again with its next message (the old connection may just not have been noticed closing yet)
     private void identifyUser(String username) {
-        if (!identified) {
-            this.username = username;
-            this.identified = true;
-            System.out.println("Client identified as: " + username + " from " + socket.getInetAddress());
-        }
+        if (identified || username == null) return;
+        this.username = username;
+        if (!rooms.presence().connect(username, this)) return;
+        this.identified = true;
+        System.out.println("Client identified as: " + username + " from " + channel.remoteAddress());
+    }
+
+    // Resumed a seat with its session token, which proves the name: this connection replaces any other one under it
+    private void identifyResumedUser(String username) {
+        if (identified && username.equals(this.username)) return;
+        if (identified) rooms.presence().disconnect(this.username, this);
+        this.username = username;
+        this.identified = true;
+        System.out.println("Client identified as: " + username + " from " + channel.remoteAddress() + " (session token)");
+        ClientHandler previous = rooms.presence().takeOver(username, this);
+        if (previous != null) previous.replaced();
+    }
+
+    // The user resumed their seat on another connection, which now gets their messages: tell this one why it is
+    // being dropped (so the client doesn't reconnect) and close it once that has been written. A seat it still holds
+    // goes through the usual disconnect path.
+    private void replaced() {
+        JsonObject notice = json("sessionReplaced");
+        notice.addProperty("message", "You logged in from another connection.");
+        send(notice);
+        ClientChannel c = channel;
+        if (c != null) c.closeAfterFlush();
     }
 
     private JsonObject json(String type) {
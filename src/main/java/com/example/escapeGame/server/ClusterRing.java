@@ -0,0 +1,77 @@
+package com.example.escapeGame.server;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+// Which server node owns a room code, by consistent hashing: every node is placed on a hash ring at VNODES
+// points, and a code belongs to the first node point at or after the code's hash. Adding or removing a node only
+// moves the codes next to its points. Membership is a fixed list (-Dserver.cluster=host:port,host:port,...) that
+// every node is started with, so all nodes agree on the owner without talking to each other.
+final class ClusterRing {
+    private static final int VNODES = 128;
+
+    record Node(String host, int port) {
+        String id() { return host + ":" + port; }
+
+        static Node parse(String hostPort) {
+            int colon = hostPort.lastIndexOf(':');
+            if (colon <= 0) throw new IllegalArgumentException("Expected host:port, got '" + hostPort + "'");
+            return new Node(hostPort.substring(0, colon).trim(), Integer.parseInt(hostPort.substring(colon + 1).trim()));
+        }
+    }
+
+    private final List<Node> nodes;
+    private final TreeMap<Long, Node> ring = new TreeMap<>();
+
+    ClusterRing(List<Node> nodes) {
+        if (nodes.isEmpty()) throw new IllegalArgumentException("Cluster needs at least one node");
+        this.nodes = List.copyOf(nodes);
+        for (Node n : nodes) {
+            for (int v = 0; v < VNODES; v++) ring.put(hash(n.id() + "#" + v), n);
+        }
+    }
+
+    // "host:port,host:port,..."
+    static ClusterRing parse(String spec) {
+        List<Node> nodes = new ArrayList<>();
+        for (String part : spec.split(",")) {
+            if (!part.isBlank()) nodes.add(Node.parse(part));
+        }
+        return new ClusterRing(nodes);
+    }
+
+    Node ownerOf(String roomCode) {
+        Map.Entry<Long, Node> e = ring.ceilingEntry(hash(roomCode));
+        return e != null ? e.getValue() : ring.firstEntry().getValue();
+    }
+
+    Node find(String id) {
+        for (Node n : nodes) {
+            if (n.id().equals(id)) return n;
+        }
+        return null;
+    }
+
+    List<Node> nodes() {
+        return Collections.unmodifiableList(nodes);
+    }
+
+    // 64-bit FNV-1a, then a final mix so nearby strings ("a#1", "a#2") land far apart
+    private static long hash(String s) {
+        long h = 0xcbf29ce484222325L;
+        for (byte b : s.getBytes(StandardCharsets.UTF_8)) {
+            h ^= b;
+            h *= 0x100000001b3L;
+        }
+        h ^= h >>> 33;
+        h *= 0xff51afd7ed558ccdL;
+        h ^= h >>> 33;
+        h *= 0xc4ceb9fe1a85ec53L;
+        h ^= h >>> 33;
+        return h;
+    }
+}
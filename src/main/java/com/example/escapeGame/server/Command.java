@@ -0,0 +1,37 @@
+package com.example.escapeGame.server;
+
+import com.example.escapeGame.ChatMessage;
+
+import java.util.List;
+
+// One decoded client message. A single flat record serves every message type; fields the type doesn't use
+// (or the client didn't send) are null, which plays the role of the old msg.has(...) checks.
+record Command(String type,
+               String roomCode,
+               String username,
+               String room,
+               String difficulty,
+               String answer,
+               Long elapsedMs,
+               String capacity,
+               String emoji,
+               String text,
+               List<String> protocols,
+               ChatMessage chatMessage,
+               Integer tickMs,
+               String sessionToken,
+               Long lastSeq) {
+
+    static Command submitAnswer(String roomCode, String username, String answer, long elapsedMs) {
+        return new Command("submitAnswer", roomCode, username, null, null, answer, elapsedMs, null, null, null, null, null, null, null, null);
+    }
+
+    // createRoom/joinRoom-style requests: who, which room code, and the room/difficulty selection
+    static Command roomRequest(String type, String roomCode, String username, String room, String difficulty) {
+        return new Command(type, roomCode, username, room, difficulty, null, null, null, null, null, null, null, null, null, null);
+    }
+
+    static Command ofType(String type) {
+        return new Command(type, null, null, null, null, null, null, null, null, null, null, null, null, null, null);
+    }
+}
@@ -0,0 +1,87 @@
+package com.example.escapeGame.server;
+
+import com.example.escapeGame.ChatMessage;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+// Streams a client JSON message straight into a Command: no JsonObject tree, unknown fields are skipped
+final class CommandDecoder {
+    private CommandDecoder() {}
+
+    static Command decode(String json) throws IOException {
+        String type = null, roomCode = null, username = null, room = null, difficulty = null;
+        String answer = null, capacity = null, emoji = null, text = null, sessionToken = null;
+        Long elapsedMs = null, lastSeq = null;
+        List<String> protocols = null;
+        ChatMessage chatMessage = null;
+        Integer tickMs = null;
+
+        JsonReader in = new JsonReader(new StringReader(json));
+        in.beginObject();
+        while (in.hasNext()) {
+            String name = in.nextName();
+            if (in.peek() == JsonToken.NULL) {
+                in.nextNull();
+                continue;
+            }
+            switch (name) {
+                case "type": type = in.nextString(); break;
+                case "roomCode": roomCode = in.nextString(); break;
+                case "username": username = in.nextString(); break;
+                case "room": room = in.nextString(); break;
+                case "difficulty": difficulty = in.nextString(); break;
+                case "answer": answer = in.nextString(); break;
+                case "elapsedMs": elapsedMs = in.nextLong(); break;
+                case "capacity": capacity = in.nextString(); break;
+                case "emoji": emoji = in.nextString(); break;
+                case "text": text = in.nextString(); break;
+                case "protocols":
+                    protocols = new ArrayList<>(2);
+                    in.beginArray();
+                    while (in.hasNext()) protocols.add(in.nextString());
+                    in.endArray();
+                    break;
+                case "chatMessage": chatMessage = readChatMessage(in); break;
+                case "tickMs": tickMs = in.nextInt(); break;
+                case "sessionToken": sessionToken = in.nextString(); break;
+                case "lastSeq": lastSeq = in.nextLong(); break;
+                default: in.skipValue();
+            }
+        }
+        in.endObject();
+        return new Command(type, roomCode, username, room, difficulty, answer, elapsedMs, capacity, emoji, text, protocols, chatMessage, tickMs, sessionToken, lastSeq);
+    }
+
+    // Same defaults as ChatMessage.fromJson: missing strings become "", missing type is PUBLIC
+    private static ChatMessage readChatMessage(JsonReader in) throws IOException {
+        ChatMessage m = new ChatMessage();
+        m.setSender("");
+        m.setReceiver("");
+        m.setContent("");
+        m.setType(ChatMessage.MessageType.PUBLIC);
+        in.beginObject();
+        while (in.hasNext()) {
+            String name = in.nextName();
+            if (in.peek() == JsonToken.NULL) {
+                in.nextNull();
+                continue;
+            }
+            switch (name) {
+                case "sender": m.setSender(in.nextString()); break;
+                case "receiver": m.setReceiver(in.nextString()); break;
+                case "content": m.setContent(in.nextString()); break;
+                case "type": m.setType(ChatMessage.MessageType.valueOf(in.nextString())); break;
+                case "timestamp": m.setTimestamp(LocalDateTime.parse(in.nextString())); break;
+                default: in.skipValue();
+            }
+        }
+        in.endObject();
+        return m;
+    }
+}
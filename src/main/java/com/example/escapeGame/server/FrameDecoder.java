@@ -0,0 +1,79 @@
+package com.example.escapeGame.server;
+
+import com.example.escapeGame.net.BinaryProtocol;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+// Incremental decoder for one connection's inbound bytes. Starts with newline-delimited JSON and switches to
+// length-prefixed binary frames once the handler has negotiated the binary protocol. Bytes can arrive in any
+// chunking, so partial lines/frames are kept between feed() calls.
+class FrameDecoder {
+    private final ClientHandler handler;
+    private byte[] frame = new byte[256];
+    private int frameLen = 0;
+    // Binary mode: body length being read (-1 while the varint header is incomplete)
+    private int expected = -1;
+    private int headerValue = 0;
+    private int headerShift = 0;
+
+    FrameDecoder(ClientHandler handler) {
+        this.handler = handler;
+    }
+
+    // Returns false if the stream is malformed and the connection should be closed
+    boolean feed(byte[] buf, int off, int len) {
+        int end = off + len;
+        int i = off;
+        while (i < end) {
+            if (handler.isBinary()) {
+                if (expected < 0) {
+                    int b = buf[i++] & 0xFF;
+                    headerValue |= (b & 0x7F) << headerShift;
+                    headerShift += 7;
+                    if ((b & 0x80) != 0) {
+                        if (headerShift > 21) return false;
+                        continue;
+                    }
+                    if (headerValue > BinaryProtocol.MAX_FRAME_BYTES) return false;
+                    expected = headerValue;
+                    headerValue = 0;
+                    headerShift = 0;
+                    frameLen = 0;
+                    ensureCapacity(expected);
+                }
+                int n = Math.min(expected - frameLen, end - i);
+                System.arraycopy(buf, i, frame, frameLen, n);
+                frameLen += n;
+                i += n;
+                if (frameLen == expected) {
+                    byte[] body = Arrays.copyOf(frame, frameLen);
+                    expected = -1;
+                    frameLen = 0;
+                    handler.handleFrame(body);
+                }
+            } else {
+                byte b = buf[i++];
+                if (b == '\n') {
+                    int n = frameLen;
+                    if (n > 0 && frame[n - 1] == '\r') n--;
+                    String line = new String(frame, 0, n, StandardCharsets.UTF_8);
+                    frameLen = 0;
+                    // May switch this decoder to binary for the bytes that follow
+                    handler.handle(line);
+                } else {
+                    if (frameLen == BinaryProtocol.MAX_FRAME_BYTES) return false;
+                    ensureCapacity(frameLen + 1);
+                    frame[frameLen++] = b;
+                }
+            }
+        }
+        return true;
+    }
+
+    private void ensureCapacity(int needed) {
+        if (needed > frame.length) {
+            frame = Arrays.copyOf(frame, Math.max(needed, Math.min(frame.length * 2, BinaryProtocol.MAX_FRAME_BYTES)));
+        }
+    }
+}
@@ -0,0 +1,32 @@
+package com.example.escapeGame.server;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+// Several cluster nodes in one process, on consecutive loopback ports, for trying out room routing on one machine.
+// Each node has its own RoomDirectory exactly as a separate ServerMain would; clients can connect to any of them.
+// Usage: LocalCluster [basePort] [nodes] [blocking|virtual|nio]
+public class LocalCluster {
+    public static void main(String[] args) throws IOException {
+        int basePort = args.length > 0 ? Integer.parseInt(args[0]) : 9090;
+        int count = args.length > 1 ? Integer.parseInt(args[1]) : 3;
+        String mode = args.length > 2 ? args[2] : "blocking";
+        List<ClusterRing.Node> nodes = new ArrayList<>();
+        for (int i = 0; i < count; i++) nodes.add(new ClusterRing.Node("127.0.0.1", basePort + i));
+        ClusterRing ring = new ClusterRing(nodes);
+        ServerMetrics.start(Long.getLong("server.metricsIntervalSec", 30));
+        for (ClusterRing.Node node : nodes) {
+            RoomDirectory rooms = new RoomDirectory(ring, node);
+            Thread t = new Thread(() -> {
+                try {
+                    ServerMain.serve(node.port(), mode, 2, rooms);
+                } catch (IOException e) {
+                    System.err.println("Node " + node.id() + " stopped: " + e.getMessage());
+                }
+            }, "node-" + node.port());
+            t.start();
+            System.out.println("Cluster node " + node.id() + " listening (" + mode + " mode)");
+        }
+    }
+}
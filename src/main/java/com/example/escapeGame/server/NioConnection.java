@@ -0,0 +1,131 @@
+package com.example.escapeGame.server;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.CancelledKeyException;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.SocketChannel;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+// A non-blocking client connection: incremental framing on read (FrameDecoder), bounded queued writes flushed by the worker
+class NioConnection implements ClientChannel {
+    private final SocketChannel ch;
+    private final SelectionKey key;
+    private final NioWorker worker;
+    private final String remote;
+    private final ByteBuffer readBuf = ByteBuffer.allocate(4096);
+    private FrameDecoder decoder;
+    private final OutboundQueue writeQueue;
+    // Coalesced batch currently being written (may be partially sent)
+    private ByteBuffer writing;
+    private final AtomicBoolean flushScheduled = new AtomicBoolean(false);
+    private volatile boolean closed = false;
+    private ClientHandler handler;
+
+    NioConnection(SocketChannel ch, SelectionKey key, NioWorker worker) {
+        this.ch = ch;
+        this.key = key;
+        this.worker = worker;
+        String addr;
+        try { addr = String.valueOf(ch.getRemoteAddress()); } catch (IOException e) { addr = "unknown"; }
+        this.remote = addr;
+        this.writeQueue = new OutboundQueue(addr);
+    }
+
+    void attach(ClientHandler handler) {
+        this.handler = handler;
+        this.decoder = new FrameDecoder(handler);
+    }
+
+    void onReadable() {
+        int n;
+        try {
+            n = ch.read(readBuf);
+        } catch (IOException e) {
+            System.out.println("Client disconnected: " + e.getMessage());
+            close();
+            return;
+        }
+        if (n < 0) {
+            close();
+            return;
+        }
+        boolean ok = decoder.feed(readBuf.array(), 0, readBuf.position());
+        readBuf.clear();
+        if (!ok) {
+            System.err.println("Malformed or oversized frame from " + remote + " - closing");
+            close();
+        }
+    }
+
+    void onWritable() { flush(); }
+
+    @Override
+    public void write(byte[] frame) {
+        if (closed) return;
+        if (!writeQueue.offer(frame)) {
+            if (OutboundQueue.POLICY == OutboundQueue.Policy.DISCONNECT) close();
+            return;
+        }
+        if (worker.inEventLoop()) {
+            flush();
+        } else if (flushScheduled.compareAndSet(false, true)) {
+            worker.execute(() -> {
+                flushScheduled.set(false);
+                flush();
+            });
+        }
+    }
+
+    // Write as much as the socket accepts; keep OP_WRITE interest only while data is pending
+    private void flush() {
+        if (closed) return;
+        try {
+            while (true) {
+                if (writing == null || !writing.hasRemaining()) {
+                    byte[] batch = writeQueue.pollBatch();
+                    if (batch == null) break;
+                    writing = ByteBuffer.wrap(batch);
+                }
+                ch.write(writing);
+                if (writing.hasRemaining()) {
+                    key.interestOps(key.interestOps() | SelectionKey.OP_WRITE);
+                    return;
+                }
+            }
+            writing = null;
+            key.interestOps(key.interestOps() & ~SelectionKey.OP_WRITE);
+            if (writeQueue.finished()) close();
+        } catch (IOException | CancelledKeyException e) {
+            System.out.println("Write to " + remote + " failed: " + e.getMessage());
+            close();
+        }
+    }
+
+    @Override
+    public String remoteAddress() { return remote; }
+
+    @Override
+    public void closeAfterFlush() {
+        if (!worker.inEventLoop()) {
+            worker.execute(this::closeAfterFlush);
+            return;
+        }
+        writeQueue.finish();
+        flush();
+    }
+
+    @Override
+    public void close() {
+        if (!worker.inEventLoop()) {
+            worker.execute(this::close);
+            return;
+        }
+        if (closed) return;
+        closed = true;
+        key.cancel();
+        try { ch.close(); } catch (IOException ignored) {}
+        writeQueue.close();
+        if (handler != null) handler.disconnected();
+    }
+}
@@ -0,0 +1,43 @@
+package com.example.escapeGame.server;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+
+// Non-blocking server: one acceptor plus a small fixed pool of selector threads shared by all connections
+class NioServer {
+    private final int port;
+    private final RoomDirectory rooms;
+    private final NioWorker[] workers;
+    private int nextWorker = 0;
+
+    NioServer(int port, RoomDirectory rooms, int ioThreads) {
+        this.port = port;
+        this.rooms = rooms;
+        this.workers = new NioWorker[Math.max(1, ioThreads)];
+    }
+
+    void serve() throws IOException {
+        for (int i = 0; i < workers.length; i++) {
+            workers[i] = new NioWorker(i);
+            Thread t = new Thread(workers[i], "nio-io-" + i);
+            t.setDaemon(true);
+            t.start();
+        }
+        System.out.println("NIO mode with " + workers.length + " I/O threads");
+        try (ServerSocketChannel server = ServerSocketChannel.open()) {
+            server.bind(new InetSocketAddress(port));
+            // Accepting stays blocking on this thread; every accepted channel is non-blocking on a worker
+            while (true) {
+                SocketChannel ch = server.accept();
+                ch.configureBlocking(false);
+                ch.socket().setTcpNoDelay(true);
+                System.out.println("Client connected: " + ch.getRemoteAddress());
+                NioWorker worker = workers[nextWorker];
+                nextWorker = (nextWorker + 1) % workers.length;
+                worker.register(ch, rooms);
+            }
+        }
+    }
+}
@@ -0,0 +1,82 @@
+package com.example.escapeGame.server;
+
+import java.io.IOException;
+import java.nio.channels.CancelledKeyException;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.SocketChannel;
+import java.util.Iterator;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+// One selector thread; owns the keys of every connection registered with it
+class NioWorker implements Runnable {
+    private final int id;
+    private final Selector selector;
+    private final Queue<Runnable> tasks = new ConcurrentLinkedQueue<>();
+    private volatile Thread thread;
+
+    NioWorker(int id) throws IOException {
+        this.id = id;
+        this.selector = Selector.open();
+    }
+
+    void register(SocketChannel ch, RoomDirectory rooms) {
+        execute(() -> {
+            try {
+                SelectionKey key = ch.register(selector, SelectionKey.OP_READ);
+                NioConnection conn = new NioConnection(ch, key, this);
+                conn.attach(new ClientHandler(conn, rooms));
+                key.attach(conn);
+            } catch (IOException e) {
+                System.err.println("Failed to register client on nio-io-" + id + ": " + e.getMessage());
+                try { ch.close(); } catch (IOException ignored) {}
+            }
+        });
+    }
+
+    boolean inEventLoop() { return Thread.currentThread() == thread; }
+
+    // Run a task on this worker's thread (key interest changes must happen there)
+    void execute(Runnable task) {
+        tasks.add(task);
+        if (!inEventLoop()) selector.wakeup();
+    }
+
+    @Override
+    public void run() {
+        thread = Thread.currentThread();
+        while (true) {
+            try {
+                // Tasks queued from this thread never wake the selector, so don't block while any are pending
+                if (tasks.isEmpty()) selector.select(); else selector.selectNow();
+                runTasks();
+                Iterator<SelectionKey> it = selector.selectedKeys().iterator();
+                while (it.hasNext()) {
+                    SelectionKey key = it.next();
+                    it.remove();
+                    NioConnection conn = (NioConnection) key.attachment();
+                    if (conn == null) continue;
+                    try {
+                        if (key.isValid() && key.isReadable()) conn.onReadable();
+                        if (key.isValid() && key.isWritable()) conn.onWritable();
+                    } catch (CancelledKeyException e) {
+                        conn.close();
+                    }
+                }
+            } catch (Exception e) {
+                System.err.println("Error in nio-io-" + id + " event loop: " + e.getMessage());
+                e.printStackTrace();
+            }
+        }
+    }
+
+    private void runTasks() {
+        Runnable task;
+        while ((task = tasks.poll()) != null) {
+            try { task.run(); } catch (Exception e) {
+                System.err.println("Task failed on nio-io-" + id + ": " + e.getMessage());
+            }
+        }
+    }
+}
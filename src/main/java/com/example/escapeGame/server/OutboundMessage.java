@@ -0,0 +1,66 @@
+package com.example.escapeGame.server;
+
+import com.example.escapeGame.net.BinaryProtocol;
+import com.google.gson.Gson;
+import com.google.gson.JsonObject;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+// A server message encoded once per wire format; every recipient's queue gets the same frame bytes
+final class OutboundMessage {
+    private static final Gson gson = new Gson();
+
+    private final JsonObject source;
+    private final String type;
+    private final String json;
+    private final byte[] jsonFrame;
+    // Encoded on first use by a binary-protocol recipient (racing encoders produce identical bytes)
+    private volatile byte[] binaryFrame;
+
+    private OutboundMessage(JsonObject source, String type, String json) {
+        this.source = source;
+        this.type = type;
+        this.json = json;
+        this.jsonFrame = (json + "\n").getBytes(StandardCharsets.UTF_8);
+    }
+
+    static OutboundMessage of(JsonObject msg) {
+        String type = msg.has("type") ? msg.get("type").getAsString() : null;
+        return new OutboundMessage(msg, type, gson.toJson(msg));
+    }
+
+    String type() { return type; }
+
+    // Newline-terminated UTF-8 JSON, ready to queue on a channel
+    byte[] jsonFrame() { return jsonFrame; }
+
+    // Length-prefixed binary frame for clients that negotiated BinaryProtocol
+    byte[] binaryFrame() {
+        byte[] f = binaryFrame;
+        if (f == null) binaryFrame = f = BinaryProtocol.encode(source);
+        return f;
+    }
+
+    // {"type":"batch","messages":[...]} spliced from the already encoded messages
+    static byte[] jsonBatch(List<OutboundMessage> msgs) {
+        StringBuilder sb = new StringBuilder(32 + msgs.size() * 96).append("{\"type\":\"batch\",\"messages\":[");
+        for (int i = 0; i < msgs.size(); i++) {
+            if (i > 0) sb.append(',');
+            sb.append(msgs.get(i).json);
+        }
+        return sb.append("]}\n").toString().getBytes(StandardCharsets.UTF_8);
+    }
+
+    // One BATCH frame around the messages' binary frames; null if that would exceed the frame limit
+    static byte[] binaryBatch(List<OutboundMessage> msgs) {
+        List<byte[]> frames = new ArrayList<>(msgs.size());
+        for (OutboundMessage m : msgs) frames.add(m.binaryFrame());
+        return BinaryProtocol.encodeBatch(frames);
+    }
+
+    // The encoded JSON, so logging doesn't serialize the message again
+    @Override
+    public String toString() { return json; }
+}
@@ -0,0 +1,158 @@
+package com.example.escapeGame.server;
+
+import java.util.ArrayDeque;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+// Bounded per-connection queue of encoded frames waiting to be written.
+// Producers (room mailboxes, handlers) never block on the socket; the writer drains frames in coalesced batches.
+class OutboundQueue {
+    enum Policy { DROP, DISCONNECT }
+
+    static final int HIGH_WATER_BYTES = Integer.getInteger("server.outbound.highWaterBytes", 256 * 1024);
+    static final Policy POLICY = "drop".equalsIgnoreCase(System.getProperty("server.outbound.policy")) ? Policy.DROP : Policy.DISCONNECT;
+    // Upper bound for one coalesced write
+    static final int MAX_BATCH_BYTES = 64 * 1024;
+
+    private static final Set<OutboundQueue> live = ConcurrentHashMap.newKeySet();
+    private static final AtomicLong dropped = new AtomicLong();
+    private static final AtomicLong evicted = new AtomicLong();
+
+    static {
+        ServerMetrics.gauge("outboundBacklogBytes", () -> live.stream().mapToLong(OutboundQueue::backlogBytes).sum());
+        ServerMetrics.gauge("outboundMaxBacklogBytes", () -> live.stream().mapToLong(OutboundQueue::backlogBytes).max().orElse(0));
+        ServerMetrics.gauge("outboundPeakBacklogBytes", () -> live.stream().mapToLong(OutboundQueue::peakBytes).max().orElse(0));
+        ServerMetrics.gauge("outboundDroppedFrames", dropped::get);
+        ServerMetrics.gauge("slowConsumersEvicted", evicted::get);
+    }
+
+    private final String owner;
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition notEmpty = lock.newCondition();
+    private final ArrayDeque<byte[]> frames = new ArrayDeque<>();
+    private long bytes = 0;
+    private long peak = 0;
+    // Set while over the high-water mark so a dropping consumer is logged once, not per frame
+    private boolean overLimit = false;
+    private boolean closed = false;
+    // Set by finish(): nothing more is accepted and the writer stops once the queue is empty
+    private boolean finishing = false;
+
+    OutboundQueue(String owner) {
+        this.owner = owner;
+        live.add(this);
+    }
+
+    // Queue a frame; returns false (and queues nothing) if it would push the backlog past the high-water mark
+    boolean offer(byte[] frame) {
+        lock.lock();
+        try {
+            if (closed || finishing) return true;
+            if (bytes > 0 && bytes + frame.length > HIGH_WATER_BYTES) {
+                if (POLICY == Policy.DROP) dropped.incrementAndGet(); else evicted.incrementAndGet();
+                if (!overLimit) {
+                    System.err.println("Slow consumer " + owner + ": backlog " + bytes + " bytes over high-water mark (" + POLICY + ")");
+                    overLimit = true;
+                }
+                return false;
+            }
+            overLimit = false;
+            frames.add(frame);
+            bytes += frame.length;
+            if (bytes > peak) peak = bytes;
+            notEmpty.signal();
+            return true;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    // Wait for at least one frame, then return everything queued (up to MAX_BATCH_BYTES) as one buffer; null once
+    // closed, or once finished and drained
+    byte[] takeBatch() throws InterruptedException {
+        lock.lock();
+        try {
+            while (frames.isEmpty() && !closed && !finishing) notEmpty.await(30, TimeUnit.SECONDS);
+            return closed || frames.isEmpty() ? null : drain();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    // Non-blocking variant for the NIO event loop; null when nothing is queued
+    byte[] pollBatch() {
+        lock.lock();
+        try {
+            return frames.isEmpty() || closed ? null : drain();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private byte[] drain() {
+        byte[] first = frames.poll();
+        if (frames.isEmpty() || first.length >= MAX_BATCH_BYTES) {
+            bytes -= first.length;
+            return first;
+        }
+        int size = first.length;
+        for (byte[] f : frames) {
+            if (size + f.length > MAX_BATCH_BYTES) break;
+            size += f.length;
+        }
+        byte[] batch = new byte[size];
+        System.arraycopy(first, 0, batch, 0, first.length);
+        int pos = first.length;
+        while (pos < size) {
+            byte[] f = frames.poll();
+            System.arraycopy(f, 0, batch, pos, f.length);
+            pos += f.length;
+        }
+        bytes -= size;
+        return batch;
+    }
+
+    // Accept nothing more; what is queued is still handed out
+    void finish() {
+        lock.lock();
+        try {
+            finishing = true;
+            notEmpty.signalAll();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    // Finished and everything queued has been handed out
+    boolean finished() {
+        lock.lock();
+        try { return finishing && frames.isEmpty(); } finally { lock.unlock(); }
+    }
+
+    long backlogBytes() {
+        lock.lock();
+        try { return bytes; } finally { lock.unlock(); }
+    }
+
+    long peakBytes() {
+        lock.lock();
+        try { return peak; } finally { lock.unlock(); }
+    }
+
+    void close() {
+        lock.lock();
+        try {
+            closed = true;
+            frames.clear();
+            bytes = 0;
+            notEmpty.signalAll();
+        } finally {
+            lock.unlock();
+        }
+        live.remove(this);
+    }
+}
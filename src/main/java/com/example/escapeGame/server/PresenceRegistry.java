@@ -0,0 +1,59 @@
+package com.example.escapeGame.server;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+// Server-wide username -> (connection, room) index, so private messages and "is X online" don't scan every room.
+// A user is registered when their connection identifies and removed when that same connection goes away; the room
+// is filled in on create/join and cleared on leave. Updates name the connection they come from, so a stale one
+// (an older connection of a user who resumed elsewhere) can't change the newer one's entry.
+// Names are whatever a client sends, so only a connection that proved the name (a seat's session token) may take
+// an entry over; any other second connection under the same name is counted and left unregistered.
+final class PresenceRegistry {
+    record Presence(ClientHandler client, String roomCode) {}
+
+    private final Map<String, Presence> online = new ConcurrentHashMap<>();
+    private final AtomicLong duplicateLogins = new AtomicLong();
+
+    PresenceRegistry() {
+        ServerMetrics.gauge("online", online::size);
+        ServerMetrics.gauge("duplicateLogins", duplicateLogins::get);
+    }
+
+    // Register a connection unless another one already has the name. Returns false (and registers nothing) if so.
+    boolean connect(String username, ClientHandler client) {
+        Presence current = online.putIfAbsent(username, new Presence(client, null));
+        if (current == null || current.client() == client) return true;
+        duplicateLogins.incrementAndGet();
+        System.out.println("[presence] " + username + " is already connected - keeping the existing connection");
+        return false;
+    }
+
+    // Register a connection that proved the name, replacing any other. Returns the connection it replaced, or null.
+    ClientHandler takeOver(String username, ClientHandler client) {
+        Presence previous = online.put(username, new Presence(client, null));
+        if (previous == null || previous.client() == client) return null;
+        duplicateLogins.incrementAndGet();
+        System.out.println("[presence] " + username + " resumed on a new connection - closing the old one");
+        return previous.client();
+    }
+
+    void enterRoom(String username, ClientHandler client, String roomCode) {
+        online.computeIfPresent(username, (u, p) -> p.client() == client ? new Presence(client, roomCode) : p);
+    }
+
+    void leaveRoom(String username, ClientHandler client, String roomCode) {
+        online.computeIfPresent(username, (u, p) ->
+                p.client() == client && roomCode.equals(p.roomCode()) ? new Presence(client, null) : p);
+    }
+
+    void disconnect(String username, ClientHandler client) {
+        online.computeIfPresent(username, (u, p) -> p.client() == client ? null : p);
+    }
+
+    // Null if the user has no open connection
+    Presence find(String username) {
+        return username == null ? null : online.get(username);
+    }
+}
@@ -0,0 +1,111 @@
+package com.example.escapeGame.server;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+// Standby side of replication (-Dserver.replicaPort=N): receives the primary's room snapshots (see Replicator) and
+// keeps the newest one per room. When the primary's connection drops, the standby takes over: every replicated
+// room is restored into this server's RoomDirectory with its round timer resumed, ready for clients to rejoin.
+// A client that reconnects after the link dropped but before the takeover runs restores just its own room (see
+// RoomDirectory.rejoin); while the primary is connected it still owns every room and nothing is restored here.
+final class ReplicaListener implements Runnable {
+    // Far above any real snapshot; a larger length means the stream is out of step
+    private static final int MAX_FRAME_BYTES = 16 << 20;
+
+    private final int port;
+    private final RoomDirectory rooms;
+    private final Map<String, RoomSnapshot> snapshots = new ConcurrentHashMap<>();
+    private final AtomicLong badFrames = new AtomicLong();
+    private volatile boolean primaryConnected;
+
+    ReplicaListener(int port, RoomDirectory rooms) {
+        this.port = port;
+        this.rooms = rooms;
+        ServerMetrics.gauge("replicatedRooms", snapshots::size);
+        ServerMetrics.gauge("replicaBadFrames", badFrames::get);
+    }
+
+    void start() {
+        Thread t = new Thread(this, "replica-listener");
+        t.setDaemon(true);
+        t.start();
+    }
+
+    @Override
+    public void run() {
+        try (ServerSocket server = new ServerSocket(port)) {
+            System.out.println("Standby: accepting replication from the primary on port " + port);
+            while (true) {
+                try (Socket primary = server.accept()) {
+                    System.out.println("Standby: primary connected from " + primary.getRemoteSocketAddress());
+                    primaryConnected = true;
+                    receive(new DataInputStream(new BufferedInputStream(primary.getInputStream())));
+                } catch (IOException | RuntimeException e) {
+                    System.err.println("Standby: replication link failed: " + e);
+                } finally {
+                    primaryConnected = false;
+                }
+                takeOver();
+            }
+        } catch (IOException e) {
+            System.err.println("Standby: cannot listen on replication port " + port + ": " + e.getMessage());
+        }
+    }
+
+    // Until the primary goes away. A frame that doesn't decode is skipped (the next resync sends that room again);
+    // an impossible length means the framing is lost, which is handled like a dropped link
+    private void receive(DataInputStream in) throws IOException {
+        while (true) {
+            int length;
+            try {
+                length = in.readInt();
+            } catch (EOFException e) {
+                return;
+            }
+            if (length == 0) {
+                // The primary (re)connected and is about to send every room
+                snapshots.clear();
+                continue;
+            }
+            if (length < 0 || length > MAX_FRAME_BYTES) {
+                badFrames.incrementAndGet();
+                throw new IOException("bad frame length " + length);
+            }
+            byte[] frame = new byte[length];
+            in.readFully(frame);
+            RoomSnapshot s;
+            try {
+                s = RoomSnapshot.decode(frame);
+            } catch (IOException | RuntimeException e) {
+                badFrames.incrementAndGet();
+                System.err.println("Standby: skipping undecodable snapshot (" + length + " bytes): " + e);
+                continue;
+            }
+            if (s.closed()) snapshots.remove(s.code()); else snapshots.put(s.code(), s);
+        }
+    }
+
+    // The newest snapshot of a room, removed so it is restored only once; null if none, or if the primary is still
+    // connected (a client that reached the standby early must not fork a room the primary is running)
+    RoomSnapshot take(String code) {
+        if (primaryConnected) return null;
+        return snapshots.remove(code);
+    }
+
+    private void takeOver() {
+        List<RoomSnapshot> all = new ArrayList<>(snapshots.values());
+        snapshots.clear();
+        if (all.isEmpty()) return;
+        System.out.println("Standby: primary lost - taking over " + all.size() + " rooms");
+        for (RoomSnapshot s : all) rooms.restore(s);
+    }
+}
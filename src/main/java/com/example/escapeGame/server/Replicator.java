@@ -0,0 +1,117 @@
+package com.example.escapeGame.server;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+// Streams room snapshots to a standby server (-Dserver.standby=host:port) over one socket, as length-prefixed
+// frames. Only the newest snapshot per room is kept while the link is busy or down, so a slow standby costs one
+// pending snapshot per room, not a backlog. Every (re)connect starts with an empty frame, telling the standby to
+// forget what it has, followed by a snapshot of every room; the same full resync repeats every interval, which
+// also picks up score changes made since a room's last per-round snapshot.
+final class Replicator implements Runnable {
+    private static final long RETRY_MS = 1000;
+
+    private final String host;
+    private final int port;
+    private final long intervalMs;
+    private final Map<String, byte[]> pending = new LinkedHashMap<>(); // guarded by this
+    private final AtomicLong sent = new AtomicLong();
+    private volatile Runnable resync = () -> {};
+
+    Replicator(String host, int port, long intervalMs) {
+        this.host = host;
+        this.port = port;
+        this.intervalMs = intervalMs;
+        ServerMetrics.gauge("replicationPending", this::pendingCount);
+        ServerMetrics.gauge("snapshotsSent", sent::get);
+    }
+
+    static Replicator parse(String hostPort, long intervalMs) {
+        ClusterRing.Node n = ClusterRing.Node.parse(hostPort);
+        return new Replicator(n.host(), n.port(), intervalMs);
+    }
+
+    // Called with a task that offers a snapshot of every room
+    void setResync(Runnable resync) {
+        this.resync = resync;
+    }
+
+    void start() {
+        Thread t = new Thread(this, "replicator");
+        t.setDaemon(true);
+        t.start();
+        System.out.println("Replicating rooms to standby " + host + ":" + port + " every " + intervalMs + "ms");
+    }
+
+    void offer(RoomSnapshot snapshot) {
+        byte[] frame = snapshot.encode();
+        synchronized (this) {
+            // Re-inserting keeps the room's place in line but replaces what will be sent
+            pending.put(snapshot.code(), frame);
+            notifyAll();
+        }
+    }
+
+    @Override
+    public void run() {
+        while (true) {
+            try (Socket socket = new Socket()) {
+                socket.connect(new InetSocketAddress(host, port), (int) RETRY_MS);
+                socket.setTcpNoDelay(true);
+                DataOutputStream out = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream()));
+                System.out.println("Connected to standby " + host + ":" + port);
+                // Rooms closed while the link was down would otherwise linger on the standby
+                out.writeInt(0);
+                out.flush();
+                resync.run();
+                long nextResync = System.currentTimeMillis() + intervalMs;
+                while (true) {
+                    List<byte[]> batch = take(nextResync);
+                    for (byte[] frame : batch) {
+                        out.writeInt(frame.length);
+                        out.write(frame);
+                    }
+                    out.flush();
+                    sent.addAndGet(batch.size());
+                    if (System.currentTimeMillis() >= nextResync) {
+                        resync.run();
+                        nextResync = System.currentTimeMillis() + intervalMs;
+                    }
+                }
+            } catch (IOException e) {
+                System.err.println("Standby " + host + ":" + port + " unreachable: " + e.getMessage());
+            } catch (InterruptedException e) {
+                return;
+            }
+            try {
+                Thread.sleep(RETRY_MS);
+            } catch (InterruptedException e) {
+                return;
+            }
+        }
+    }
+
+    // Everything pending; empty if nothing arrived before the resync time
+    private synchronized List<byte[]> take(long until) throws InterruptedException {
+        while (pending.isEmpty()) {
+            long wait = until - System.currentTimeMillis();
+            if (wait <= 0) return List.of();
+            wait(wait);
+        }
+        List<byte[]> batch = new ArrayList<>(pending.values());
+        pending.clear();
+        return batch;
+    }
+
+    private synchronized long pendingCount() {
+        return pending.size();
+    }
+}
@@ -0,0 +1,106 @@
+package com.example.escapeGame.server;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+// Optional tick mode for one room: outbound messages collect per client and leave as one batch frame per client
+// per tick, trading up to tickMs of latency for fewer writes. With tickMs 0 every message is sent immediately.
+// Only the room's mailbox touches an instance.
+class RoomBatcher {
+    static final int MAX_TICK_MS = 250;
+    static final int DEFAULT_TICK_MS = clamp(Integer.getInteger("server.room.tickMs", 0));
+
+    private static final AtomicLong batchFrames = new AtomicLong();
+    private static final AtomicLong batchedMessages = new AtomicLong();
+    private static final AtomicLong ticks = new AtomicLong();
+    private static final AtomicLong holdMsTotal = new AtomicLong();
+    private static final AtomicLong holdMsMax = new AtomicLong();
+
+    static {
+        ServerMetrics.gauge("batchFrames", batchFrames::get);
+        ServerMetrics.gauge("batchedMessages", batchedMessages::get);
+        // Messages per frame x100, and how long the oldest message of a tick waited before its flush
+        ServerMetrics.gauge("batchAvgSizeX100", () -> batchFrames.get() == 0 ? 0 : batchedMessages.get() * 100 / batchFrames.get());
+        ServerMetrics.gauge("batchAvgHoldMs", () -> ticks.get() == 0 ? 0 : holdMsTotal.get() / ticks.get());
+        ServerMetrics.gauge("batchMaxHoldMs", holdMsMax::get);
+    }
+
+    private final RoomState room;
+    private final Map<ClientHandler, List<OutboundMessage>> pending = new LinkedHashMap<>();
+    private int tickMs = DEFAULT_TICK_MS;
+    private boolean flushScheduled = false;
+    private long firstQueuedAt;
+
+    RoomBatcher(RoomState room) {
+        this.room = room;
+    }
+
+    static int clamp(int tickMs) {
+        return Math.max(0, Math.min(MAX_TICK_MS, tickMs));
+    }
+
+    int tickMs() { return tickMs; }
+
+    void setTickMs(int tickMs) {
+        this.tickMs = clamp(tickMs);
+        // Leaving tick mode must not strand anything already queued
+        if (this.tickMs == 0) flush();
+    }
+
+    void send(ClientHandler client, OutboundMessage msg) {
+        if (tickMs == 0) {
+            client.send(msg);
+            return;
+        }
+        pending.computeIfAbsent(client, c -> new ArrayList<>(4)).add(msg);
+        scheduleFlush();
+    }
+
+    // Several messages for one client, kept together (one batch frame when sent immediately)
+    void sendAll(ClientHandler client, List<OutboundMessage> msgs) {
+        if (msgs.isEmpty()) return;
+        if (tickMs == 0) {
+            client.sendBatch(msgs);
+            return;
+        }
+        pending.computeIfAbsent(client, c -> new ArrayList<>(msgs.size())).addAll(msgs);
+        scheduleFlush();
+    }
+
+    private void scheduleFlush() {
+        if (!flushScheduled) {
+            flushScheduled = true;
+            firstQueuedAt = System.currentTimeMillis();
+            room.schedule(this::flush, tickMs);
+        }
+    }
+
+    void flush() {
+        flushScheduled = false;
+        if (pending.isEmpty()) return;
+        long held = System.currentTimeMillis() - firstQueuedAt;
+        ticks.incrementAndGet();
+        holdMsTotal.addAndGet(held);
+        holdMsMax.accumulateAndGet(held, Math::max);
+        for (Map.Entry<ClientHandler, List<OutboundMessage>> e : pending.entrySet()) {
+            List<OutboundMessage> msgs = e.getValue();
+            try {
+                e.getKey().sendBatch(msgs);
+                batchFrames.incrementAndGet();
+                batchedMessages.addAndGet(msgs.size());
+            } catch (Exception ex) {
+                System.err.println("Failed to flush batch: " + ex.getMessage());
+            }
+        }
+        pending.clear();
+    }
+
+    // Room teardown: nobody is left to receive what is still queued
+    void clear() {
+        pending.clear();
+        flushScheduled = false;
+    }
+}
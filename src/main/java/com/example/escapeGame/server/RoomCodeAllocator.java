@@ -0,0 +1,83 @@
+package com.example.escapeGame.server;
+
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicInteger;
+
+// Six-digit room codes for one directory shard: the codes c < 1,000,000 with c % shards == shard.
+// New codes come from a counter run through a keyed permutation (a small Feistel network), so every code is handed
+// out once, in an order that can't be guessed from earlier codes, with no "is it taken?" retries. Released codes
+// are queued and reused only once the fresh ones run out. Allocation and release are lock-free and O(1) however
+// many codes are in use.
+final class RoomCodeAllocator {
+    static final int CODE_SPACE = 1_000_000;
+    private static final int ROUNDS = 4;
+
+    private final int shard;
+    private final int shards;
+    // Number of codes in this shard
+    private final int size;
+    private final int halfBits;
+    private final int halfMask;
+    private final int[] keys = new int[ROUNDS];
+    private final AtomicInteger nextFresh = new AtomicInteger();
+    private final Queue<Integer> released = new ConcurrentLinkedQueue<>();
+
+    RoomCodeAllocator(int shard, int shards) {
+        this.shard = shard;
+        this.shards = shards;
+        this.size = (CODE_SPACE - shard + shards - 1) / shards;
+        // Permute over the smallest even power of two >= size; results past size are walked on (see permute)
+        int bits = Math.max(2, 32 - Integer.numberOfLeadingZeros(Math.max(1, size - 1)));
+        if ((bits & 1) != 0) bits++;
+        this.halfBits = bits / 2;
+        this.halfMask = (1 << halfBits) - 1;
+        for (int i = 0; i < ROUNDS; i++) keys[i] = ThreadLocalRandom.current().nextInt();
+    }
+
+    // A free code, or null if all of this shard's codes are in use
+    String allocate() {
+        int i = nextFresh.get();
+        while (i < size) {
+            if (nextFresh.compareAndSet(i, i + 1)) return format(permute(i) * shards + shard);
+            i = nextFresh.get();
+        }
+        Integer code = released.poll();
+        return code == null ? null : format(code);
+    }
+
+    void release(String code) {
+        released.add(Integer.parseInt(code));
+    }
+
+    int inUse() {
+        return Math.min(nextFresh.get(), size) - released.size();
+    }
+
+    // Bijection on [0, size): Feistel rounds over the power-of-two domain, repeated until the result is in range.
+    // Each step is a bijection of the larger domain, so walking from an in-range value always lands on one.
+    private int permute(int x) {
+        do {
+            int left = x >>> halfBits, right = x & halfMask;
+            for (int k : keys) {
+                int mixed = (right * 0x9E3779B1 + k);
+                mixed ^= mixed >>> 15;
+                int next = left ^ (mixed & halfMask);
+                left = right;
+                right = next;
+            }
+            x = (left << halfBits) | right;
+        } while (x >= size);
+        return x;
+    }
+
+    private static String format(int code) {
+        char[] digits = new char[6];
+        for (int i = 5; i >= 0; i--) {
+            digits[i] = (char) ('0' + code % 10);
+            code /= 10;
+        }
+        return new String(digits);
+    }
+}
@@ -2,12 +2,17 @@ package com.example.escapeGame.server;
 
 import com.example.escapeGame.ChatMessage;
 import com.example.escapeGame.Puzzle;
-import com.example.escapeGame.PuzzleDataUtil;
+import com.example.escapeGame.PuzzleCatalog;
 import com.google.gson.JsonArray;
 import com.google.gson.JsonObject;
 
+import java.security.SecureRandom;
 import java.util.*;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
 
 class RoomSettings {
     private final String room;
@@ -22,46 +27,324 @@ class RoomSettings {
     public String getDifficulty() { return difficulty; }
 }
 
+// Entry points called from connection threads hand their work to the room's mailbox (RoomState.tell);
+// methods without that wrapper are only called from inside a room's mailbox.
+// Rooms are split into shards by code (code % shard count), one per room worker: each shard has its own map, its
+// own code allocator and runs its rooms' mailboxes on its worker, so creating and looking up rooms in different
+// shards never touches the same data.
 public class RoomDirectory {
-    private final Map<String, RoomState> rooms = new ConcurrentHashMap<>();
-    private final Random random = new Random();
+    // How long a dropped player's seat is held for them to resume; 0 removes them at once
+    static final long RESUME_GRACE_MS = Long.getLong("server.resumeGraceSec", 20) * 1000;
+    private static final SecureRandom sessionTokens = new SecureRandom();
 
+    private final RoundScheduler scheduler = new RoundScheduler(Integer.getInteger("server.timerThreads", 2));
+    private final RoomWorkers workers = new RoomWorkers(Integer.getInteger("server.roomWorkers", Runtime.getRuntime().availableProcessors()));
+    private final Shard[] shards = new Shard[workers.size()];
+    private final PresenceRegistry presence = new PresenceRegistry();
+    // Set when running as one node of a cluster: rooms whose code the ring assigns elsewhere live on that node
+    private final ClusterRing ring;
+    private final ClusterRing.Node self;
+    // Hot standby: snapshots go out through replicator (primary) or come in through replica (standby)
+    private volatile Replicator replicator;
+    private volatile ReplicaListener replica;
+    private final AtomicLong resumes = new AtomicLong();
+    private final AtomicLong resumeFullSyncs = new AtomicLong();
+    private final AtomicLong resumeReplayed = new AtomicLong();
+
+    private static final class Shard {
+        final Map<String, RoomState> rooms = new ConcurrentHashMap<>();
+        final RoomCodeAllocator codes;
+        final Executor worker;
+
+        Shard(int index, int count, Executor worker) {
+            this.codes = new RoomCodeAllocator(index, count);
+            this.worker = worker;
+        }
+    }
+
+    RoomDirectory() {
+        this(null, null);
+    }
+
+    RoomDirectory(ClusterRing ring, ClusterRing.Node self) {
+        this.ring = ring;
+        this.self = self;
+        for (int i = 0; i < shards.length; i++) shards[i] = new Shard(i, shards.length, workers.get(i));
+        ServerMetrics.gauge("rooms", () -> {
+            long n = 0;
+            for (Shard sh : shards) n += sh.rooms.size();
+            return n;
+        });
+        // Room commands waiting for their shard worker; growth means the shards are falling behind
+        ServerMetrics.gauge("roomMailboxDepth", () -> {
+            long n = 0;
+            for (Shard sh : shards) {
+                for (RoomState rs : sh.rooms.values()) n += rs.mailboxDepth();
+            }
+            return n;
+        });
+        // Resumes that needed the full room state because the missed events were no longer all buffered
+        ServerMetrics.gauge("resumes", resumes::get);
+        ServerMetrics.gauge("resumeFullSyncs", resumeFullSyncs::get);
+        ServerMetrics.gauge("resumeReplayed", resumeReplayed::get);
+    }
+
+    // The shard a code belongs to, or null if it isn't a six-digit code
+    private Shard shardOf(String code) {
+        if (code == null || code.length() != 6) return null;
+        int n = 0;
+        for (int i = 0; i < 6; i++) {
+            char c = code.charAt(i);
+            if (c < '0' || c > '9') return null;
+            n = n * 10 + (c - '0');
+        }
+        return shards[n % shards.length];
+    }
+
+    // Primary: every room sends snapshots to the standby, and all of them are resent on each resync
+    void replicateTo(Replicator replicator) {
+        this.replicator = replicator;
+        replicator.setResync(() -> {
+            for (Shard sh : shards) {
+                for (RoomState rs : sh.rooms.values()) {
+                    rs.replicateTo(replicator);
+                    rs.tell(rs::replicate);
+                }
+            }
+        });
+    }
+
+    // Standby: rooms the primary had can be restored from the replica
+    void setReplica(ReplicaListener replica) {
+        this.replica = replica;
+    }
+
+    // Recreate a room from the primary's snapshot; does nothing if the room already exists here
+    void restore(RoomSnapshot s) {
+        Shard sh = shardOf(s.code());
+        if (sh == null) return;
+        RoomState rs = new RoomState(s.code(), s.host(), scheduler, sh.worker);
+        if (sh.rooms.putIfAbsent(s.code(), rs) != null) return;
+        rs.replicateTo(replicator);
+        rs.tell(() -> {
+            // A round still running ends the same way as one started here
+            rs.restore(s, () -> endRound(s.code(), rs, s.roundStartedAt()));
+            // Nobody is attached yet; players who don't come back within the grace window leave as usual
+            if (RESUME_GRACE_MS <= 0) return;
+            for (String p : s.players()) rs.holdSeat(p, null, RESUME_GRACE_MS, () -> removeFromRoom(s.code(), rs, p, null));
+        });
+        System.out.println("Room " + s.code() + " restored from snapshot (" + s.players().size() + " players, "
+                + (s.inProgress() ? "question " + (s.currentIndex() + 1) + "/" + s.questionIds().size() : "not started") + ")");
+    }
+
+    // A member whose connection dropped (or whose server failed over to this standby) reattaches to the room by name
+    // and is caught up: room state, scores and the current question with the time left. Only for seats without a
+    // session token (e.g. the token hadn't reached the standby yet); seats with one must use resume.
+    // onResult runs inside the room's mailbox with null on success, otherwise a human-readable reason.
+    void rejoin(String code, String username, ClientHandler client, Consumer<String> onResult) {
+        RoomState rs = roomOrReplica(code);
+        if (rs == null) {
+            onResult.accept("Room not found");
+            return;
+        }
+        rs.tell(() -> {
+            if (rs.isClosed() || !rs.hasPlayer(username)) {
+                onResult.accept("You are no longer in this room.");
+                return;
+            }
+            // A name is enough only for seats that never got a session token; the rest need resume
+            if (rs.hasSession(username)) {
+                onResult.accept("This seat can only be resumed with its session token.");
+                return;
+            }
+            rs.addClient(username, client);
+            onResult.accept(null);
+            presence.enterRoom(username, client, code);
+            sendCatchUp(rs, client);
+        });
+    }
+
+    // Back into the room after a dropped connection, by session token: the reply is a "resumed" message followed by
+    // the events sent to the player after lastSeq, the newest event number their client received. If those are no
+    // longer all buffered, or lastSeq is missing or from another server (after a failover), the reply carries the
+    // room instead and is followed by the scores and current question, as on rejoin. Either way the reply's "seq"
+    // is the number the client has caught up to. onResult runs inside the room's mailbox with the player's name,
+    // or null if the token has no seat.
+    void resume(String code, String token, Long lastSeq, ClientHandler client, Consumer<String> onResult) {
+        RoomState rs = roomOrReplica(code);
+        if (rs == null) {
+            onResult.accept(null);
+            return;
+        }
+        rs.tell(() -> {
+            String username = rs.isClosed() ? null : rs.sessionOwner(token);
+            if (username == null || !rs.hasPlayer(username)) {
+                onResult.accept(null);
+                return;
+            }
+            List<OutboundMessage> missed = lastSeq == null ? null : rs.missedSince(username, lastSeq);
+            rs.addClient(username, client);
+            onResult.accept(username);
+            presence.enterRoom(username, client, code);
+            resumes.incrementAndGet();
+            JsonObject resp = new JsonObject();
+            resp.addProperty("type", "resumed");
+            resp.addProperty("roomCode", code);
+            resp.addProperty("username", username);
+            resp.addProperty("seq", rs.eventSeq());
+            if (missed != null) {
+                resp.addProperty("replayed", missed.size());
+                rs.reply(client, resp);
+                rs.replyAll(client, missed);
+                resumeReplayed.addAndGet(missed.size());
+                System.out.println("User " + username + " resumed in room " + code + " (" + missed.size() + " events replayed)");
+            } else {
+                resp.add("room", roomSnapshot(code));
+                rs.reply(client, resp);
+                sendCatchUp(rs, client);
+                resumeFullSyncs.incrementAndGet();
+                System.out.println("User " + username + " resumed in room " + code + " (full state)");
+            }
+        });
+    }
+
+    // Number of the room's newest event, for a join or rejoin reply; only called from inside the room's mailbox
+    long eventSeq(String code) {
+        RoomState rs = room(code);
+        return rs == null ? 0 : rs.eventSeq();
+    }
+
+    // A fresh session token for a member, letting them resume their seat after a dropped connection (see resume)
+    String openSession(String code, String username) {
+        RoomState rs = room(code);
+        if (rs == null) return null;
+        byte[] bytes = new byte[16];
+        sessionTokens.nextBytes(bytes);
+        String token = Base64.getUrlEncoder().withoutPadding().encodeToString(bytes);
+        rs.tell(() -> rs.setSession(username, token));
+        return token;
+    }
+
+    // The player's connection dropped without a leaveRoom: hold the seat for the grace window, then leave as usual.
+    // A seat that a newer connection has already taken over is left alone.
+    void hold(String code, String username, ClientHandler client) {
+        if (RESUME_GRACE_MS <= 0) {
+            leave(code, username, client);
+            return;
+        }
+        RoomState rs = room(code);
+        if (rs == null) return;
+        rs.tell(() -> {
+            if (rs.isClosed()) return;
+            if (rs.holdSeat(username, client, RESUME_GRACE_MS, () -> removeFromRoom(code, rs, username, client))) {
+                presence.leaveRoom(username, client, code);
+                System.out.println("Holding " + username + "'s seat in room " + code + " for " + RESUME_GRACE_MS / 1000 + "s");
+            }
+        });
+    }
+
+    // The room, restored first from the standby's copy if this server is taking over and it hasn't been yet
+    private RoomState roomOrReplica(String code) {
+        RoomState found = room(code);
+        ReplicaListener r = replica;
+        if (found == null && r != null) {
+            RoomSnapshot s = r.take(code);
+            if (s != null) restore(s);
+            found = room(code);
+        }
+        return found;
+    }
+
+    // Scores and the current question with the time left, for a client that reattached
+    private void sendCatchUp(RoomState rs, ClientHandler client) {
+        rs.reply(client, rs.scoreSnapshot());
+        JsonObject question = rs.questionInProgress();
+        if (question != null) rs.reply(client, question);
+    }
+
+    // The node that owns this code when it isn't this one, otherwise null
+    ClusterRing.Node remoteOwner(String code) {
+        if (ring == null || code == null) return null;
+        ClusterRing.Node owner = ring.ownerOf(code);
+        return owner.equals(self) ? null : owner;
+    }
+
+    private RoomState room(String code) {
+        Shard sh = shardOf(code);
+        return sh == null ? null : sh.rooms.get(code);
+    }
+
+    private void removeRoom(String code, RoomState rs) {
+        Shard sh = shardOf(code);
+        if (sh != null && sh.rooms.remove(code, rs)) sh.codes.release(code);
+    }
+
+    PresenceRegistry presence() {
+        return presence;
+    }
+
+    // Returns the new room's code, or null if every code is in use
     String createRoom(String host) {
-        String code;
-        do {
-            code = String.format("%06d", random.nextInt(1_000_000));
-        } while (rooms.containsKey(code));
-        RoomState rs = new RoomState(code, host);
-        rooms.put(code, rs);
-        System.out.println("Room " + code + " created with host: " + host);
-        return code;
+        // Start at a random shard so concurrent creates spread out; move on only if that shard is out of codes
+        int start = ThreadLocalRandom.current().nextInt(shards.length);
+        for (int i = 0; i < shards.length; i++) {
+            Shard sh = shards[(start + i) % shards.length];
+            String code = sh.codes.allocate();
+            // In a cluster, codes owned by other nodes are never used here; they're dropped rather than released.
+            // A code can also be taken by a room restored from a standby snapshot.
+            while (code != null && (remoteOwner(code) != null || sh.rooms.containsKey(code))) code = sh.codes.allocate();
+            if (code == null) continue;
+            RoomState rs = new RoomState(code, host, scheduler, sh.worker);
+            rs.replicateTo(replicator);
+            if (sh.rooms.putIfAbsent(code, rs) != null) continue;
+            System.out.println("Room " + code + " created with host: " + host);
+            return code;
+        }
+        System.err.println("No free room codes - cannot create a room for " + host);
+        return null;
     }
 
     void addClientToRoom(String code, String username, ClientHandler client) {
-        RoomState rs = rooms.get(code);
-        if (rs != null) rs.addClient(username, client);
+        RoomState rs = room(code);
+        if (rs == null) return;
+        rs.tell(() -> {
+            rs.addClient(username, client);
+            presence.enterRoom(username, client, code);
+        });
     }
 
     void setSelection(String code, String room, String difficulty) {
-        RoomState rs = rooms.get(code);
+        RoomState rs = room(code);
         if (rs == null) return;
-        rs.setSelection(room, difficulty);
-    }
-
-    // Return a human-readable reason why a user cannot join the room; null if allowed
-    String checkJoinAllowed(String code, String username) {
-        RoomState rs = rooms.get(code);
-        if (rs == null) return "Room not found";
-        return rs.checkJoinAllowed(username);
+        rs.tell(() -> rs.setSelection(room, difficulty));
     }
 
-    boolean joinRoom(String code, String username, ClientHandler client, String room, String difficulty) {
-        RoomState rs = rooms.get(code);
+    // Check and join in one mailbox turn so nobody can take the seat in between.
+    // onResult runs inside the room's mailbox with null on success, otherwise a human-readable reason.
+    void requestJoin(String code, String username, ClientHandler client, String room, String difficulty, Consumer<String> onResult) {
+        RoomState rs = room(code);
         if (rs == null) {
-            System.out.println("Room " + code + " not found for user " + username);
-            return false;
+            onResult.accept("Room not found");
+            return;
         }
-        
+        rs.tell(() -> {
+            if (rs.isClosed()) {
+                onResult.accept("Room not found");
+                return;
+            }
+            String reason = rs.checkJoinAllowed(username);
+            if (reason != null) {
+                System.out.println("Join rejected for " + username + ": " + reason);
+                onResult.accept(reason);
+                return;
+            }
+            boolean ok = joinRoom(rs, code, username, client, room, difficulty);
+            System.out.println("Join result: " + ok);
+            onResult.accept(ok ? null : "Unable to join room");
+        });
+    }
+
+    private boolean joinRoom(RoomState rs, String code, String username, ClientHandler client, String room, String difficulty) {
         System.out.println("User " + username + " attempting to join room " + code + " (current players: " + rs.playerCount() + ")");
         // Enforce room/difficulty compatibility
         String configuredRoom = rs.getSelectedRoom();
@@ -78,6 +361,7 @@ public class RoomDirectory {
         boolean ok = rs.addPlayer(username, client);
         if (ok) {
             System.out.println("User " + username + " successfully added to room " + code);
+            presence.enterRoom(username, client, code);
             // Do not overwrite room settings on join; host's settings remain authoritative
             maybeAutoStart(code);
         } else {
@@ -88,17 +372,24 @@ public class RoomDirectory {
     
     // Get room settings for a given room code
     public RoomSettings getRoomSettings(String code) {
-        RoomState rs = rooms.get(code);
+        RoomState rs = room(code);
         if (rs == null) return null;
         return new RoomSettings(rs.getSelectedRoom(), rs.getSelectedDifficulty());
     }
 
     void leave(String code, String username, ClientHandler client) {
-        RoomState rs = rooms.get(code);
+        RoomState rs = room(code);
         if (rs == null) return;
+        rs.tell(() -> removeFromRoom(code, rs, username, client));
+    }
+
+    private void removeFromRoom(String code, RoomState rs, String username, ClientHandler client) {
+        if (rs.isClosed()) return;
         rs.removePlayer(username, client);
+        presence.leaveRoom(username, client, code);
         if (rs.isEmpty()) {
-            rooms.remove(code);
+            removeRoom(code, rs);
+            rs.close();
             System.out.println("Room " + code + " deleted (empty)");
         } else {
             System.out.println("User " + username + " left room " + code + " (remaining: " + rs.playerCount() + ")");
@@ -106,43 +397,35 @@ public class RoomDirectory {
         }
     }
 
-    boolean startGame(String code, String host, String selectedRoom, String selectedDifficulty) {
-        RoomState rs = rooms.get(code);
+    // Host pressed Start: start and announce, or tell the host why not
+    void requestStart(String code, String host, String selectedRoom, String selectedDifficulty, ClientHandler client) {
+        RoomState rs = room(code);
+        if (rs == null) {
+            client.sendError("Cannot start game");
+            return;
+        }
+        rs.tell(() -> {
+            if (startGame(code, host, selectedRoom, selectedDifficulty)) broadcastGameStarted(code, "manual");
+            else rs.replyError(client, "Cannot start game");
+        });
+    }
+
+    private boolean startGame(String code, String host, String selectedRoom, String selectedDifficulty) {
+        RoomState rs = room(code);
         if (rs == null) return false;
         if (!rs.isHost(host)) return false;
         // Enforce host-selected desired capacity (2-4)
         if (rs.playerCount() < rs.getDesiredCapacity()) return false;
 
-        // Load puzzles from puzzles.json based on selected room/difficulty
+        // Pick from the in-memory catalog by selected room/difficulty (falls back to the difficulty, then to everything)
         try {
-            List<Puzzle> all = PuzzleDataUtil.loadPuzzles();
-            if (all.isEmpty()) {
+            rs.setSelection(selectedRoom, selectedDifficulty);
+            List<Puzzle> picked = PuzzleCatalog.getInstance().pickQuestions(rs.getSelectedRoom(), rs.getSelectedDifficulty(), 10, ThreadLocalRandom.current());
+            if (picked.isEmpty()) {
                 System.err.println("No puzzles loaded - cannot start game");
                 return false;
             }
-            
-            rs.setSelection(selectedRoom, selectedDifficulty);
-            String roomFilter = rs.getSelectedRoom();
-            String difficultyFilter = rs.getSelectedDifficulty();
-            List<Puzzle> filtered = new ArrayList<>();
-            for (Puzzle p : all) {
-                if (roomFilter.equals(p.getRoom()) && difficultyFilter.equals(p.getDifficulty())) {
-                    filtered.add(p);
-                }
-            }
-            // Fallbacks to avoid empty question set (e.g., if a room like "Math" has no entries)
-            if (filtered.isEmpty()) {
-                // Try any room with the chosen difficulty
-                for (Puzzle p : all) {
-                    if (difficultyFilter.equals(p.getDifficulty())) filtered.add(p);
-                }
-            }
-            if (filtered.isEmpty()) {
-                // Last resort: use all available puzzles
-                filtered.addAll(all);
-            }
-            Collections.shuffle(filtered, random);
-            rs.selectQuestions(filtered.subList(0, Math.min(10, filtered.size())));
+            rs.selectQuestions(picked);
             rs.markStarted();
             System.out.println("Game started in room " + code + " by " + host + " with " + rs.playerCount() + " players");
             return true;
@@ -154,42 +437,75 @@ public class RoomDirectory {
     }
 
     private void maybeAutoStart(String code) {
-        RoomState rs = rooms.get(code);
+        RoomState rs = room(code);
         if (rs == null) return;
         int target = rs.getDesiredCapacity();
         if (rs.playerCount() >= target && !rs.isInProgress()) {
             System.out.println("Room " + code + " reached desired capacity (" + target + ") with " + rs.playerCount() + " players, starting in 3 seconds");
             // Announce and give a short window to leave
             broadcastGameStarting(code, "Required players joined (" + target + "). Game starts in 3 seconds unless someone clicks Back.");
-            new Timer(true).schedule(new TimerTask() {
-                @Override public void run() {
-                    RoomState cur = rooms.get(code);
-                    if (cur != null && cur.playerCount() >= cur.getDesiredCapacity() && !cur.isInProgress()) {
-                        startGame(code, cur.getHost(), cur.getSelectedRoom(), cur.getSelectedDifficulty());
-                        broadcastGameStarted(code, "autoCapacity");
-                    }
+            rs.schedule(() -> {
+                RoomState cur = room(code);
+                if (cur != null && cur.playerCount() >= cur.getDesiredCapacity() && !cur.isInProgress()) {
+                    startGame(code, cur.getHost(), cur.getSelectedRoom(), cur.getSelectedDifficulty());
+                    broadcastGameStarted(code, "autoCapacity");
                 }
             }, 3000);
         }
     }
 
     void submitAnswer(String code, String username, String answer, long elapsedMs) {
-        RoomState rs = rooms.get(code);
+        RoomState rs = room(code);
         if (rs == null) return;
-        rs.submitAnswer(username, answer, elapsedMs);
+        rs.tell(() -> rs.submitAnswer(username, answer, elapsedMs));
     }
 
     void broadcastRoomUpdate(String code) {
-        RoomState rs = rooms.get(code);
+        RoomState rs = room(code);
         if (rs == null) return;
+        rs.tell(() -> rs.broadcast(roomUpdate(code)));
+    }
+
+    private JsonObject roomUpdate(String code) {
         JsonObject msg = new JsonObject();
         msg.addProperty("type", "roomUpdate");
         msg.add("room", roomSnapshot(code));
-        rs.broadcast(msg);
+        return msg;
     }
 
-    void broadcastGameStarted(String code, String reason) {
-        RoomState rs = rooms.get(code);
+    // Reply to one client with the current room state
+    void sendRoomState(String code, ClientHandler client) {
+        RoomState rs = room(code);
+        if (rs == null) {
+            client.send(roomUpdate(code));
+            return;
+        }
+        rs.tell(() -> {
+            rs.reply(client, roomUpdate(code));
+            System.out.println("Sent room state for room: " + code);
+        });
+    }
+
+    // Per-room tick length for batched sends; 0 sends every message immediately
+    void setTickMs(String code, int tickMs) {
+        RoomState rs = room(code);
+        if (rs == null) return;
+        rs.tell(() -> rs.setTickMs(tickMs));
+        System.out.println("Room " + code + " tick set to " + RoomBatcher.clamp(tickMs) + "ms");
+    }
+
+    // Score snapshot for a client that just entered the game or saw a gap in scoreDelta versions
+    void sendScores(String code, ClientHandler client) {
+        RoomState rs = room(code);
+        if (rs == null) {
+            client.sendError("Room not found");
+            return;
+        }
+        rs.tell(() -> rs.reply(client, rs.scoreSnapshot()));
+    }
+
+    private void broadcastGameStarted(String code, String reason) {
+        RoomState rs = room(code);
         if (rs == null) return;
         JsonObject msg = new JsonObject();
         msg.addProperty("type", "gameStarted");
@@ -197,14 +513,12 @@ public class RoomDirectory {
         if (reason != null) msg.addProperty("reason", reason);
         rs.broadcast(msg);
         // Give clients a brief moment to load the new scene and register handlers
-        new Timer(true).schedule(new TimerTask() {
-            @Override public void run() { sendQuestion(code); }
-        }, 500);
+        rs.schedule(() -> sendQuestion(code), 500);
     }
 
     // Single implementation of broadcastGameStarting
-    void broadcastGameStarting(String code, String message) {
-        RoomState rs = rooms.get(code);
+    private void broadcastGameStarting(String code, String message) {
+        RoomState rs = room(code);
         if (rs == null) return;
         JsonObject msg = new JsonObject();
         msg.addProperty("type", "gameStarting");
@@ -212,8 +526,8 @@ public class RoomDirectory {
         rs.broadcast(msg);
     }
 
-    void sendQuestion(String code) {
-        RoomState rs = rooms.get(code);
+    private void sendQuestion(String code) {
+        RoomState rs = room(code);
         if (rs == null) return;
         JsonObject msg = new JsonObject();
         msg.addProperty("type", "question");
@@ -249,21 +563,23 @@ public class RoomDirectory {
         // Reset round answers and start round timer
         rs.resetRoundState();
         long roundStart = System.currentTimeMillis();
-        int finalTimeSec = timeSec;
-        rs.startRoundTimer(finalTimeSec, () -> {
-            long roundDuration = System.currentTimeMillis() - roundStart;
-            // Finalize team scoring for this round
-            rs.finalizeRoundAndScore(roundDuration);
-            if (rs.advanceToNextQuestion()) {
-                sendQuestion(code);
-            } else {
-                broadcastGameOver(code);
-            }
-        });
+        rs.startRoundTimer(timeSec, () -> endRound(code, rs, roundStart));
+    }
+
+    // The round's time ran out: score it, then the next question or game over
+    private void endRound(String code, RoomState rs, long roundStart) {
+        long roundDuration = System.currentTimeMillis() - roundStart;
+        // Finalize team scoring for this round
+        rs.finalizeRoundAndScore(roundDuration);
+        if (rs.advanceToNextQuestion()) {
+            sendQuestion(code);
+        } else {
+            broadcastGameOver(code);
+        }
     }
 
     JsonObject roomSnapshot(String code) {
-        RoomState rs = rooms.get(code);
+        RoomState rs = room(code);
         JsonObject obj = new JsonObject();
         obj.addProperty("code", code);
         if (rs != null) {
@@ -281,8 +597,12 @@ public class RoomDirectory {
 
     // Host can change the desired capacity (2/3/4). Broadcast update and optionally auto-start.
     void setCapacity(String code, String host, int capacity) {
-        RoomState rs = rooms.get(code);
+        RoomState rs = room(code);
         if (rs == null) return;
+        rs.tell(() -> applyCapacity(rs, code, host, capacity));
+    }
+
+    private void applyCapacity(RoomState rs, String code, String host, int capacity) {
         if (!rs.isHost(host)) return;
         rs.setDesiredCapacity(capacity);
         System.out.println("Host " + host + " set capacity for room " + code + " to " + capacity);
@@ -291,20 +611,18 @@ public class RoomDirectory {
         broadcastGameStarting(code, "Host set players needed to " + capacity + ". Click 'Back' to leave, otherwise the game will auto-start when the room reaches " + capacity + ".");
         // If we already reached capacity, give a brief window and then start automatically
         if (rs.playerCount() >= rs.getDesiredCapacity() && !rs.isInProgress()) {
-            new Timer(true).schedule(new TimerTask() {
-                @Override public void run() {
-                    RoomState cur = rooms.get(code);
-                    if (cur != null && cur.playerCount() >= cur.getDesiredCapacity() && !cur.isInProgress()) {
-                        startGame(code, host, cur.getSelectedRoom(), cur.getSelectedDifficulty());
-                        broadcastGameStarted(code, "autoCapacityChange");
-                    }
+            rs.schedule(() -> {
+                RoomState cur = room(code);
+                if (cur != null && cur.playerCount() >= cur.getDesiredCapacity() && !cur.isInProgress()) {
+                    startGame(code, host, cur.getSelectedRoom(), cur.getSelectedDifficulty());
+                    broadcastGameStarted(code, "autoCapacityChange");
                 }
             }, 3000);
         }
     }
 
-    void broadcastGameOver(String code) {
-        RoomState rs = rooms.get(code);
+    private void broadcastGameOver(String code) {
+        RoomState rs = room(code);
         if (rs == null) return;
         JsonObject msg = new JsonObject();
         msg.addProperty("type", "gameOver");
@@ -316,15 +634,15 @@ public class RoomDirectory {
 
     // Generic broadcast for simple events like reaction/chat
     void broadcastEvent(String code, JsonObject msg) {
-        RoomState rs = rooms.get(code);
+        RoomState rs = room(code);
         if (rs == null) return;
-        rs.broadcast(msg);
+        rs.tell(() -> rs.broadcast(msg));
     }
 
 
     // Broadcast chat message to all players in a room (except sender)
 void broadcastToRoom(String roomCode, ChatMessage message) {
-    RoomState rs = rooms.get(roomCode);
+    RoomState rs = room(roomCode);
     if (rs == null) return;
     
     JsonObject msg = new JsonObject();
@@ -332,19 +650,14 @@ void broadcastToRoom(String roomCode, ChatMessage message) {
     msg.add("chatMessage", message.toJson());
     
     System.out.println("Broadcasting chat message from " + message.getSender() + " to room " + roomCode + " (excluding sender)");
-    rs.broadcastExcept(msg, message.getSender());
+    rs.tell(() -> rs.broadcastExcept(msg, message.getSender()));
 }
 
 // Send private message to specific receiver (not back to sender)
 void sendPrivateMessage(String receiver, ChatMessage message) {
-    RoomState rs = null;
     // Find which room the receiver is in
-    for (Map.Entry<String, RoomState> entry : rooms.entrySet()) {
-        if (entry.getValue().getPlayers().contains(receiver)) {
-            rs = entry.getValue();
-            break;
-        }
-    }
+    PresenceRegistry.Presence p = presence.find(receiver);
+    RoomState rs = p == null || p.roomCode() == null ? null : room(p.roomCode());
     
     if (rs == null) {
         System.out.println("Receiver " + receiver + " not found in any room");
@@ -356,7 +669,8 @@ void sendPrivateMessage(String receiver, ChatMessage message) {
     msg.add("chatMessage", message.toJson());
     
     System.out.println("Sending private message from " + message.getSender() + " to " + receiver + " (excluding sender)");
-    rs.sendToPlayer(receiver, msg);
+    RoomState target = rs;
+    target.tell(() -> target.sendToPlayer(receiver, msg));
 }
     
 }
@@ -0,0 +1,62 @@
+package com.example.escapeGame.server;
+
+import com.google.gson.JsonObject;
+
+import java.util.ArrayList;
+import java.util.List;
+
+// The room's most recent outbound events, numbered in send order and kept in a fixed ring. Each event carries its
+// number as "seq", so a client whose connection dropped can resume with the last number it received and be sent
+// just what it missed (see RoomState.missedSince). Events addressed to one player, or to everyone but one, remember
+// that so a replay matches what the player would have received. Only the room's mailbox touches an instance.
+final class RoomEventLog {
+    static final int DEFAULT_CAPACITY = Math.max(1, Integer.getInteger("server.resumeBufferSize", 64));
+
+    private final OutboundMessage[] messages;
+    private final String[] to;
+    private final String[] except;
+    // Number of the newest event; event n lives in slot n % capacity while it is among the last capacity
+    private long head = 0;
+    // Numbers at or below this were never logged here
+    private long base = 0;
+
+    RoomEventLog(int capacity) {
+        messages = new OutboundMessage[capacity];
+        to = new String[capacity];
+        except = new String[capacity];
+    }
+
+    long head() { return head; }
+
+    // Continue numbering after first (used when a room is restored elsewhere); nothing before it can be replayed
+    void startAt(long first) {
+        head = base = first;
+    }
+
+    // Number msg as the next event (adding its "seq"), log it and return it encoded.
+    // to: the only recipient, or null for everyone; except: the one player left out, or null
+    OutboundMessage append(JsonObject msg, String to, String except) {
+        long seq = ++head;
+        msg.addProperty("seq", seq);
+        OutboundMessage out = OutboundMessage.of(msg);
+        int slot = (int) (seq % messages.length);
+        messages[slot] = out;
+        this.to[slot] = to;
+        this.except[slot] = except;
+        return out;
+    }
+
+    // What username was sent after event number after, oldest first; null if some of it has been overwritten or
+    // after isn't a number this log handed out
+    List<OutboundMessage> since(long after, String username) {
+        if (after < base || after > head || head - after > messages.length) return null;
+        List<OutboundMessage> missed = new ArrayList<>((int) (head - after));
+        for (long n = after + 1; n <= head; n++) {
+            int slot = (int) (n % messages.length);
+            if (to[slot] != null && !to[slot].equals(username)) continue;
+            if (username.equals(except[slot])) continue;
+            missed.add(messages[slot]);
+        }
+        return missed;
+    }
+}
@@ -0,0 +1,53 @@
+package com.example.escapeGame.server;
+
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+// A room's actor mailbox: commands run one at a time, in submission order, on the room's shard worker.
+// State touched only from inside the mailbox needs no locking.
+class RoomMailbox implements Executor {
+    // Commands handled per turn before yielding the shard to other rooms
+    private static final int BATCH = 64;
+
+    private final Executor shard;
+    private final Queue<Runnable> queue = new ConcurrentLinkedQueue<>();
+    private final AtomicBoolean scheduled = new AtomicBoolean(false);
+    private volatile Thread runner;
+
+    RoomMailbox(Executor shard) {
+        this.shard = shard;
+    }
+
+    @Override
+    public void execute(Runnable command) {
+        queue.add(command);
+        if (scheduled.compareAndSet(false, true)) shard.execute(this::drain);
+    }
+
+    boolean inMailbox() { return Thread.currentThread() == runner; }
+
+    int depth() { return queue.size(); }
+
+    private void drain() {
+        runner = Thread.currentThread();
+        try {
+            for (int i = 0; i < BATCH; i++) {
+                Runnable r = queue.poll();
+                if (r == null) break;
+                try {
+                    r.run();
+                } catch (Exception e) {
+                    System.err.println("Room command failed: " + e.getMessage());
+                    e.printStackTrace();
+                }
+            }
+        } finally {
+            runner = null;
+            scheduled.set(false);
+            // Reschedule if more work is queued (or arrived while we were finishing)
+            if (!queue.isEmpty() && scheduled.compareAndSet(false, true)) shard.execute(this::drain);
+        }
+    }
+}
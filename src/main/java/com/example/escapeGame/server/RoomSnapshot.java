@@ -0,0 +1,120 @@
+package com.example.escapeGame.server;
+
+import java.io.*;
+import java.util.*;
+
+// Everything needed to carry on a room in another process: members, scores, settings, the chosen question ids,
+// the current question and its deadline, and the players' session tokens. Taken inside the room's mailbox and sent
+// to the standby (see Replicator). A snapshot with closed=true says the room is gone. Times are wall-clock millis;
+// primary and standby share a machine.
+record RoomSnapshot(String code,
+                    boolean closed,
+                    String host,
+                    List<String> players,
+                    Map<String, Integer> scores,
+                    String selectedRoom,
+                    String selectedDifficulty,
+                    int desiredCapacity,
+                    int tickMs,
+                    boolean inProgress,
+                    List<Integer> questionIds,
+                    int currentIndex,
+                    int scoreVersion,
+                    boolean roundOpen,
+                    Set<String> answered,
+                    Set<String> correct,
+                    long roundStartedAt,
+                    long roundDeadline,
+                    Map<String, String> sessions) {
+    private static final int VERSION = 2;
+
+    static RoomSnapshot closed(String code) {
+        return new RoomSnapshot(code, true, null, List.of(), Map.of(), null, null, 0, 0, false, List.of(), -1, 0,
+                false, Set.of(), Set.of(), 0, 0, Map.of());
+    }
+
+    byte[] encode() {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(256);
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            out.writeByte(VERSION);
+            out.writeUTF(code);
+            out.writeBoolean(closed);
+            if (closed) return bytes.toByteArray();
+            out.writeUTF(host);
+            writeStrings(out, players);
+            out.writeShort(scores.size());
+            for (Map.Entry<String, Integer> e : scores.entrySet()) {
+                out.writeUTF(e.getKey());
+                out.writeInt(e.getValue());
+            }
+            out.writeUTF(selectedRoom);
+            out.writeUTF(selectedDifficulty);
+            out.writeByte(desiredCapacity);
+            out.writeShort(tickMs);
+            out.writeBoolean(inProgress);
+            out.writeShort(questionIds.size());
+            for (int id : questionIds) out.writeInt(id);
+            out.writeShort(currentIndex);
+            out.writeInt(scoreVersion);
+            out.writeBoolean(roundOpen);
+            writeStrings(out, answered);
+            writeStrings(out, correct);
+            out.writeLong(roundStartedAt);
+            out.writeLong(roundDeadline);
+            out.writeShort(sessions.size());
+            for (Map.Entry<String, String> e : sessions.entrySet()) {
+                out.writeUTF(e.getKey());
+                out.writeUTF(e.getValue());
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return bytes.toByteArray();
+    }
+
+    static RoomSnapshot decode(byte[] data) throws IOException {
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(data));
+        int version = in.readUnsignedByte();
+        if (version != VERSION) throw new IOException("Unsupported room snapshot version " + version);
+        String code = in.readUTF();
+        if (in.readBoolean()) return closed(code);
+        String host = in.readUTF();
+        List<String> players = new ArrayList<>(readStrings(in));
+        int n = in.readUnsignedShort();
+        Map<String, Integer> scores = new HashMap<>();
+        for (int i = 0; i < n; i++) scores.put(in.readUTF(), in.readInt());
+        String selectedRoom = in.readUTF();
+        String selectedDifficulty = in.readUTF();
+        int capacity = in.readUnsignedByte();
+        int tickMs = in.readUnsignedShort();
+        boolean inProgress = in.readBoolean();
+        int q = in.readUnsignedShort();
+        List<Integer> questionIds = new ArrayList<>(q);
+        for (int i = 0; i < q; i++) questionIds.add(in.readInt());
+        int currentIndex = in.readShort();
+        int scoreVersion = in.readInt();
+        boolean roundOpen = in.readBoolean();
+        Set<String> answered = new HashSet<>(readStrings(in));
+        Set<String> correct = new HashSet<>(readStrings(in));
+        long roundStartedAt = in.readLong();
+        long roundDeadline = in.readLong();
+        int sessionCount = in.readUnsignedShort();
+        Map<String, String> sessions = new HashMap<>();
+        for (int i = 0; i < sessionCount; i++) sessions.put(in.readUTF(), in.readUTF());
+        return new RoomSnapshot(code, false, host, players, scores, selectedRoom, selectedDifficulty, capacity, tickMs,
+                inProgress, questionIds, currentIndex, scoreVersion, roundOpen, answered, correct, roundStartedAt, roundDeadline,
+                sessions);
+    }
+
+    private static void writeStrings(DataOutputStream out, Collection<String> strings) throws IOException {
+        out.writeShort(strings.size());
+        for (String s : strings) out.writeUTF(s);
+    }
+
+    private static List<String> readStrings(DataInputStream in) throws IOException {
+        int n = in.readUnsignedShort();
+        List<String> list = new ArrayList<>(n);
+        for (int i = 0; i < n; i++) list.add(in.readUTF());
+        return list;
+    }
+}
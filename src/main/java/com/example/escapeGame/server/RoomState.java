@@ -1,13 +1,21 @@
 package com.example.escapeGame.server;
 
 import com.example.escapeGame.Puzzle;
+import com.example.escapeGame.PuzzleCatalog;
 import com.google.gson.JsonObject;
 
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
 import java.util.*;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledFuture;
 
+// All mutations run on the room's mailbox (see tell); players and clientSinks stay concurrent because
+// the directory reads them from other threads, while round state is confined to the mailbox.
 public class RoomState {
-    // Removed unused field 'code' as it was assigned but never used
+    private final String code;
     private final String host;
     private final Set<String> players = ConcurrentHashMap.newKeySet();
     private final Map<String, ClientHandler> clientSinks = new ConcurrentHashMap<>();
@@ -18,16 +26,45 @@ public class RoomState {
     private volatile String selectedDifficulty = "Easy";
     // Host-selected desired capacity (min players required to start automatically). Range: 2-4
     private volatile int desiredCapacity = 2;
-    private final Map<String, Integer> scores = new ConcurrentHashMap<>();
-    private final Set<String> answeredThisRound = ConcurrentHashMap.newKeySet();
-    private final Set<String> correctThisRound = ConcurrentHashMap.newKeySet();
-    private volatile boolean unanimousCorrectThisRound = false;
-    private volatile boolean timeBonusThisRound = false;
-    private volatile Timer roundTimer;
-
-    public RoomState(String code, String host) {
-        // Code parameter is kept for backward compatibility but not stored
+    private final Map<String, Integer> scores = new HashMap<>();
+    // Bumped once per score change broadcast; clients apply deltas in version order and resync on a gap
+    private int scoreVersion = 0;
+    private final Set<String> answeredThisRound = new HashSet<>();
+    private final Set<String> correctThisRound = new HashSet<>();
+    private boolean unanimousCorrectThisRound = false;
+    private boolean timeBonusThisRound = false;
+    // Incremented for every new question; timers from an earlier round see a different value and do nothing
+    private int round = 0;
+    // True while the current question accepts answers; closing it exactly once prevents double advances
+    private boolean roundOpen = false;
+    private final RoomMailbox mailbox;
+    // Created on first use (see batcher()), so the constructor doesn't hand out this
+    private RoomBatcher batcher;
+    private final RoundScheduler scheduler;
+    private volatile ScheduledFuture<?> roundTimer;
+    // Every delay scheduled for this room, so teardown can cancel whatever is still pending
+    private final Set<ScheduledFuture<?>> timers = ConcurrentHashMap.newKeySet();
+    private volatile boolean closed = false;
+    // When the current question was sent and when its timer runs out (wall clock), for snapshots
+    private long roundStartedAt;
+    private long roundDeadline;
+    // Set when snapshots go to a standby server
+    private volatile Replicator replicator;
+    // Who may resume which seat after a dropped connection: username -> session token
+    private final Map<String, String> sessions = new HashMap<>();
+    // Seats whose connection dropped, held for the grace window (see holdSeat)
+    private final Map<String, HeldSeat> held = new HashMap<>();
+    private int holdCount = 0;
+    // Recent outbound events, replayed to a player who resumes
+    private final RoomEventLog recent = new RoomEventLog(RoomEventLog.DEFAULT_CAPACITY);
+
+    private record HeldSeat(int id, ScheduledFuture<?> expiry) {}
+
+    public RoomState(String code, String host, RoundScheduler scheduler, Executor shard) {
+        this.code = code;
         this.host = host;
+        this.scheduler = scheduler;
+        this.mailbox = new RoomMailbox(shard);
         players.add(host);
         scores.put(host, 0);
     }
@@ -63,23 +100,30 @@ public class RoomState {
         }
         scores.putIfAbsent(username, 0);
         System.out.println("Successfully added player: " + username + ", New count: " + players.size());
+        replicate();
         return true;
     }
 
     void addClient(String username, ClientHandler clientHandler) {
         if (clientHandler != null) {
             clientSinks.put(username, clientHandler);
+            releaseHold(username);
         }
+        replicate();
     }
 
     void removePlayer(String username, ClientHandler client) {
         players.remove(username);
         clientSinks.remove(username);
+        sessions.remove(username);
+        releaseHold(username);
         // keep scores if player reconnects; do not remove
+        replicate();
     }
 
     boolean isEmpty() { return players.isEmpty(); }
     boolean isHost(String username) { return host.equals(username); }
+    boolean hasPlayer(String username) { return players.contains(username); }
     int playerCount() { return players.size(); }
     Set<String> getPlayers() { return new TreeSet<>(players); }
     String getHost() { return host; }
@@ -88,14 +132,17 @@ public class RoomState {
         if (capacity < 2) capacity = 2;
         if (capacity > 4) capacity = 4;
         this.desiredCapacity = capacity;
+        replicate();
     }
 
     void selectQuestions(List<Puzzle> list) {
+        assert inMailbox();
         questions.clear();
         questions.addAll(list);
     }
 
     void markStarted() {
+        assert inMailbox();
         inProgress = true;
         currentIndex = 0;
         answeredThisRound.clear();
@@ -107,19 +154,41 @@ public class RoomState {
     int getTotalQuestions() { return questions.size(); }
     Puzzle getCurrentQuestion() { return (currentIndex >= 0 && currentIndex < questions.size()) ? questions.get(currentIndex) : null; }
 
+    void setTickMs(int tickMs) { batcher().setTickMs(tickMs); }
+
     void setSelection(String room, String difficulty) {
         if (room != null && !room.isEmpty()) selectedRoom = room;
         if (difficulty != null && !difficulty.isEmpty()) selectedDifficulty = difficulty;
+        replicate();
     }
     String getSelectedRoom() { return selectedRoom; }
     String getSelectedDifficulty() { return selectedDifficulty; }
 
+    // Queue a command on this room's mailbox
+    void tell(Runnable command) { mailbox.execute(command); }
+
+    // Commands queued but not yet run
+    int mailboxDepth() { return mailbox.depth(); }
+
+    // For asserts (run with -ea) in the methods that touch round state
+    private boolean inMailbox() {
+        if (mailbox.inMailbox()) return true;
+        throw new AssertionError("Room " + code + " changed outside its mailbox on " + Thread.currentThread().getName());
+    }
+
+    boolean isClosed() { return closed; }
+
     void submitAnswer(String username, String answer, long elapsedMs) {
+        assert inMailbox();
         Puzzle q = getCurrentQuestion();
         if (q == null) {
             System.out.println("No current question for user " + username);
             return;
         }
+        if (!roundOpen) {
+            System.out.println("Round closed, ignoring answer from " + username);
+            return;
+        }
         // Only accept first answer per player for this round
         if (answeredThisRound.contains(username)) {
             System.out.println("User " + username + " already answered this round");
@@ -143,10 +212,11 @@ public class RoomState {
         res.addProperty("correct", correct);
         res.addProperty("scoreDelta", delta);
         // Send only to the player who submitted the answer
+        OutboundMessage result = recent.append(res, username, null);
         ClientHandler ch = clientSinks.get(username);
         if (ch != null) {
             try { 
-                ch.send(res);
+                batcher().send(ch, result);
                 System.out.println("Sent answerResult to " + username);
             } catch (Exception e) {
                 System.err.println("Failed to send answerResult to " + username + ": " + e.getMessage());
@@ -155,35 +225,37 @@ public class RoomState {
             System.err.println("No client handler found for " + username);
         }
 
-        // Broadcast scores update
+        // Broadcast only the changed entry; the full table goes out as a scoreSnapshot on request
         JsonObject scoreMsg = new JsonObject();
-        scoreMsg.addProperty("type", "scoreUpdate");
-        scoreMsg.add("scores", getScoresJson());
-        System.out.println("Broadcasting score update: " + scoreMsg.toString());
+        scoreMsg.addProperty("type", "scoreDelta");
+        scoreMsg.addProperty("version", ++scoreVersion);
+        scoreMsg.add("changes", changesJson(Map.of(username, delta)));
         broadcast(scoreMsg);
         
         // Check if all players have answered
         if (allAnsweredThisRound()) {
             System.out.println("All players have answered, finalizing and waiting 3 seconds before next question");
+            roundOpen = false;
             // Cancel the current round timer since all players have answered
             cancelRoundTimer();
             // Calculate and apply team bonuses
             finalizeRoundAndScore(elapsedMs);
             // Delay 3 seconds so last player can see their result before advancing
-            new java.util.Timer(true).schedule(new java.util.TimerTask() {
-                @Override public void run() { try { nextQuestion(); } catch (Exception ignored) {} }
-            }, 3000);
+            int closedRound = round;
+            schedule(() -> { if (round == closedRound) nextQuestion(); }, 3000);
         }
     }
 
     // Called by directory when the round timer ends to compute team bonuses
     void finalizeRoundAndScore(long roundDurationMs) {
+        assert inMailbox();
         int playersCount = players.size();
         // Unanimous bonus: all answered and all correct
         unanimousCorrectThisRound = answeredThisRound.size() == playersCount && correctThisRound.size() == playersCount && playersCount > 0;
         // Time bonus: at least one correct and time <= 10s
         timeBonusThisRound = !correctThisRound.isEmpty() && roundDurationMs <= 10_000L;
 
+        Map<String, Integer> changes = new HashMap<>();
         int teamBonus = 0;
         if (unanimousCorrectThisRound) teamBonus += 2; // everyone correct -> +2 points per player
         if (timeBonusThisRound) teamBonus += 5; // unchanged: optional time bonus
@@ -192,6 +264,7 @@ public class RoomState {
             int perPlayer = teamBonus; // award bonus to each player equally (team-based display still possible client-side)
             for (String p : players) {
                 scores.compute(p, (k, v) -> (v == null ? 0 : v) + perPlayer);
+                changes.put(p, perPlayer);
             }
         }
 
@@ -200,8 +273,11 @@ public class RoomState {
         msg.addProperty("type", "teamScoreUpdate");
         msg.addProperty("unanimous", unanimousCorrectThisRound);
         msg.addProperty("timeBonus", timeBonusThisRound);
-        msg.add("scores", getScoresJson());
+        // No bonus means no change: the version stays put and the message only drives the UI
+        msg.addProperty("version", changes.isEmpty() ? scoreVersion : ++scoreVersion);
+        msg.add("changes", changesJson(changes));
         broadcast(msg);
+        replicate();
     }
 
     private int scoreFromElapsed(boolean correct, long ms) {
@@ -236,12 +312,24 @@ public class RoomState {
         return s.replaceAll("[^\\p{Alnum}]+", "").toLowerCase(Locale.ROOT).trim();
     }
 
-    JsonObject getScoresObject() {
-        JsonObject obj = new JsonObject();
-        for (String p : getPlayers()) {
-            obj.addProperty(p, scores.getOrDefault(p, 0));
+    // Full score table at the current version, sent when a client joins the game or detects a missed delta
+    JsonObject scoreSnapshot() {
+        JsonObject msg = new JsonObject();
+        msg.addProperty("type", "scoreSnapshot");
+        msg.addProperty("version", scoreVersion);
+        msg.add("scores", getScoresJson());
+        return msg;
+    }
+
+    private static com.google.gson.JsonArray changesJson(Map<String, Integer> changes) {
+        com.google.gson.JsonArray arr = new com.google.gson.JsonArray();
+        for (Map.Entry<String, Integer> e : changes.entrySet()) {
+            JsonObject o = new JsonObject();
+            o.addProperty("username", e.getKey());
+            o.addProperty("delta", e.getValue());
+            arr.add(o);
         }
-        return obj;
+        return arr;
     }
 
     com.google.gson.JsonArray getScoresJson() {
@@ -255,13 +343,14 @@ public class RoomState {
         return arr;
     }
 
-    int getScore(String username) { return scores.getOrDefault(username, 0); }
-
     void resetRoundState() {
+        assert inMailbox();
         answeredThisRound.clear();
         correctThisRound.clear();
         unanimousCorrectThisRound = false;
         timeBonusThisRound = false;
+        round++;
+        roundOpen = true;
     }
 
     boolean allAnsweredThisRound() {
@@ -269,16 +358,177 @@ public class RoomState {
     }
 
     void cancelRoundTimer() {
-        try { if (roundTimer != null) roundTimer.cancel(); } catch (Exception ignored) {}
+        ScheduledFuture<?> t = roundTimer;
+        if (t != null) t.cancel(false);
         roundTimer = null;
     }
 
+    // onTimeout runs only if this round is still open when the deadline fires
     void startRoundTimer(int seconds, Runnable onTimeout) {
+        assert inMailbox();
+        roundStartedAt = System.currentTimeMillis();
+        startRoundTimerAt(roundStartedAt + seconds * 1000L, onTimeout);
+        // A new question is a round boundary: worth a snapshot right away
+        replicate();
+    }
+
+    private void startRoundTimerAt(long deadline, Runnable onTimeout) {
+        cancelRoundTimer();
+        roundDeadline = deadline;
+        int timedRound = round;
+        roundTimer = schedule(() -> {
+            if (round != timedRound || !roundOpen) return;
+            roundOpen = false;
+            onTimeout.run();
+        }, Math.max(0, deadline - System.currentTimeMillis()));
+    }
+
+    // Send the room's current state to the standby, if there is one
+    void replicateTo(Replicator replicator) {
+        this.replicator = replicator;
+    }
+
+    void replicate() {
+        Replicator r = replicator;
+        if (r != null && !closed) r.offer(snapshot());
+    }
+
+    RoomSnapshot snapshot() {
+        List<Integer> ids = new ArrayList<>(questions.size());
+        for (Puzzle p : questions) ids.add(p.getId());
+        return new RoomSnapshot(code, false, host, new ArrayList<>(players), new HashMap<>(scores), selectedRoom,
+                selectedDifficulty, desiredCapacity, batcher().tickMs(), inProgress, ids, currentIndex, scoreVersion,
+                roundOpen, new HashSet<>(answeredThisRound), new HashSet<>(correctThisRound), roundStartedAt, roundDeadline,
+                new HashMap<>(sessions));
+    }
+
+    // Take over a room from the primary's snapshot (standby only); runs in the mailbox before any client is attached.
+    // If the snapshot's round is still open, onRoundTimeout runs at its original deadline.
+    void restore(RoomSnapshot s, Runnable onRoundTimeout) {
+        assert inMailbox();
+        players.clear();
+        players.addAll(s.players());
+        scores.clear();
+        scores.putAll(s.scores());
+        selectedRoom = s.selectedRoom();
+        selectedDifficulty = s.selectedDifficulty();
+        desiredCapacity = s.desiredCapacity();
+        batcher().setTickMs(s.tickMs());
+        questions.clear();
+        for (int id : s.questionIds()) {
+            // Both servers read the same puzzles file; a question deleted since is skipped
+            PuzzleCatalog.getInstance().byId(id).ifPresent(questions::add);
+        }
+        currentIndex = s.currentIndex();
+        scoreVersion = s.scoreVersion();
+        answeredThisRound.clear();
+        answeredThisRound.addAll(s.answered());
+        correctThisRound.clear();
+        correctThisRound.addAll(s.correct());
+        roundStartedAt = s.roundStartedAt();
+        // Number events from here on above anything the failed server can have sent, so a client's last number from
+        // there never matches an event here and resuming falls back to the full state
+        recent.startAt(System.currentTimeMillis() * 1000);
+        sessions.clear();
+        sessions.putAll(s.sessions());
+        inProgress = s.inProgress() && getCurrentQuestion() != null;
+        if (!inProgress) return;
+        round++;
+        roundOpen = s.roundOpen();
+        if (roundOpen) {
+            // Same deadline as on the primary, so clients' countdowns stay right
+            startRoundTimerAt(s.roundDeadline(), onRoundTimeout);
+        } else {
+            // The primary was between questions
+            int closedRound = round;
+            schedule(() -> { if (round == closedRound) nextQuestion(); }, 3000);
+        }
+    }
+
+    void setSession(String username, String token) {
+        if (!players.contains(username)) return;
+        sessions.put(username, token);
+        replicate();
+    }
+
+    boolean hasSession(String username) { return sessions.containsKey(username); }
+
+    // The player this session token belongs to, or null
+    String sessionOwner(String token) {
+        byte[] given = token.getBytes(StandardCharsets.UTF_8);
+        for (Map.Entry<String, String> e : sessions.entrySet()) {
+            if (MessageDigest.isEqual(given, e.getValue().getBytes(StandardCharsets.UTF_8))) return e.getKey();
+        }
+        return null;
+    }
+
+    // The player's connection dropped: keep their seat, score and answers for graceMs, then run onExpiry (in the
+    // mailbox) unless they came back. client is the connection that dropped; if the seat has since been taken by a
+    // newer connection nothing changes and this returns false. client is null for a room restored on a standby,
+    // where nobody is attached yet.
+    boolean holdSeat(String username, ClientHandler client, long graceMs, Runnable onExpiry) {
+        if (!players.contains(username) || clientSinks.get(username) != client) return false;
+        if (client != null) clientSinks.remove(username);
+        releaseHold(username);
+        int id = ++holdCount;
+        // The timer can fire just as the player resumes; only the hold it was set for may expire
+        ScheduledFuture<?> expiry = schedule(() -> {
+            HeldSeat h = held.get(username);
+            if (h == null || h.id() != id) return;
+            held.remove(username);
+            onExpiry.run();
+        }, graceMs);
+        held.put(username, new HeldSeat(id, expiry));
+        return true;
+    }
+
+    boolean isHeld(String username) { return held.containsKey(username); }
+
+    // Number of the newest logged event; a client that has seen it has seen everything sent to it so far
+    long eventSeq() { return recent.head(); }
+
+    // What the player was sent after event lastSeq (the newest one their client received), oldest first; null if
+    // some of it is no longer buffered or lastSeq isn't one of this room's numbers
+    List<OutboundMessage> missedSince(String username, long lastSeq) {
+        return recent.since(lastSeq, username);
+    }
+
+    private void releaseHold(String username) {
+        HeldSeat h = held.remove(username);
+        if (h != null && h.expiry() != null) h.expiry().cancel(false);
+    }
+
+    // The current question with the time left, for a client that reconnected mid-round; null between rounds
+    JsonObject questionInProgress() {
+        Puzzle q = getCurrentQuestion();
+        if (!inProgress || !roundOpen || q == null) return null;
+        JsonObject msg = new JsonObject();
+        msg.addProperty("type", "question");
+        msg.addProperty("index", currentIndex + 1);
+        msg.addProperty("total", questions.size());
+        msg.addProperty("text", q.getQuestion());
+        msg.addProperty("timeSec", Math.max(1, (int) ((roundDeadline - System.currentTimeMillis() + 999) / 1000)));
+        return msg;
+    }
+
+    // After delayMs the task is delivered to this room's mailbox; returns null once the room is closed
+    ScheduledFuture<?> schedule(Runnable task, long delayMs) {
+        if (closed) return null;
+        ScheduledFuture<?> f = scheduler.schedule(() -> tell(() -> { if (!closed) task.run(); }), delayMs);
+        timers.removeIf(Future::isDone);
+        timers.add(f);
+        return f;
+    }
+
+    // Room teardown: cancel the round deadline and any pending countdowns/delays
+    void close() {
+        closed = true;
+        Replicator r = replicator;
+        if (r != null) r.offer(RoomSnapshot.closed(code));
+        if (batcher != null) batcher.clear();
         cancelRoundTimer();
-        roundTimer = new Timer(true);
-        roundTimer.schedule(new java.util.TimerTask() {
-            @Override public void run() { try { onTimeout.run(); } catch (Exception ignored) {} }
-        }, seconds * 1000L);
+        for (ScheduledFuture<?> f : timers) f.cancel(false);
+        timers.clear();
     }
 
     private void nextQuestion() {
@@ -337,6 +587,7 @@ public class RoomState {
     }
     
     boolean advanceToNextQuestion() {
+        assert inMailbox();
         currentIndex++;
         boolean hasMoreQuestions = currentIndex < questions.size();
         if (!hasMoreQuestions) {
@@ -346,17 +597,21 @@ public class RoomState {
             gameOverMsg.add("scores", getScoresJson());
             broadcast(gameOverMsg);
             inProgress = false;
+            replicate();
         }
         return hasMoreQuestions;
     }
 
-    void broadcast(JsonObject msg) {
-        System.out.println("Broadcasting message to " + clientSinks.size() + " clients: " + msg.toString());
+    // Number and log the event, encode it once, then hand the same bytes to every client (queued until the next
+    // tick when the room batches)
+    void broadcast(JsonObject json) {
+        OutboundMessage msg = recent.append(json, null, null);
+        System.out.println("Broadcasting message to " + clientSinks.size() + " clients: " + msg);
         for (Map.Entry<String, ClientHandler> entry : clientSinks.entrySet()) {
             String username = entry.getKey();
             ClientHandler ch = entry.getValue();
             try { 
-                ch.send(msg);
+                batcher().send(ch, msg);
                 System.out.println("Sent message to " + username);
             } catch (Exception e) {
                 System.err.println("Failed to send message to " + username + ": " + e.getMessage());
@@ -365,8 +620,9 @@ public class RoomState {
     }
 
     // Broadcast message to all players except the specified username
-void broadcastExcept(JsonObject msg, String excludeUsername) {
-    System.out.println("Broadcasting message to all clients except " + excludeUsername + ": " + msg.toString());
+void broadcastExcept(JsonObject json, String excludeUsername) {
+    OutboundMessage msg = recent.append(json, null, excludeUsername);
+    System.out.println("Broadcasting message to all clients except " + excludeUsername + ": " + msg);
     for (Map.Entry<String, ClientHandler> entry : clientSinks.entrySet()) {
         String username = entry.getKey();
         if (username.equals(excludeUsername)) {
@@ -375,7 +631,7 @@ void broadcastExcept(JsonObject msg, String excludeUsername) {
         }
         ClientHandler ch = entry.getValue();
         try { 
-            ch.send(msg);
+            batcher().send(ch, msg);
             System.out.println("Sent message to " + username);
         } catch (Exception e) {
             System.err.println("Failed to send message to " + username + ": " + e.getMessage());
@@ -384,12 +640,13 @@ void broadcastExcept(JsonObject msg, String excludeUsername) {
 }
 
 // Send message to a specific player
-void sendToPlayer(String username, JsonObject msg) {
-    System.out.println("Sending message to specific player " + username + ": " + msg.toString());
+void sendToPlayer(String username, JsonObject json) {
+    OutboundMessage msg = recent.append(json, username, null);
+    System.out.println("Sending message to specific player " + username + ": " + msg);
     ClientHandler ch = clientSinks.get(username);
     if (ch != null) {
         try { 
-            ch.send(msg);
+            batcher().send(ch, msg);
             System.out.println("Sent message to " + username);
         } catch (Exception e) {
             System.err.println("Failed to send message to " + username + ": " + e.getMessage());
@@ -399,6 +656,28 @@ void sendToPlayer(String username, JsonObject msg) {
     }
 }
 
+// A reply to one client that isn't a room event (not numbered or replayed): it goes through the batcher, so in
+// tick mode it stays behind the room events already queued for that client instead of overtaking them
+void reply(ClientHandler client, JsonObject json) {
+    batcher().send(client, OutboundMessage.of(json));
+}
+
+void replyAll(ClientHandler client, List<OutboundMessage> msgs) {
+    batcher().sendAll(client, msgs);
+}
+
+void replyError(ClientHandler client, String message) {
+    JsonObject err = new JsonObject();
+    err.addProperty("type", "error");
+    err.addProperty("message", message);
+    reply(client, err);
+}
+
+private RoomBatcher batcher() {
+    if (batcher == null) batcher = new RoomBatcher(this);
+    return batcher;
+}
+
 }
 
 
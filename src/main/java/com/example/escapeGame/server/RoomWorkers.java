@@ -0,0 +1,28 @@
+package com.example.escapeGame.server;
+
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+// Fixed pool of single-threaded workers; each RoomDirectory shard is pinned to one, spreading rooms across cores
+class RoomWorkers {
+    private final ExecutorService[] shards;
+
+    RoomWorkers(int count) {
+        shards = new ExecutorService[Math.max(1, count)];
+        for (int i = 0; i < shards.length; i++) {
+            String name = "room-worker-" + i;
+            shards[i] = Executors.newSingleThreadExecutor(r -> {
+                Thread t = new Thread(r, name);
+                t.setDaemon(true);
+                return t;
+            });
+        }
+    }
+
+    Executor get(int index) {
+        return shards[index];
+    }
+
+    int size() { return shards.length; }
+}
@@ -0,0 +1,44 @@
+package com.example.escapeGame.server;
+
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+// Server-wide timer service for round deadlines, auto-start countdowns and question delays.
+// Replaces one java.util.Timer thread per delay with a small shared pool.
+class RoundScheduler {
+    private final ScheduledThreadPoolExecutor executor;
+    private final AtomicLong scheduled = new AtomicLong();
+    private final AtomicLong fired = new AtomicLong();
+
+    RoundScheduler(int threads) {
+        AtomicInteger n = new AtomicInteger();
+        executor = new ScheduledThreadPoolExecutor(Math.max(1, threads), r -> {
+            Thread t = new Thread(r, "round-timer-" + n.incrementAndGet());
+            t.setDaemon(true);
+            return t;
+        });
+        // Cancelled round timers are dropped from the queue right away instead of waiting out their delay
+        executor.setRemoveOnCancelPolicy(true);
+        ServerMetrics.gauge("pendingTimers", this::pending);
+        ServerMetrics.gauge("timersScheduled", scheduled::get);
+        ServerMetrics.gauge("timersFired", fired::get);
+    }
+
+    ScheduledFuture<?> schedule(Runnable task, long delayMs) {
+        scheduled.incrementAndGet();
+        return executor.schedule(() -> {
+            fired.incrementAndGet();
+            try {
+                task.run();
+            } catch (Exception e) {
+                System.err.println("Scheduled task failed: " + e.getMessage());
+                e.printStackTrace();
+            }
+        }, delayMs, TimeUnit.MILLISECONDS);
+    }
+
+    long pending() { return executor.getQueue().size(); }
+}
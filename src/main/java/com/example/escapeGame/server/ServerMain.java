@@ -3,8 +3,14 @@ package com.example.escapeGame.server;
 import java.io.IOException;
 import java.net.ServerSocket;
 import java.net.Socket;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 
 public class ServerMain {
+    // Usage: ServerMain [port] [blocking|virtual|nio] [ioThreads]
+    // As one node of a cluster: -Dserver.cluster=host:port,host:port,... and, if this node's entry isn't
+    // 127.0.0.1:<port>, -Dserver.node=host:port naming it
+    // Hot standby: the primary gets -Dserver.standby=host:replicaPort, the standby -Dserver.replicaPort=N
     public static void main(String[] args) throws IOException {
         int port = 9090;
         if (args.length > 0) {
@@ -13,19 +19,69 @@ public class ServerMain {
             } catch (NumberFormatException ignored) {
             }
         }
-        System.out.println("Multiplayer Server starting on port " + port);
-        RoomDirectory roomDirectory = new RoomDirectory();
-        try (ServerSocket serverSocket = new ServerSocket(port)) {
+        String mode = args.length > 1 ? args[1] : System.getProperty("server.mode", "blocking");
+        int ioThreads = Math.max(2, Runtime.getRuntime().availableProcessors());
+        if (args.length > 2) {
+            try {
+                ioThreads = Integer.parseInt(args[2]);
+            } catch (NumberFormatException ignored) {
+            }
+        }
+        System.out.println("Multiplayer Server starting on port " + port + " (" + mode + " mode)");
+        RoomDirectory roomDirectory = directory(port);
+        configureReplication(roomDirectory);
+        ServerMetrics.start(Long.getLong("server.metricsIntervalSec", 30));
+        serve(port, mode, ioThreads, roomDirectory);
+    }
+
+    private static RoomDirectory directory(int port) {
+        String cluster = System.getProperty("server.cluster");
+        if (cluster == null || cluster.isBlank()) return new RoomDirectory();
+        ClusterRing ring = ClusterRing.parse(cluster);
+        String nodeId = System.getProperty("server.node", "127.0.0.1:" + port);
+        ClusterRing.Node self = ring.find(nodeId);
+        if (self == null) throw new IllegalArgumentException("This node (" + nodeId + ") is not in server.cluster=" + cluster);
+        System.out.println("Cluster node " + self.id() + " of " + ring.nodes().size());
+        return new RoomDirectory(ring, self);
+    }
+
+    private static void configureReplication(RoomDirectory roomDirectory) {
+        String standby = System.getProperty("server.standby");
+        if (standby != null && !standby.isBlank()) {
+            Replicator replicator = Replicator.parse(standby, Long.getLong("server.snapshotIntervalMs", 1000));
+            roomDirectory.replicateTo(replicator);
+            replicator.start();
+        }
+        Integer replicaPort = Integer.getInteger("server.replicaPort");
+        if (replicaPort != null) {
+            ReplicaListener replica = new ReplicaListener(replicaPort, roomDirectory);
+            roomDirectory.setReplica(replica);
+            replica.start();
+        }
+    }
+
+    // Accept clients on the port until the process exits
+    static void serve(int port, String mode, int ioThreads, RoomDirectory roomDirectory) throws IOException {
+        if ("nio".equalsIgnoreCase(mode)) {
+            new NioServer(port, roomDirectory, ioThreads).serve();
+            return;
+        }
+        boolean virtual = "virtual".equalsIgnoreCase(mode);
+        // Virtual threads are cheap enough for one per idle connection; blocking mode keeps a platform thread each
+        ExecutorService virtualThreads = virtual ? Executors.newVirtualThreadPerTaskExecutor() : null;
+        try (ServerSocket serverSocket = new ServerSocket(port, 1024)) {
             while (true) {
                 Socket socket = serverSocket.accept();
                 System.out.println("Client connected: " + socket.getRemoteSocketAddress());
                 ClientHandler handler = new ClientHandler(socket, roomDirectory);
-                Thread t = new Thread(handler, "client-" + socket.getPort());
-                t.setDaemon(true);
-                t.start();
+                if (virtual) {
+                    virtualThreads.submit(handler);
+                } else {
+                    Thread t = new Thread(handler, "client-" + socket.getPort());
+                    t.setDaemon(true);
+                    t.start();
+                }
             }
         }
     }
 }
-
-
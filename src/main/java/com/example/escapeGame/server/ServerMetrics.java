@@ -0,0 +1,67 @@
+package com.example.escapeGame.server;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.LongSupplier;
+
+// Server-wide counters, printed periodically so capacity can be checked under load
+final class ServerMetrics {
+    private static final AtomicInteger connections = new AtomicInteger();
+    private static volatile long baselineHeap = -1;
+    private static final Map<String, List<LongSupplier>> gauges = new ConcurrentSkipListMap<>();
+
+    private ServerMetrics() {}
+
+    static void connectionOpened() { connections.incrementAndGet(); }
+    static void connectionClosed() { connections.decrementAndGet(); }
+    static int connections() { return connections.get(); }
+
+    // Register a named value to include in every report. Every instance of a class registers under the same name
+    // (LocalCluster runs several RoomDirectorys in one process), so the report shows the sum of a name's values.
+    static void gauge(String name, LongSupplier value) {
+        gauges.computeIfAbsent(name, k -> new CopyOnWriteArrayList<>()).add(value);
+    }
+
+    // Start the background reporter; the heap in use at this point is the zero-connection baseline
+    static void start(long intervalSec) {
+        baselineHeap = usedHeap();
+        Thread t = new Thread(() -> {
+            while (true) {
+                try {
+                    Thread.sleep(intervalSec * 1000L);
+                } catch (InterruptedException e) {
+                    return;
+                }
+                System.out.println(report());
+            }
+        }, "server-metrics");
+        t.setDaemon(true);
+        t.start();
+    }
+
+    static String report() {
+        int conns = connections.get();
+        long used = usedHeap();
+        StringBuilder sb = new StringBuilder("[metrics] connections=").append(conns)
+                .append(" heapUsed=").append(used / (1024 * 1024)).append("MB")
+                .append(" platformThreads=").append(Thread.activeCount());
+        // Virtual thread stacks live on the heap, so heap growth over the baseline covers them too
+        if (conns > 0 && baselineHeap >= 0) {
+            sb.append(" perConnection~").append(Math.max(0, used - baselineHeap) / conns / 1024).append("KB");
+        }
+        for (Map.Entry<String, List<LongSupplier>> g : gauges.entrySet()) {
+            long sum = 0;
+            for (LongSupplier v : g.getValue()) sum += v.getAsLong();
+            sb.append(' ').append(g.getKey()).append('=').append(sum);
+        }
+        return sb.toString();
+    }
+
+    private static long usedHeap() {
+        Runtime rt = Runtime.getRuntime();
+        return rt.totalMemory() - rt.freeMemory();
+    }
+}
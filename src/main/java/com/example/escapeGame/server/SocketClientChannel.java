@@ -0,0 +1,62 @@
+package com.example.escapeGame.server;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.Socket;
+
+// Blocking-mode channel: frames go into a bounded OutboundQueue and a dedicated writer (a virtual thread,
+// so it never pins a carrier) drains them, writing and flushing each coalesced batch once.
+// Callers never wait on the client's TCP window.
+class SocketClientChannel implements ClientChannel {
+    private final Socket socket;
+    private final OutputStream out;
+    private final String remote;
+    private final OutboundQueue queue;
+
+    SocketClientChannel(Socket socket, OutputStream out) {
+        this.socket = socket;
+        this.out = out;
+        this.remote = String.valueOf(socket.getRemoteSocketAddress());
+        this.queue = new OutboundQueue(remote);
+        Thread.ofVirtual().name("writer-" + socket.getPort()).start(this::writeLoop);
+    }
+
+    private void writeLoop() {
+        try {
+            byte[] batch;
+            while ((batch = queue.takeBatch()) != null) {
+                out.write(batch);
+                out.flush();
+            }
+            // Closed, or finished by closeAfterFlush with everything written
+            close();
+        } catch (IOException e) {
+            System.err.println("Write to " + remote + " failed: " + e.getMessage());
+            close();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    @Override
+    public void write(byte[] frame) {
+        if (!queue.offer(frame) && OutboundQueue.POLICY == OutboundQueue.Policy.DISCONNECT) {
+            close();
+        }
+    }
+
+    @Override
+    public String remoteAddress() { return String.valueOf(socket.getInetAddress()); }
+
+    @Override
+    public void close() {
+        queue.close();
+        // Closing the socket also ends the handler's blocking read, which runs the normal disconnect path
+        try { socket.close(); } catch (IOException ignored) {}
+    }
+
+    @Override
+    public void closeAfterFlush() {
+        queue.finish();
+    }
+}
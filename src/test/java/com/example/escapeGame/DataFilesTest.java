@@ -0,0 +1,93 @@
+package com.example.escapeGame;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class DataFilesTest {
+    @TempDir
+    Path dir;
+
+    @Test
+    void writeReplacesTheFileAndLeavesNoTempFiles() throws IOException {
+        Path file = dir.resolve("sub").resolve("users.json");
+        DataFiles.write(file, "[1]");
+        DataFiles.write(file, "[1,2]");
+        assertEquals("[1,2]", Files.readString(file));
+        assertEquals(List.of("users.json", "users.json.lock"), fileNames(file.getParent()));
+    }
+
+    @Test
+    void concurrentWritesLeaveOneCompleteVersion() throws Exception {
+        Path file = dir.resolve("scores.json");
+        Set<String> written = ConcurrentHashMap.newKeySet();
+        List<Thread> threads = new ArrayList<>();
+        CountDownLatch start = new CountDownLatch(1);
+        for (int t = 0; t < 8; t++) {
+            int id = t;
+            threads.add(new Thread(() -> {
+                try {
+                    start.await();
+                    for (int i = 0; i < 50; i++) {
+                        String content = ("writer " + id + " save " + i + "\n").repeat(200);
+                        written.add(content);
+                        DataFiles.write(file, content);
+                    }
+                } catch (Exception e) {
+                    throw new RuntimeException(e);
+                }
+            }));
+        }
+        for (Thread t : threads) t.start();
+        start.countDown();
+        for (Thread t : threads) t.join();
+        assertTrue(written.contains(Files.readString(file)));
+        assertEquals(List.of("scores.json", "scores.json.lock"), fileNames(dir));
+    }
+
+    @Test
+    void lockedUpdatesDoNotOverwriteEachOther() throws Exception {
+        Path file = dir.resolve("counter.json");
+        DataFiles.write(file, "0");
+        List<Thread> threads = new ArrayList<>();
+        for (int t = 0; t < 4; t++) {
+            threads.add(new Thread(() -> {
+                for (int i = 0; i < 100; i++) {
+                    try {
+                        DataFiles.locked(file, () -> {
+                            try {
+                                int n = Integer.parseInt(Files.readString(file));
+                                // A save inside the action reuses the held lock
+                                DataFiles.write(file, Integer.toString(n + 1));
+                            } catch (IOException e) {
+                                throw new RuntimeException(e);
+                            }
+                        });
+                    } catch (IOException e) {
+                        throw new RuntimeException(e);
+                    }
+                }
+            }));
+        }
+        for (Thread t : threads) t.start();
+        for (Thread t : threads) t.join();
+        assertEquals("400", Files.readString(file));
+    }
+
+    private static List<String> fileNames(Path dir) throws IOException {
+        try (Stream<Path> files = Files.list(dir)) {
+            return files.map(p -> p.getFileName().toString()).sorted().toList();
+        }
+    }
+}
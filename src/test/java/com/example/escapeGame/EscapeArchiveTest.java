@@ -0,0 +1,101 @@
+package com.example.escapeGame;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class EscapeArchiveTest {
+    private static final LocalDateTime BASE = LocalDateTime.of(2024, 1, 15, 12, 30, 45);
+
+    @TempDir
+    Path dir;
+
+    @Test
+    void writeThenReadRoundTrips() throws IOException {
+        Map<String, List<EscapeRecord>> moved = new LinkedHashMap<>();
+        moved.put("alice", List.of(
+                record("Lab", "easy", BASE.plusDays(3), 120, true),
+                record("Vault", "hard", BASE.minusYears(1), null, null)));
+        moved.put("bob", List.of(record("lab", "EASY", BASE.plusSeconds(1), -5, false)));
+        EscapeArchive archive = EscapeArchive.empty().plus(moved, 17, EscapeArchive.epoch(BASE.plusDays(10)));
+
+        Path file = dir.resolve("leaderboard.archive");
+        Files.write(file, archive.encode());
+        EscapeArchive read = EscapeArchive.read(file);
+
+        assertEquals(17, read.seq);
+        assertEquals(EscapeArchive.epoch(BASE.plusDays(10)), read.cutoff);
+        assertEquals(List.of(
+                "alice Vault hard " + BASE.minusYears(1) + " null null",
+                "bob lab EASY " + BASE.plusSeconds(1) + " -5 false",
+                "alice Lab easy " + BASE.plusDays(3) + " 120 true"), rows(read));
+        assertEquals(rows(archive), rows(read));
+        assertEquals(2, read.count("LAB", "easy", null, null));
+        assertEquals(1, read.count(null, null, BASE, BASE.plusDays(1)));
+        assertEquals(0, read.count("Attic", null, null, null));
+    }
+
+    @Test
+    void subSecondPrecisionIsDropped() throws IOException {
+        EscapeArchive archive = EscapeArchive.empty().plus(
+                Map.of("alice", List.of(record("Lab", "easy", BASE.plusNanos(999_000_000), 1, true))), 1, 0);
+        Path file = dir.resolve("leaderboard.archive");
+        Files.write(file, archive.encode());
+        assertEquals(List.of("alice Lab easy " + BASE + " 1 true"), rows(EscapeArchive.read(file)));
+    }
+
+    @Test
+    void removingAPlayerKeepsTheOthers() throws IOException {
+        Map<String, List<EscapeRecord>> moved = new LinkedHashMap<>();
+        moved.put("Alice", List.of(record("Lab", "easy", BASE, 1, true)));
+        moved.put("bob", List.of(record("Lab", "easy", BASE.plusHours(1), 2, false)));
+        EscapeArchive archive = EscapeArchive.empty().plus(moved, 5, 0).withoutPlayer("alice");
+
+        Path file = dir.resolve("leaderboard.archive");
+        Files.write(file, archive.encode());
+        EscapeArchive read = EscapeArchive.read(file);
+        assertEquals(5, read.seq);
+        assertEquals(List.of("bob Lab easy " + BASE.plusHours(1) + " 2 false"), rows(read));
+        assertSame(archive, archive.withoutPlayer("carol"));
+    }
+
+    @Test
+    void emptyArchiveRoundTripsAndAMissingFileReadsAsEmpty() throws IOException {
+        Path file = dir.resolve("leaderboard.archive");
+        assertEquals(0, EscapeArchive.read(file).size());
+        Files.write(file, EscapeArchive.empty().encode());
+        assertEquals(0, EscapeArchive.read(file).size());
+    }
+
+    @Test
+    void rejectsAFileThatIsNotAnArchive() throws IOException {
+        Path file = dir.resolve("leaderboard.archive");
+        Files.writeString(file, "[{\"username\":\"alice\"}]");
+        assertThrows(IOException.class, () -> EscapeArchive.read(file));
+    }
+
+    private static EscapeRecord record(String room, String level, LocalDateTime when, Integer score, Boolean multiplayer) {
+        EscapeRecord er = new EscapeRecord(room, level, when);
+        er.setScore(score);
+        er.setMultiplayer(multiplayer);
+        return er;
+    }
+
+    // One "player room level date score multiplayer" line per record, in the archive's (date) order
+    private static List<String> rows(EscapeArchive archive) {
+        List<String> rows = new ArrayList<>();
+        archive.forEach((player, room, level, when, score, mp) ->
+                rows.add(player + " " + room + " " + level + " " + when + " " + score + " " + mp));
+        return rows;
+    }
+}
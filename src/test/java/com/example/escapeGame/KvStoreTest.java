@@ -0,0 +1,121 @@
+package com.example.escapeGame;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class KvStoreTest {
+    @TempDir
+    Path dir;
+
+    @Test
+    void reopenDropsATornLastRecord() throws IOException {
+        Path file = dir.resolve("users.kv");
+        KvStore kv = KvStore.open(file);
+        kv.commit(Map.of("alice", bytes("1"), "bob", bytes("2")));
+        kv.commit(batch("bob", null, "carol", "3"));
+        long intact = Files.size(file);
+
+        // Crash mid-append: the start of a record whose payload never made it
+        kv.commit(Map.of("dave", bytes("4".repeat(1000))));
+        byte[] whole = Files.readAllBytes(file);
+        Files.write(file, Arrays.copyOf(whole, (int) intact + 20));
+
+        // Each path is opened once per process, so a copy stands in for the store after a restart
+        KvStore reopened = KvStore.open(copy(file, "restart1.kv"));
+        assertEquals(2, reopened.size());
+        assertEquals("1", string(reopened.get("alice")));
+        assertNull(reopened.get("bob"));
+        assertEquals("3", string(reopened.get("carol")));
+        assertNull(reopened.get("dave"));
+
+        // The next commit replaces the torn bytes
+        reopened.commit(Map.of("erin", bytes("5")));
+        KvStore again = KvStore.open(copy(reopened.path(), "restart2.kv"));
+        assertEquals(3, again.size());
+        assertEquals("5", string(again.get("erin")));
+        assertEquals("3", string(again.get("carol")));
+    }
+
+    @Test
+    void reopenIgnoresGarbageAfterTheLastRecord() throws IOException {
+        Path file = dir.resolve("scores.kv");
+        KvStore.open(file).commit(Map.of("k", bytes("v")));
+        Files.write(file, new byte[]{0x4B, 0x56, 0x53, 0x31, 0, 0, 0, 9, 1, 2, 3, 4, 5}, StandardOpenOption.APPEND);
+
+        KvStore reopened = KvStore.open(copy(file, "restart.kv"));
+        assertEquals(1, reopened.size());
+        assertEquals("v", string(reopened.get("k")));
+    }
+
+    @Test
+    void reopenAfterCompaction() throws IOException {
+        Path file = dir.resolve("leaderboard.kv");
+        KvStore kv = KvStore.open(file);
+        kv.commit(batch("keep", "kept", "gone", "soon deleted"));
+        kv.commit(batch("gone", null));
+        // Overwriting one large value leaves most of the file superseded, which triggers a compaction
+        byte[] big = new byte[64 * 1024];
+        for (int i = 0; i < 40; i++) {
+            Arrays.fill(big, (byte) i);
+            kv.commit(Map.of("big", big.clone()));
+        }
+        assertTrue(Files.size(file) < 40L * big.length / 2, "file was not compacted: " + Files.size(file) + " bytes");
+
+        KvStore reopened = KvStore.open(copy(file, "restart.kv"));
+        assertEquals(2, reopened.size());
+        assertEquals("kept", string(reopened.get("keep")));
+        assertNull(reopened.get("gone"));
+        assertArrayEquals(big, reopened.get("big"));
+        // Still writable after the swap
+        kv.commit(Map.of("after", bytes("x")));
+        assertEquals("x", string(KvStore.open(copy(file, "restart2.kv")).get("after")));
+    }
+
+    @Test
+    void replaceAllKeepsOnlyTheGivenEntries() throws IOException {
+        KvStore kv = KvStore.open(dir.resolve("puzzles.kv"));
+        kv.commit(Map.of("a", bytes("1"), "b", bytes("2")));
+        Map<String, byte[]> entries = new LinkedHashMap<>();
+        entries.put("c", bytes("3"));
+        entries.put("d", bytes("4"));
+        kv.replaceAll(entries);
+
+        KvStore reopened = KvStore.open(copy(kv.path(), "restart.kv"));
+        Map<String, String> seen = new LinkedHashMap<>();
+        reopened.forEach((k, v) -> seen.put(k, string(v)));
+        assertEquals(Map.of("c", "3", "d", "4"), seen);
+    }
+
+    private Path copy(Path file, String name) throws IOException {
+        return Files.copy(file, dir.resolve(name));
+    }
+
+    // Keys and values alternating; a null value deletes
+    private static Map<String, byte[]> batch(String... keysAndValues) {
+        Map<String, byte[]> batch = new HashMap<>();
+        for (int i = 0; i < keysAndValues.length; i += 2) {
+            batch.put(keysAndValues[i], keysAndValues[i + 1] == null ? null : bytes(keysAndValues[i + 1]));
+        }
+        return batch;
+    }
+
+    private static byte[] bytes(String s) {
+        return s.getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static String string(byte[] b) {
+        return b == null ? null : new String(b, StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,167 @@
+package com.example.escapeGame;
+
+import com.google.gson.JsonArray;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.FileTime;
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+// LeaderboardDataUtil keeps its data under ${user.dir}/data, so each test points user.dir at a temp directory
+class LeaderboardDataUtilTest {
+    // Every snapshot written here gets a new modification time, which makes LeaderboardDataUtil reload from disk
+    private static final AtomicLong snapshotTime = new AtomicLong(System.currentTimeMillis() - 1_000_000);
+
+    @TempDir
+    Path dir;
+    private String userDir;
+
+    @BeforeEach
+    void pointAtTempDir() throws IOException {
+        userDir = System.getProperty("user.dir");
+        System.setProperty("user.dir", dir.toString());
+        Files.createDirectories(data());
+    }
+
+    @AfterEach
+    void restoreUserDir() {
+        System.setProperty("user.dir", userDir);
+    }
+
+    @Test
+    void replaySkipsEventsInTheSnapshotAndATornLastLine() throws IOException {
+        // Crashed after compacting events 1-2 into the snapshot but before emptying the log, then again mid-append
+        writeSnapshot(2, player("alice", 2));
+        writeLog(game(1, "alice", null), game(2, "alice", null), game(3, "alice", null));
+        Files.writeString(data().resolve("leaderboard.log"), "{\"seq\":4,\"op\":\"game\",\"usern", StandardOpenOption.APPEND);
+
+        PlayerStats alice = find(LeaderboardDataUtil.loadAll(), "alice");
+        assertEquals(3, alice.getSoloPlays());
+        assertEquals(1, LeaderboardDataUtil.playerCount());
+    }
+
+    @Test
+    void deletesAreLoggedInOrderWithGames() throws IOException {
+        writeSnapshot(0);
+        LocalDateTime now = LocalDateTime.now();
+        LeaderboardDataUtil.recordGame("bob", false, true, "Lab", "easy", now);
+        LeaderboardDataUtil.deleteStatsForPlayer("bob");
+        LeaderboardDataUtil.recordGame("bob", true, false, "Lab", "easy", now);
+        assertEquals(1, find(LeaderboardDataUtil.loadAll(), "bob").getMultiPlays());
+
+        LeaderboardDataUtil.flush();
+        List<JsonObject> lines = new ArrayList<>();
+        for (String line : Files.readAllLines(data().resolve("leaderboard.log"))) {
+            lines.add(JsonParser.parseString(line).getAsJsonObject());
+        }
+        assertEquals(3, lines.size());
+        assertEquals("game", lines.get(0).get("op").getAsString());
+        assertEquals("delete", lines.get(1).get("op").getAsString());
+        assertEquals("game", lines.get(2).get("op").getAsString());
+        for (int i = 1; i < lines.size(); i++) {
+            assertTrue(lines.get(i).get("seq").getAsLong() > lines.get(i - 1).get("seq").getAsLong());
+        }
+        PlayerStats bob = find(LeaderboardDataUtil.loadAll(), "bob");
+        assertEquals(0, bob.getSoloPlays());
+        assertEquals(1, bob.getMultiPlays());
+    }
+
+    @Test
+    void replayAfterACrashBetweenTheArchiveAndTheSnapshotWrite() throws IOException {
+        LocalDateTime now = LocalDateTime.now().truncatedTo(ChronoUnit.SECONDS);
+        LocalDateTime old1 = now.minusDays(150), old2 = now.minusDays(200), recent = now.minusDays(1);
+        writeSnapshot(0, player("alice", 1, old1));
+        writeLog(game(1, "alice", old2), game(2, "alice", recent));
+        // The compaction at seq 2 moved both old escapes into the archive, then crashed before writing the snapshot
+        Map<String, List<EscapeRecord>> moved = Map.of("alice", List.of(
+                new EscapeRecord("Lab", "easy", old1), new EscapeRecord("Lab", "easy", old2)));
+        EscapeArchive archive = EscapeArchive.empty().plus(moved, 2, EscapeArchive.epoch(now.minusDays(90)));
+        Files.write(data().resolve("leaderboard.archive"), archive.encode());
+
+        PlayerStats alice = find(LeaderboardDataUtil.loadAll(), "alice");
+        assertEquals(3, alice.getSoloPlays());
+        List<LocalDateTime> dates = new ArrayList<>();
+        for (EscapeRecord er : alice.getEscapes()) dates.add(er.getDate());
+        dates.sort(null);
+        assertEquals(List.of(old2, old1, recent), dates);
+        assertEquals(3, LeaderboardDataUtil.countEscapes("lab", null, null, null));
+        assertEquals(1, LeaderboardDataUtil.countEscapes(null, null, now.minusDays(90), null));
+    }
+
+    private Path data() {
+        return dir.resolve("data");
+    }
+
+    private void writeSnapshot(long seq, JsonObject... players) throws IOException {
+        JsonObject snapshot = new JsonObject();
+        snapshot.addProperty("seq", seq);
+        JsonArray list = new JsonArray();
+        for (JsonObject p : players) list.add(p);
+        snapshot.add("players", list);
+        Path path = data().resolve("leaderboard.json");
+        Files.writeString(path, snapshot.toString());
+        Files.setLastModifiedTime(path, FileTime.fromMillis(snapshotTime.addAndGet(1000)));
+    }
+
+    private void writeLog(JsonObject... events) throws IOException {
+        StringBuilder sb = new StringBuilder();
+        for (JsonObject e : events) sb.append(e).append('\n');
+        Files.write(data().resolve("leaderboard.log"), sb.toString().getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static JsonObject player(String username, int soloPlays, LocalDateTime... escapedAt) {
+        JsonObject p = new JsonObject();
+        p.addProperty("username", username);
+        p.addProperty("soloPlays", soloPlays);
+        p.addProperty("multiPlays", 0);
+        JsonArray escapes = new JsonArray();
+        for (LocalDateTime when : escapedAt) {
+            JsonObject e = new JsonObject();
+            e.addProperty("room", "Lab");
+            e.addProperty("level", "easy");
+            e.addProperty("date", when.toString());
+            escapes.add(e);
+        }
+        p.add("escapes", escapes);
+        return p;
+    }
+
+    // A solo game; escaped (in room "Lab", level "easy") when a date is given
+    private static JsonObject game(long seq, String username, LocalDateTime escapedAt) {
+        JsonObject e = new JsonObject();
+        e.addProperty("seq", seq);
+        e.addProperty("op", "game");
+        e.addProperty("username", username);
+        e.addProperty("multiplayer", false);
+        e.addProperty("escaped", escapedAt != null);
+        if (escapedAt != null) {
+            e.addProperty("room", "Lab");
+            e.addProperty("level", "easy");
+            e.addProperty("when", escapedAt.toString());
+        }
+        return e;
+    }
+
+    private static PlayerStats find(List<PlayerStats> all, String username) {
+        for (PlayerStats ps : all) {
+            if (ps.getUsername().equals(username)) return ps;
+        }
+        throw new AssertionError("No stats for " + username);
+    }
+}
@@ -0,0 +1,78 @@
+package com.example.escapeGame;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ScoreRankingTest {
+    // Highest score first, ties by lower-cased name
+    private static final Comparator<PlayerScore> ORDER = Comparator.comparingInt(PlayerScore::getScore).reversed()
+            .thenComparing(s -> s.getPlayer().toLowerCase(Locale.ROOT));
+
+    @Test
+    void matchesASortedListUnderRandomPutAndRemove() {
+        Random random = new Random(42);
+        ScoreRanking ranking = new ScoreRanking();
+        Map<String, PlayerScore> reference = new LinkedHashMap<>();
+        for (int op = 0; op < 5000; op++) {
+            String player = "player" + random.nextInt(200);
+            if (random.nextInt(4) == 0) {
+                ranking.remove(player);
+                reference.remove(player);
+            } else {
+                // Few distinct scores, so ties are common
+                PlayerScore s = new PlayerScore(player, random.nextInt(50), 0, null);
+                ranking.put(s);
+                reference.put(player, s);
+            }
+            assertEquals(reference.size(), ranking.size());
+            if (op % 100 == 0) assertMatches(reference, ranking);
+        }
+        assertMatches(reference, ranking);
+
+        ranking.rebuild(reference.values());
+        assertMatches(reference, ranking);
+        for (int op = 0; op < 1000; op++) {
+            String player = "player" + random.nextInt(200);
+            PlayerScore s = new PlayerScore(player, random.nextInt(50), 0, null);
+            ranking.put(s);
+            reference.put(player, s);
+        }
+        assertMatches(reference, ranking);
+    }
+
+    @Test
+    void namesAreMatchedIgnoringCase() {
+        ScoreRanking ranking = new ScoreRanking();
+        ranking.put(new PlayerScore("Alice", 10, 0, null));
+        ranking.put(new PlayerScore("bob", 20, 0, null));
+        ranking.put(new PlayerScore("ALICE", 30, 0, null));
+        assertEquals(2, ranking.size());
+        assertEquals(1, ranking.rankOf("alice"));
+        assertEquals(2, ranking.rankOf("Bob"));
+        assertEquals(0, ranking.rankOf("carol"));
+        ranking.remove("aLiCe");
+        assertEquals(1, ranking.rankOf("bob"));
+        assertEquals(List.of("bob"), ranking.top(5).stream().map(PlayerScore::getPlayer).toList());
+    }
+
+    private static void assertMatches(Map<String, PlayerScore> reference, ScoreRanking ranking) {
+        List<PlayerScore> sorted = new ArrayList<>(reference.values());
+        sorted.sort(ORDER);
+        for (int i = 0; i < sorted.size(); i++) {
+            String player = sorted.get(i).getPlayer();
+            assertEquals(i + 1, ranking.rankOf(player), "rank of " + player);
+        }
+        for (int k : new int[]{0, 1, 10, sorted.size(), sorted.size() + 5}) {
+            assertEquals(sorted.subList(0, Math.min(k, sorted.size())), ranking.top(k), "top " + k);
+        }
+    }
+}
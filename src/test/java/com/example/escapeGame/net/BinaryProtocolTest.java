@@ -0,0 +1,106 @@
+package com.example.escapeGame.net;
+
+import com.google.gson.JsonArray;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class BinaryProtocolTest {
+    private static final String[] MESSAGES = {
+            "{\"type\":\"submitAnswer\",\"roomCode\":\"042137\",\"username\":\"alice\",\"answer\":\"a map\",\"elapsedMs\":12345}",
+            "{\"type\":\"scoreSnapshot\",\"version\":7,\"scores\":[{\"username\":\"alice\",\"score\":35},{\"username\":\"Zoë\",\"score\":-5}]}",
+            "{\"type\":\"scoreDelta\",\"version\":8,\"changes\":[{\"username\":\"bob\",\"delta\":-5}]}",
+            "{\"type\":\"teamScoreUpdate\",\"unanimous\":true,\"timeBonus\":false,\"version\":9,\"changes\":[]}",
+            "{\"type\":\"answerResult\",\"username\":\"bob\",\"correct\":false,\"scoreDelta\":-5}",
+            "{\"type\":\"question\",\"index\":3,\"total\":10,\"timeSec\":88,\"text\":\"What has keys but can't open locks?\"}",
+            "{\"type\":\"roomUpdate\",\"room\":{\"code\":\"042137\",\"host\":\"alice\",\"capacity\":4,\"canStart\":false,\"players\":[\"alice\",\"bob\"]}}",
+            "{\"type\":\"ping\"}",
+            "{\"type\":\"pong\"}",
+            // No typed encoding: sent as a JSON frame
+            "{\"type\":\"chatMessage\",\"from\":\"alice\",\"text\":\"hi\"}",
+            "{\"type\":\"answerResult\",\"username\":\"bob\",\"correct\":true,\"scoreDelta\":10,\"extra\":1}",
+    };
+
+    @Test
+    void everyMessageRoundTrips() throws IOException {
+        for (String json : MESSAGES) {
+            JsonObject msg = JsonParser.parseString(json).getAsJsonObject();
+            assertEquals(msg, roundTrip(msg), json);
+        }
+    }
+
+    @Test
+    void numberedMessagesKeepTheirSeq() throws IOException {
+        for (String json : MESSAGES) {
+            for (long seq : new long[]{1, 127, 128, 1_700_000_000_000_000L}) {
+                JsonObject msg = JsonParser.parseString(json).getAsJsonObject();
+                msg.addProperty("seq", seq);
+                byte[] frame = BinaryProtocol.encode(msg);
+                assertEquals(BinaryProtocol.SEQ, body(frame)[0], json);
+                assertEquals(msg, BinaryProtocol.decode(body(frame)), json);
+                // Encoding leaves the caller's message alone
+                assertEquals(seq, msg.get("seq").getAsLong());
+            }
+        }
+    }
+
+    @Test
+    void batchRoundTripsAndReadsBackFromAStream() throws IOException {
+        List<byte[]> frames = new ArrayList<>();
+        JsonArray expected = new JsonArray();
+        for (int i = 0; i < MESSAGES.length; i++) {
+            JsonObject msg = JsonParser.parseString(MESSAGES[i]).getAsJsonObject();
+            msg.addProperty("seq", 100 + i);
+            frames.add(BinaryProtocol.encode(msg));
+            expected.add(msg);
+        }
+        byte[] batch = BinaryProtocol.encodeBatch(frames);
+        assertNotNull(batch);
+
+        ByteArrayOutputStream stream = new ByteArrayOutputStream();
+        stream.write(batch);
+        stream.write(BinaryProtocol.encode(JsonParser.parseString("{\"type\":\"ping\"}").getAsJsonObject()));
+        ByteArrayInputStream in = new ByteArrayInputStream(stream.toByteArray());
+        JsonObject decoded = BinaryProtocol.decode(BinaryProtocol.readFrame(in));
+        assertEquals("batch", decoded.get("type").getAsString());
+        assertEquals(expected, decoded.getAsJsonArray("messages"));
+        assertEquals("ping", BinaryProtocol.decode(BinaryProtocol.readFrame(in)).get("type").getAsString());
+        assertNull(BinaryProtocol.readFrame(in));
+    }
+
+    @Test
+    void oversizedBatchIsRefused() {
+        JsonObject msg = new JsonObject();
+        msg.addProperty("type", "chatMessage");
+        msg.addProperty("text", "x".repeat(1000));
+        byte[] frame = BinaryProtocol.encode(msg);
+        List<byte[]> frames = new ArrayList<>();
+        while (frames.size() * frame.length <= BinaryProtocol.MAX_FRAME_BYTES) frames.add(frame);
+        assertNull(BinaryProtocol.encodeBatch(frames));
+    }
+
+    @Test
+    void truncatedStreamIsAnError() {
+        byte[] frame = BinaryProtocol.encode(JsonParser.parseString(MESSAGES[0]).getAsJsonObject());
+        assertThrows(EOFException.class, () -> BinaryProtocol.readFrame(new ByteArrayInputStream(Arrays.copyOf(frame, frame.length - 1))));
+    }
+
+    private static JsonObject roundTrip(JsonObject msg) throws IOException {
+        return BinaryProtocol.decode(body(BinaryProtocol.encode(msg)));
+    }
+
+    // The frame without its length prefix
+    private static byte[] body(byte[] frame) throws IOException {
+        return BinaryProtocol.readFrame(new ByteArrayInputStream(frame));
+    }
+}
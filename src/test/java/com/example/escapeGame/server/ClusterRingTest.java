@@ -0,0 +1,67 @@
+package com.example.escapeGame.server;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ClusterRingTest {
+    private static final int CODES = 20_000;
+
+    @Test
+    void parsesTheNodeList() {
+        ClusterRing ring = ClusterRing.parse("10.0.0.1:5000, game-2:5001,,[::1]:5002");
+        assertEquals(List.of(new ClusterRing.Node("10.0.0.1", 5000), new ClusterRing.Node("game-2", 5001),
+                new ClusterRing.Node("[::1]", 5002)), ring.nodes());
+        assertEquals(new ClusterRing.Node("game-2", 5001), ring.find("game-2:5001"));
+        assertNull(ring.find("game-3:5001"));
+        assertThrows(IllegalArgumentException.class, () -> ClusterRing.parse("game-1"));
+        assertThrows(IllegalArgumentException.class, () -> ClusterRing.parse(" , "));
+    }
+
+    @Test
+    void everyNodeAgreesOnTheOwnerWhateverTheListOrder() {
+        ClusterRing a = ClusterRing.parse("a:1,b:2,c:3");
+        ClusterRing b = ClusterRing.parse("c:3,a:1,b:2");
+        for (int i = 0; i < CODES; i++) {
+            String code = code(i);
+            assertEquals(a.ownerOf(code), b.ownerOf(code), code);
+        }
+    }
+
+    @Test
+    void codesAreSpreadOverTheNodes() {
+        ClusterRing ring = ClusterRing.parse("a:1,b:2,c:3,d:4");
+        Map<ClusterRing.Node, Integer> owned = new HashMap<>();
+        for (int i = 0; i < CODES; i++) owned.merge(ring.ownerOf(code(i)), 1, Integer::sum);
+        assertEquals(4, owned.size());
+        for (Map.Entry<ClusterRing.Node, Integer> e : owned.entrySet()) {
+            // An even share is 25%
+            assertTrue(e.getValue() > CODES * 15 / 100 && e.getValue() < CODES * 35 / 100, e.getKey() + " owns " + e.getValue());
+        }
+    }
+
+    @Test
+    void addingANodeOnlyMovesCodesToIt() {
+        ClusterRing before = ClusterRing.parse("a:1,b:2,c:3");
+        ClusterRing after = ClusterRing.parse("a:1,b:2,c:3,d:4");
+        ClusterRing.Node added = ClusterRing.Node.parse("d:4");
+        int moved = 0;
+        for (int i = 0; i < CODES; i++) {
+            String code = code(i);
+            ClusterRing.Node owner = after.ownerOf(code);
+            if (owner.equals(before.ownerOf(code))) continue;
+            assertEquals(added, owner, code);
+            moved++;
+        }
+        // About a quarter of the codes
+        assertTrue(moved > CODES * 15 / 100 && moved < CODES * 35 / 100, moved + " codes moved");
+    }
+
+    private static String code(int i) {
+        return String.format("%06d", i * 37 % RoomCodeAllocator.CODE_SPACE);
+    }
+}
@@ -0,0 +1,70 @@
+package com.example.escapeGame.server;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class RoomCodeAllocatorTest {
+    @Test
+    void eachShardAllocatesEveryCodeExactlyOnce() {
+        for (int shards : new int[]{1, 3, 8}) {
+            boolean[] seen = new boolean[RoomCodeAllocator.CODE_SPACE];
+            int total = 0;
+            for (int shard = 0; shard < shards; shard++) {
+                RoomCodeAllocator allocator = new RoomCodeAllocator(shard, shards);
+                String code;
+                while ((code = allocator.allocate()) != null) {
+                    assertEquals(6, code.length(), code);
+                    int c = Integer.parseInt(code);
+                    assertEquals(shard, c % shards, code);
+                    assertFalse(seen[c], "code handed out twice: " + code);
+                    seen[c] = true;
+                    total++;
+                }
+            }
+            assertEquals(RoomCodeAllocator.CODE_SPACE, total, shards + " shards");
+        }
+    }
+
+    @Test
+    void releasedCodesAreReusedOnceTheFreshOnesRunOut() {
+        // Shard 0 of 250,000 owns the codes 000000, 250000, 500000 and 750000
+        RoomCodeAllocator allocator = new RoomCodeAllocator(0, 250_000);
+        List<String> codes = new ArrayList<>();
+        for (int i = 0; i < 4; i++) codes.add(allocator.allocate());
+        assertEquals(List.of("000000", "250000", "500000", "750000"), codes.stream().sorted().toList());
+        assertNull(allocator.allocate());
+        assertEquals(4, allocator.inUse());
+
+        allocator.release(codes.get(2));
+        assertEquals(3, allocator.inUse());
+        assertEquals(codes.get(2), allocator.allocate());
+        assertNull(allocator.allocate());
+    }
+
+    @Test
+    void concurrentAllocationsNeverCollide() throws InterruptedException {
+        RoomCodeAllocator allocator = new RoomCodeAllocator(5, 8);
+        AtomicIntegerArray handedOut = new AtomicIntegerArray(RoomCodeAllocator.CODE_SPACE);
+        List<Thread> threads = new ArrayList<>();
+        for (int t = 0; t < 4; t++) {
+            threads.add(new Thread(() -> {
+                String code;
+                while ((code = allocator.allocate()) != null) handedOut.incrementAndGet(Integer.parseInt(code));
+            }));
+        }
+        for (Thread t : threads) t.start();
+        for (Thread t : threads) t.join();
+        int total = 0;
+        for (int c = 0; c < RoomCodeAllocator.CODE_SPACE; c++) {
+            int n = handedOut.get(c);
+            assertTrue(n <= 1, "code " + c + " handed out " + n + " times");
+            total += n;
+        }
+        assertEquals(RoomCodeAllocator.CODE_SPACE / 8, total);
+    }
+}
@@ -0,0 +1,73 @@
+package com.example.escapeGame.server;
+
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class RoomEventLogTest {
+    @Test
+    void missedSinceAcrossTheWrapAround() {
+        RoomEventLog log = new RoomEventLog(4);
+        for (int i = 1; i <= 10; i++) log.append(event(i), null, null);
+        assertEquals(10, log.head());
+
+        assertEquals(List.of(7L, 8L, 9L, 10L), seqs(log.since(6, "alice")));
+        assertEquals(List.of(10L), seqs(log.since(9, "alice")));
+        assertEquals(List.of(), seqs(log.since(10, "alice")));
+        // Event 6 has been overwritten by event 10
+        assertNull(log.since(5, "alice"));
+        assertNull(log.since(0, "alice"));
+        // Never handed out
+        assertNull(log.since(11, "alice"));
+    }
+
+    @Test
+    void replayKeepsOnlyWhatThePlayerWasSent() {
+        RoomEventLog log = new RoomEventLog(3);
+        log.append(event(1), null, null);
+        log.append(event(2), "bob", null);
+        log.append(event(3), null, "alice");
+        log.append(event(4), "alice", null);
+        log.append(event(5), null, "bob");
+
+        assertEquals(List.of(4L, 5L), seqs(log.since(2, "alice")));
+        assertEquals(List.of(3L), seqs(log.since(2, "bob")));
+        assertEquals(List.of(3L, 5L), seqs(log.since(2, "carol")));
+    }
+
+    @Test
+    void restoredRoomCannotReplayEventsFromBeforeTheRestore() {
+        RoomEventLog log = new RoomEventLog(4);
+        log.startAt(1000);
+        assertNull(log.since(999, "alice"));
+        assertEquals(List.of(), seqs(log.since(1000, "alice")));
+        OutboundMessage first = log.append(event(1), null, null);
+        assertEquals(1001, seq(first));
+        assertEquals(List.of(1001L), seqs(log.since(1000, "alice")));
+    }
+
+    private static JsonObject event(int n) {
+        JsonObject msg = new JsonObject();
+        msg.addProperty("type", "chat");
+        msg.addProperty("n", n);
+        return msg;
+    }
+
+    private static long seq(OutboundMessage m) {
+        String json = new String(m.jsonFrame(), StandardCharsets.UTF_8);
+        return JsonParser.parseString(json).getAsJsonObject().get("seq").getAsLong();
+    }
+
+    private static List<Long> seqs(List<OutboundMessage> messages) {
+        assertNotNull(messages, "expected a replay");
+        List<Long> seqs = new ArrayList<>();
+        for (OutboundMessage m : messages) seqs.add(seq(m));
+        return seqs;
+    }
+}
@@ -0,0 +1,48 @@
+package com.example.escapeGame.server;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class RoomSnapshotTest {
+    private static final RoomSnapshot RUNNING = new RoomSnapshot("042137", false, "alice",
+            List.of("alice", "bob", "Zoë"), Map.of("alice", 35, "bob", -5, "Zoë", 0), "Lab", "hard", 4, 50, true,
+            List.of(7, 3, 12, 1), 2, 9, true, Set.of("bob"), Set.of(), 1_700_000_000_000L, 1_700_000_150_000L,
+            Map.of("alice", "tok-a", "bob", "tok-b"));
+
+    @Test
+    void runningRoomRoundTrips() throws IOException {
+        assertEquals(RUNNING, RoomSnapshot.decode(RUNNING.encode()));
+    }
+
+    @Test
+    void roomBeforeTheFirstQuestionRoundTrips() throws IOException {
+        RoomSnapshot lobby = new RoomSnapshot("000001", false, "carol", List.of("carol"), Map.of("carol", 0), "", "",
+                2, 0, false, List.of(), -1, 0, false, Set.of(), Set.of(), 0, 0, Map.of());
+        assertEquals(lobby, RoomSnapshot.decode(lobby.encode()));
+    }
+
+    @Test
+    void closedRoomRoundTrips() throws IOException {
+        RoomSnapshot closed = RoomSnapshot.decode(RoomSnapshot.closed("999999").encode());
+        assertTrue(closed.closed());
+        assertEquals("999999", closed.code());
+    }
+
+    @Test
+    void rejectsOtherVersionsAndTruncatedFrames() {
+        byte[] frame = RUNNING.encode();
+        byte[] otherVersion = frame.clone();
+        otherVersion[0]++;
+        assertThrows(IOException.class, () -> RoomSnapshot.decode(otherVersion));
+        for (int length : new int[]{0, 1, frame.length / 2, frame.length - 1}) {
+            assertThrows(IOException.class, () -> RoomSnapshot.decode(Arrays.copyOf(frame, length)), length + " bytes");
+        }
+    }
+}